@@ -0,0 +1,161 @@
+package com.example.android.yournews;
+
+import android.content.Context;
+import android.content.Loader;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives {@link StoryLoader} through many load and refresh cycles against
+ * {@link MockGuardianServer}, with injected latency, throttling, 429s and truncated bodies, and
+ * logs the latency distribution of every kind of load and the {@link FeedMetrics} of the run.
+ * The stories go through the real store, memory cache, executor and transport.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StoryLoaderLoadTest {
+
+    private static final String LOG_TAG = StoryLoaderLoadTest.class.getSimpleName();
+    /** Its own tag, so the stored stories of the app are not touched */
+    private static final String TAG = "harness/politics";
+    private static final int PAGE_SIZE = 10;
+    private static final int CYCLES = 25;
+    private static final long LOAD_TIMEOUT_SECONDS = 30;
+
+    private Context mContext;
+    private MockGuardianServer mServer;
+    private HttpTransport mPreviousTransport;
+    private RequestGovernor mPreviousGovernor;
+
+    @Before
+    public void setUp() throws IOException {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mServer = new MockGuardianServer(42);
+        mServer.addStories(TAG, MockGuardianServer.fixtureStories("fixtures/search_politics_100.json"));
+        mPreviousTransport = QueryUtils.getTransport();
+        QueryUtils.setTransport(new OkHttpTransport());
+        // The quota of the real API would slow the cycles down to a request a second
+        mPreviousGovernor = QueryUtils.getRequestGovernor();
+        QueryUtils.setRequestGovernor(null);
+        StoryLoader.sharedMemoryCache(mContext).clear();
+        FeedMetrics.get().reset();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.shutdown();
+        QueryUtils.setTransport(mPreviousTransport);
+        QueryUtils.setRequestGovernor(mPreviousGovernor);
+    }
+
+    @Test
+    public void loadAndRefreshCycles_withFaults() throws InterruptedException {
+        mServer.latency(20).bandwidth(256 * 1024).tooManyRequests(0.1, 0).truncate(0.05);
+        Histogram firstPage = new Histogram();
+        Histogram nextPage = new Histogram();
+        Histogram refresh = new Histogram();
+        Random random = new Random(7);
+
+        for (int cycle = 0; cycle < CYCLES; cycle++) {
+            long start = System.nanoTime();
+            List<Story> shown = load(1, null);
+            firstPage.record(micros(start));
+            assertNotNull("cycle " + cycle, shown);
+            assertTrue("cycle " + cycle, !shown.isEmpty());
+
+            start = System.nanoTime();
+            assertNotNull("cycle " + cycle, load(2, null));
+            nextPage.record(micros(start));
+
+            List<JSONObject> published = mServer.publish(TAG, random.nextInt(4));
+            start = System.nanoTime();
+            List<Story> newer = load(1, shown.get(0).getDate());
+            refresh.record(micros(start));
+            assertNotNull("cycle " + cycle, newer);
+            Set<String> shortUrls = new HashSet<>();
+            for (Story story : newer) {
+                shortUrls.add(story.getShortUrl());
+            }
+            for (JSONObject story : published) {
+                assertTrue("cycle " + cycle,
+                        shortUrls.contains(story.optJSONObject("fields").optString("shortUrl")));
+            }
+        }
+
+        Log.i(LOG_TAG, String.format(Locale.US, "%d cycles, %d requests: %d not modified, %d 429s, %d truncated",
+                CYCLES, mServer.requestCount(), mServer.notModifiedCount(),
+                mServer.tooManyRequestsCount(), mServer.truncatedCount()));
+        log("first page", firstPage);
+        log("next page", nextPage);
+        log("refresh", refresh);
+        Log.i(LOG_TAG, FeedMetrics.get().report());
+        Log.i(LOG_TAG, FeedMetrics.get().exportJson());
+    }
+
+    /**
+     * Run one load of a page on the main thread, the way the LoaderManager does, and wait for
+     * its result.
+     *
+     * @param fromDate makes it a refresh of the stories since then, or null
+     */
+    private List<Story> load(int page, String fromDate) throws InterruptedException {
+        final StoryLoader loader = new StoryLoader(mContext,
+                Collections.singletonMap(TAG, mServer.url(TAG, page, PAGE_SIZE, fromDate)),
+                page, PAGE_SIZE, fromDate != null);
+        final AtomicReference<List<Story>> result = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                loader.registerListener(0, new Loader.OnLoadCompleteListener<List<Story>>() {
+                    @Override
+                    public void onLoadComplete(Loader<List<Story>> loader, List<Story> stories) {
+                        result.set(stories);
+                        done.countDown();
+                    }
+                });
+                loader.startLoading();
+            }
+        });
+        boolean finished = done.await(LOAD_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                loader.reset();
+            }
+        });
+        assertTrue("load of page " + page + " timed out", finished);
+        return result.get();
+    }
+
+    private static long micros(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1000;
+    }
+
+    private static void log(String name, Histogram histogram) {
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        Log.i(LOG_TAG, String.format(Locale.US, "%-10s p50 %6.1f ms, p95 %6.1f ms, p99 %6.1f ms, max %6.1f ms",
+                name, snapshot.getPercentile(50) / 1000.0, snapshot.getPercentile(95) / 1000.0,
+                snapshot.getPercentile(99) / 1000.0, snapshot.getMax() / 1000.0));
+    }
+}
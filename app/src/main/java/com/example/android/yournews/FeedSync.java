@@ -0,0 +1,313 @@
+package com.example.android.yournews;
+
+import android.annotation.TargetApi;
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.PersistableBundle;
+import android.preference.PreferenceManager;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background sync of the stories, so opening the app finds its sections in the
+ * {@link StoryStore} and the response cache instead of waiting for the network.
+ * <p>
+ * Two periodic {@link FeedSyncJobService} jobs: a light one on any network that loads the first
+ * page of the sections chosen in the settings, and a large one that also loads the next pages
+ * and the recently viewed sections, only on an unmetered network while charging. A run sends
+ * its requests one after the other in the same wake-up, at the pace of the API quota, and stops
+ * when the bytes downloaded today reach {@link #DAILY_BYTE_BUDGET}. Every request is a task of
+ * its own in the {@link FeedExecutor.Priority#PREFETCH} lane, so the loads of the screen get the
+ * threads between two requests instead of waiting for the whole run.
+ * <p>
+ * JobScheduler is API 21, older devices load the stories when the app is opened, as before.
+ * This class keeps the JobService out of the code that runs on every version.
+ */
+final class FeedSync {
+
+    private static final String LOG_TAG = FeedSync.class.getSimpleName();
+
+    private static final int JOB_ID_SECTIONS = 1001;
+    private static final int JOB_ID_PREFETCH = 1002;
+    private static final long SECTIONS_PERIOD_MILLIS = TimeUnit.HOURS.toMillis(3);
+    private static final long PREFETCH_PERIOD_MILLIS = TimeUnit.HOURS.toMillis(12);
+    /** Pages of every section loaded by the large job */
+    private static final int PREFETCH_PAGES = 3;
+    /** Bytes all the runs of a day may download, a page is about 14 KB gzipped */
+    private static final long DAILY_BYTE_BUDGET = 2 * 1024 * 1024;
+    /**
+     * Times in a row a request of a run may be shed or rejected by the governor before the run
+     * gives up, the wait before sending it again doubles every time
+     */
+    private static final int MAX_DEFERRALS = 5;
+    /** Recently viewed sections kept for the large job, besides the chosen ones */
+    private static final int MAX_RECENT_SECTIONS = 4;
+
+    /** Job extras: pages of every section, and 1 to add the recently viewed sections */
+    static final String EXTRA_PAGES = "pages";
+    static final String EXTRA_RECENT_SECTIONS = "recent_sections";
+    private static final String PREF_RECENT_SECTIONS = "sync_recent_sections";
+    private static final String PREF_BUDGET_DAY = "sync_budget_day";
+    private static final String PREF_BUDGET_USED = "sync_budget_used";
+
+    private FeedSync() {
+    }
+
+    /**
+     * Schedule the sync jobs, unless they are already scheduled. Does nothing before API 21.
+     */
+    static void schedule(Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            scheduleJobs(context);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static void scheduleJobs(Context context) {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        assert scheduler != null;
+        // Scheduling a job again would restart its period, so leave the pending ones alone
+        Set<Integer> pending = new LinkedHashSet<>();
+        for (JobInfo job : scheduler.getAllPendingJobs()) {
+            pending.add(job.getId());
+        }
+        ComponentName service = new ComponentName(context, FeedSyncJobService.class);
+
+        if (!pending.contains(JOB_ID_SECTIONS)) {
+            PersistableBundle extras = new PersistableBundle();
+            extras.putInt(EXTRA_PAGES, 1);
+            extras.putInt(EXTRA_RECENT_SECTIONS, 0);
+            scheduler.schedule(new JobInfo.Builder(JOB_ID_SECTIONS, service)
+                    .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
+                    .setPeriodic(SECTIONS_PERIOD_MILLIS)
+                    .setPersisted(true)
+                    .setExtras(extras)
+                    .build());
+        }
+        if (!pending.contains(JOB_ID_PREFETCH)) {
+            PersistableBundle extras = new PersistableBundle();
+            extras.putInt(EXTRA_PAGES, PREFETCH_PAGES);
+            extras.putInt(EXTRA_RECENT_SECTIONS, 1);
+            scheduler.schedule(new JobInfo.Builder(JOB_ID_PREFETCH, service)
+                    .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED)
+                    .setRequiresCharging(true)
+                    .setPeriodic(PREFETCH_PERIOD_MILLIS)
+                    .setPersisted(true)
+                    .setExtras(extras)
+                    .build());
+        }
+    }
+
+    /**
+     * Remember the sections the user opened, most recent first, for the large job.
+     */
+    static void recordViewedSections(Context context, List<String> sectionTags) {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        Set<String> recent = new LinkedHashSet<>(sectionTags);
+        recent.addAll(getRecentSections(prefs));
+        List<String> kept = new ArrayList<>(recent).subList(0, Math.min(MAX_RECENT_SECTIONS, recent.size()));
+        prefs.edit().putString(PREF_RECENT_SECTIONS, TextUtils.join(",", kept)).apply();
+    }
+
+    private static List<String> getRecentSections(SharedPreferences prefs) {
+        String recent = prefs.getString(PREF_RECENT_SECTIONS, "");
+        if (recent.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return Arrays.asList(recent.split(","));
+    }
+
+    /**
+     * Start loading the pages of the sections into the store, page 1 of every section first.
+     * The requests are queued on the {@link FeedExecutor} one at a time, the next one the pace
+     * of the governor after the previous one ended.
+     *
+     * @param recentSections also load the recently viewed sections
+     * @param token          cancelling it stops the run, it also aborts the request on its way
+     * @param onFinished     run on a thread of the executor when the run ends without being cancelled
+     */
+    static void sync(Context context, int pages, boolean recentSections,
+                     FeedExecutor.CancellationToken token, Runnable onFinished) {
+        new SyncRun(context.getApplicationContext(), pages, recentSections, token, onFinished).start();
+    }
+
+    /**
+     * One run of a sync job, a {@link FeedExecutor.Task} that sends one request and queues
+     * itself again for the next one.
+     */
+    private static final class SyncRun implements FeedExecutor.Task<Void> {
+        private final Context mContext;
+        private final int mPages;
+        private final boolean mRecentSections;
+        private final Runnable mOnFinished;
+        /** Cancelled when the job has to stop, it also aborts the request on its way */
+        private final FeedExecutor.CancellationToken mToken;
+        private final FeedExecutor mExecutor = FeedExecutor.shared();
+        /** The task waiting for its turn or running, null before the start */
+        private volatile FeedExecutor.FeedFuture<Void> mNext;
+
+        // Set up by the first task, used by one task at a time
+        private SharedPreferences mPrefs;
+        private DailyByteBudget mBudget;
+        private List<String> mSectionTags;
+        private int mPageSize;
+        private long mIntervalMillis;
+        private StoryStore mStore;
+        private int mRequests;
+        private int mSaved;
+        /** Times in a row the governor did not let the next request go */
+        private int mDeferrals;
+
+        SyncRun(Context context, int pages, boolean recentSections, FeedExecutor.CancellationToken token,
+                Runnable onFinished) {
+            mContext = context;
+            mPages = pages;
+            mRecentSections = recentSections;
+            mToken = token;
+            mOnFinished = onFinished;
+        }
+
+        void start() {
+            mToken.addOnCancelListener(new Runnable() {
+                @Override
+                public void run() {
+                    FeedExecutor.FeedFuture<Void> next = mNext;
+                    if (next != null) {
+                        next.cancel(true);
+                    }
+                }
+            });
+            mNext = mExecutor.submit(FeedExecutor.Priority.PREFETCH, this);
+        }
+
+        @Override
+        public Void run(FeedExecutor.CancellationToken taskToken) {
+            if (mToken.isCancelled()) {
+                return null;
+            }
+            long delay;
+            try {
+                if (mPrefs == null) {
+                    setUp();
+                }
+                delay = syncNext();
+            } catch (RuntimeException e) {
+                Log.e(LOG_TAG, "Problem syncing the stories", e);
+                delay = -1;
+            }
+            if (mToken.isCancelled()) {
+                return null;
+            }
+            if (delay >= 0) {
+                mNext = mExecutor.schedule(FeedExecutor.Priority.PREFETCH, this, delay);
+                if (mToken.isCancelled()) {
+                    // Cancelled while it was being queued
+                    mNext.cancel(true);
+                }
+                return null;
+            }
+            Log.d(LOG_TAG, "Synced " + mSaved + " stories with " + mRequests + " requests, "
+                    + mBudget.getUsedBytes() + " bytes today");
+            mOnFinished.run();
+            return null;
+        }
+
+        private void setUp() {
+            mPrefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+            mBudget = new DailyByteBudget(DAILY_BYTE_BUDGET,
+                    mPrefs.getLong(PREF_BUDGET_DAY, 0), mPrefs.getLong(PREF_BUDGET_USED, 0));
+            Set<String> sectionTags = new LinkedHashSet<>(MainActivity.getSectionTags(mContext));
+            if (mRecentSections) {
+                sectionTags.addAll(getRecentSections(mPrefs));
+            }
+            mSectionTags = new ArrayList<>(sectionTags);
+            mPageSize = mContext.getResources().getInteger(R.integer.feed_page_size);
+            // A request every 2 tokens keeps the bucket of the governor full, so these lowest
+            // priority requests are not shed and the app keeps its burst
+            mIntervalMillis = (long) (2 * TimeUnit.SECONDS.toMillis(1) / NewsApplication.API_REQUESTS_PER_SECOND);
+            mStore = StoryStore.getInstance(mContext);
+        }
+
+        /**
+         * Send the next request of the run and save its stories.
+         *
+         * @return the time to wait before the next request, or -1 when the run is over
+         */
+        private long syncNext() {
+            int total = mPages * mSectionTags.size();
+            if (mRequests >= total) {
+                return -1;
+            }
+            if (mBudget.getRemaining(System.currentTimeMillis()) <= 0) {
+                Log.d(LOG_TAG, "Daily byte budget spent after " + mRequests + " requests");
+                return -1;
+            }
+            // Page 1 of every section first
+            int page = 1 + mRequests / mSectionTags.size();
+            String sectionTag = mSectionTags.get(mRequests % mSectionTags.size());
+            SyncListener received = new SyncListener();
+            // The same URL as the app, so the next load is a 304 or a cache hit
+            List<Story> stories = QueryUtils.fetchStoryData(
+                    MainActivity.buildStoryUrl(sectionTag, page, mPageSize, null), received, mToken);
+            // Only the bytes of this request, the app may be loading pages and images meanwhile.
+            // The attempts sent before a shed retry received bytes too
+            mBudget.spend(received.mBytes, System.currentTimeMillis());
+            // Saved after every request, the run may be stopped before the next one
+            mPrefs.edit()
+                    .putLong(PREF_BUDGET_DAY, mBudget.getDay())
+                    .putLong(PREF_BUDGET_USED, mBudget.getUsedBytes())
+                    .apply();
+            if (received.mNotSent) {
+                // The stories are the cached ones, saving them would pass them off as new.
+                // The same request goes again once the governor has tokens to spare
+                if (++mDeferrals > MAX_DEFERRALS) {
+                    Log.d(LOG_TAG, "Requests shed " + MAX_DEFERRALS + " times, stopping after "
+                            + mRequests + " requests");
+                    return -1;
+                }
+                return mIntervalMillis << mDeferrals;
+            }
+            mDeferrals = 0;
+            mRequests++;
+            if (stories != null && !mToken.isCancelled()) {
+                mStore.save(sectionTag, stories);
+                mSaved += stories.size();
+            }
+            return mRequests < total ? mIntervalMillis : -1;
+        }
+
+        /**
+         * Adds up the bytes the attempts of a request received, and tells a request the governor
+         * did not let go.
+         */
+        private static final class SyncListener implements QueryUtils.FetchListener {
+            long mBytes;
+            boolean mNotSent;
+
+            @Override
+            public void onBytesReceived(long bytes) {
+                mBytes += bytes;
+            }
+
+            @Override
+            public void onNotSent() {
+                mNotSent = true;
+            }
+
+            @Override
+            public void onStory(Story story) {
+            }
+        }
+    }
+}
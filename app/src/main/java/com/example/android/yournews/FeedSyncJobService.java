@@ -0,0 +1,66 @@
+package com.example.android.yournews;
+
+import android.annotation.TargetApi;
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+import android.os.Build;
+import android.util.Log;
+import android.util.SparseArray;
+
+/**
+ * Runs the jobs scheduled by {@link FeedSync} on the {@link FeedExecutor}, one request at a time
+ * in the lowest lane so the loads of the screen go first.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class FeedSyncJobService extends JobService {
+
+    private static final String LOG_TAG = FeedSyncJobService.class.getSimpleName();
+
+    /**
+     * The tokens of the runs in progress by job id, the small and the large job can run at the
+     * same time. A token is cancelled when its job has to stop.
+     */
+    private final SparseArray<FeedExecutor.CancellationToken> mRuns = new SparseArray<>();
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        int pages = params.getExtras().getInt(FeedSync.EXTRA_PAGES, 1);
+        boolean recentSections = params.getExtras().getInt(FeedSync.EXTRA_RECENT_SECTIONS, 0) != 0;
+        final int jobId = params.getJobId();
+        Log.d(LOG_TAG, "Starting sync job " + jobId);
+        final FeedExecutor.CancellationToken run = new FeedExecutor.CancellationToken(FeedExecutor.Priority.PREFETCH);
+        synchronized (mRuns) {
+            // Kept before the start, the run may end before sync returns
+            mRuns.put(jobId, run);
+        }
+        FeedSync.sync(this, pages, recentSections, run, new Runnable() {
+            @Override
+            public void run() {
+                synchronized (mRuns) {
+                    if (mRuns.get(jobId) == run) {
+                        mRuns.remove(jobId);
+                    }
+                }
+                // A periodic job runs again in its next period anyway
+                jobFinished(params, false);
+            }
+        });
+        // The work goes on on the executor threads
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // The constraints are not met anymore, e.g. the charger was unplugged
+        FeedExecutor.CancellationToken run;
+        synchronized (mRuns) {
+            run = mRuns.get(params.getJobId());
+            mRuns.remove(params.getJobId());
+        }
+        if (run != null) {
+            run.cancel();
+        }
+        // Try again later
+        return true;
+    }
+}
@@ -2,6 +2,7 @@ package com.example.android.yournews;
 
 import android.app.LoaderManager;
 import android.content.Context;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.Loader;
 import android.content.SharedPreferences;
@@ -11,38 +12,65 @@ import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Debug;
 import android.os.Handler;
+import android.os.Looper;
 import android.preference.PreferenceManager;
 import android.support.v4.widget.SwipeRefreshLayout;
 import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
 import android.support.v7.widget.Toolbar;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ListView;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 
-public class MainActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<List<Story>>, SwipeRefreshLayout.OnRefreshListener {
+public class MainActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<List<Story>>, SwipeRefreshLayout.OnRefreshListener,
+        StoryLoader.OnStoriesPublishedListener, LiveSearch.Listener {
     public static final String LOG_TAG = MainActivity.class.getName();
     /**
      * Constant value for the earthquake loader ID. We can choose any integer.
      * This really only comes into play if you're using multiple loaders.
      */
     private static final int STORY_LOADER_ID = 1;
+    /**
+     * Loader ID for the next (or previous) page of stories while scrolling, and its page argument
+     */
+    private static final int PAGE_LOADER_ID = 2;
+    private static final String ARG_PAGE = "page";
+    /**
+     * Loader ID for the stories published since the newest shown one, and its from-date argument
+     */
+    private static final int REFRESH_LOADER_ID = 3;
+    private static final String ARG_FROM_DATE = "from_date";
+    /**
+     * Directory in the cache for the snapshot of the last shown feed, one file per choice of
+     * sections
+     */
+    private static final String SNAPSHOT_DIR = "feed-snapshots";
     /**
      * URL for story data from the Guardian data set
      */
     private static final String GUARDIAN_REQUEST_URL =
 //            "https://content.guardianapis.com/search?q=debate%20AND%20(economy%20OR%20immigration%20education)&tag=politics/politics&from-date=2018-01-01&to-date=2018-06-01&page-size=100&show-tags=contributor&show-fields=trailText,headline,thumbnail,shortUrl&api-key=test";
-            "https://content.guardianapis.com/search";
+            GuardianQuery.SEARCH_URL;
     /**
      * Adapter for the list of stories
      */
@@ -55,6 +83,25 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
     private ProgressBar mProgressBar;
     // SwipeRefreshLayout
     private SwipeRefreshLayout swipeLayout;
+    // RecyclerView of the stories, and the stories it shows. A changed list is always a new
+    // list, the adapter works out the difference with the shown one in the background
+    private RecyclerView mStoriesRecyclerView;
+    private LinearLayoutManager mLayoutManager;
+    private List<Story> mStories = new ArrayList<>();
+    // The pages of stories kept in memory, and if a page is being loaded
+    private StoryPageWindow mPageWindow;
+    private boolean mPageLoading;
+    // Stories per page, and rows left before the end of the list when the next page is loaded
+    private int mPageSize;
+    private int mPrefetchDistance;
+    // Live search of the toolbar. While it is open the list shows its results, and mStories
+    // keeps the feed to show again when it is closed
+    private LiveSearch mLiveSearch;
+    private boolean mSearching;
+    private boolean mSearchComplete;
+    private List<Story> mSearchResults = new ArrayList<>();
+    // Colors of the section names of the snapshot and search results, resolved off the main thread
+    private SectionColors mSectionColors;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -74,28 +121,20 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
         setSupportActionBar(toolbar);
         if (getSupportActionBar() != null)
             getSupportActionBar().setDisplayShowTitleEnabled(false);
-        // Find a reference to the {@link ListView} in the layout
-        ListView storiesListView = findViewById(R.id.list);
-        // setting the empty view
+        // Find a reference to the {@link RecyclerView} in the layout
+        mStoriesRecyclerView = findViewById(R.id.list);
+        mLayoutManager = new LinearLayoutManager(this);
+        mStoriesRecyclerView.setLayoutManager(mLayoutManager);
+        // The empty view, shown by updateEmptyView when the list has no stories
         mEmptyStateTextView = findViewById(R.id.empty_tv);
-        storiesListView.setEmptyView(mEmptyStateTextView);
         // Progress bar widget
         mProgressBar = findViewById(R.id.loading_spinner);
-        // Create a new adapter that takes an empty list of stories as input
-        mAdapter = new StoryAdapter(this, new ArrayList<Story>());
-        // Set the adapter on the {@link ListView}
-        // so the list can be populated in the user interface
-        storiesListView.setAdapter(mAdapter);
-        // Set an item click listener on the ListView, which sends an intent to a web browser
+        // Create a new adapter, a click on a story sends an intent to a web browser
         // to open the Guardian website with more information about the selected story.
-        storiesListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        mAdapter = new StoryAdapter(this, new StoryAdapter.OnStoryClickListener() {
             @Override
-            public void onItemClick(AdapterView<?> adapterView, View view, int position, long l) {
-                // Find the current story that was clicked on
-                Story currentStory = mAdapter.getItem(position);
-
+            public void onStoryClick(Story currentStory) {
                 // Convert the String URL into a URI object (to pass into the Intent constructor)
-                assert currentStory != null;
                 Uri storyUri = Uri.parse(currentStory.getShortUrl());
 
                 // Create a new intent to view the story URI
@@ -105,34 +144,294 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
                 startActivity(websiteIntent);
             }
         });
+        // Show the empty view whenever the adapter applied a list without stories
+        mAdapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                updateEmptyView();
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                updateEmptyView();
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                updateEmptyView();
+            }
+        });
+        // Set the adapter on the {@link RecyclerView}
+        // so the list can be populated in the user interface
+        mStoriesRecyclerView.setAdapter(mAdapter);
+        // Paging settings, see res/values/integers.xml
+        mPageSize = getResources().getInteger(R.integer.feed_page_size);
+        mPrefetchDistance = getResources().getInteger(R.integer.feed_prefetch_distance);
+        mPageWindow = new StoryPageWindow(getResources().getInteger(R.integer.feed_max_pages));
+        // Load the thumbnails of the next rows before they are scrolled to
+        mStoriesRecyclerView.addOnScrollListener(mAdapter.createThumbnailPreloader(
+                getResources().getInteger(R.integer.thumbnail_preload_rows)));
+        // Load the next page when the list gets near its end, and a dropped page when it gets
+        // back near its start
+        mStoriesRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                int firstVisibleItem = mLayoutManager.findFirstVisibleItemPosition();
+                if (firstVisibleItem != RecyclerView.NO_POSITION) {
+                    loadAdjacentPage(firstVisibleItem, mLayoutManager.getChildCount(),
+                            mLayoutManager.getItemCount());
+                }
+            }
+        });
+        mSectionColors = new SectionColors(this);
+        mLiveSearch = createLiveSearch();
+        // The logger, response cache, governor and transport of the fetch path are set up by
+        // NewsApplication, the background sync uses them too
+        // Debug builds also measure how much the parser allocates, counting every allocation
+        // slows the app down a little so release builds leave it off
+        if (BuildConfig.DEBUG && !FeedMetrics.get().isCountingAllocations()) {
+            startAllocationCounting();
+        }
+        // Show the stories of the last visit before the first frame, without waiting for the
+        // store or the network. The loader replaces them with its first batch. After a rotation
+        // the loader hands back its last result instead.
+        if (savedInstanceState == null) {
+            showSnapshot();
+        }
+        // Get a reference to the LoaderManager, in order to interact with loaders.
+        LoaderManager loaderManager = getLoaderManager();
+        // Initialize the loader even without a network connection, it shows the stored stories
+        // first and only then asks the network. Pass in the int ID constant defined above and pass
+        // in null for the bundle. Pass in this activity for the LoaderCallbacks parameter (which is
+        // valid because this activity implements the LoaderCallbacks interface).
+        Loader<List<Story>> loader = loaderManager.initLoader(STORY_LOADER_ID, null, this);
+        // A loader kept across a configuration change still points at the old activity,
+        // so hand it this one to publish the stories to while they are parsed.
+        ((StoryLoader) loader).setOnStoriesPublishedListener(this);
+        // The list starts again from page 1, so a page or a refresh loaded before is not needed
+        loaderManager.destroyLoader(PAGE_LOADER_ID);
+        loaderManager.destroyLoader(REFRESH_LOADER_ID);
+    }
+
+    /**
+     * Show the stories of the snapshot, a file of a few KB read with a single read on the main
+     * thread, so they are bound before the first frame is drawn. The read is synchronous on
+     * purpose: handed to the executor, the stories would come after the first frame.
+     */
+    private void showSnapshot() {
+        long start = System.nanoTime();
+        List<Story> snapshot = FeedSnapshot.read(getSnapshotFile());
+        FeedMetrics.get().recordNanos(FeedMetrics.Stage.SNAPSHOT_READ, System.nanoTime() - start);
+        if (snapshot != null && !snapshot.isEmpty()) {
+            mProgressBar.setVisibility(View.GONE);
+            showStories(snapshot);
+        }
+    }
+
+    /**
+     * Save the first page of the shown stories as the snapshot for the next start, on a thread
+     * of the feed executor.
+     */
+    private void saveSnapshot() {
+        // Only a loaded list that starts at page 1 is what the next start should show
+        if (mStories.isEmpty() || mPageWindow.getFirstPage() != 1) {
+            return;
+        }
+        final List<Story> stories = new ArrayList<>(mStories.subList(0, Math.min(mPageSize, mStories.size())));
+        final File file = getSnapshotFile();
+        FeedExecutor.shared().submit(FeedExecutor.Priority.PREFETCH, new FeedExecutor.Task<Void>() {
+            @Override
+            public Void run(FeedExecutor.CancellationToken token) {
+                // The snapshot is read on the main thread, so its stories keep their colors
+                mSectionColors.resolve(stories);
+                try {
+                    FeedSnapshot.write(file, stories);
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Problem saving the feed snapshot.", e);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Return the snapshot file of the sections chosen in the settings.
+     */
+    private File getSnapshotFile() {
+        StringBuilder name = new StringBuilder();
+        for (String sectionTag : getSectionTags(this)) {
+            if (name.length() > 0) {
+                name.append('+');
+            }
+            // Tags are like politics/politics, keep the file name to letters and digits
+            name.append(sectionTag.replaceAll("[^A-Za-z0-9]", "_"));
+        }
+        return new File(new File(getCacheDir(), SNAPSHOT_DIR), name + ".bin");
+    }
+
+    /**
+     * Show the stories, only the rows that differ from the shown list are updated. While the
+     * search is open they are kept for when it is closed.
+     */
+    private void showStories(List<Story> stories) {
+        mStories = stories;
+        if (!mSearching) {
+            mAdapter.submitList(stories);
+        }
+        updateEmptyView();
+    }
+
+    /**
+     * Show the empty view when the list has no stories and nothing is loading.
+     */
+    private void updateEmptyView() {
+        boolean empty;
+        if (mSearching) {
+            // Only say nothing was found once the network answered
+            empty = mSearchComplete && mSearchResults.isEmpty() && !mLiveSearch.getQuery().isEmpty();
+        } else {
+            empty = mStories.isEmpty() && mAdapter.getItemCount() == 0
+                    && mProgressBar.getVisibility() != View.VISIBLE;
+        }
+        mEmptyStateTextView.setVisibility(empty ? View.VISIBLE : View.GONE);
+    }
+
+    /**
+     * Create the live search: the stored stories of all the sections right away, then the
+     * Guardian search once the typing pauses.
+     */
+    private LiveSearch createLiveSearch() {
+        final Handler handler = new Handler(Looper.getMainLooper());
+        final StoryStore store = StoryStore.getInstance(this);
+        return new LiveSearch(FeedExecutor.shared(), new LiveSearch.Scheduler() {
+            @Override
+            public void postDelayed(Runnable runnable, long delayMillis) {
+                handler.postDelayed(runnable, delayMillis);
+            }
+
+            @Override
+            public void removeCallbacks(Runnable runnable) {
+                handler.removeCallbacks(runnable);
+            }
+        }, new LiveSearch.Searcher() {
+            @Override
+            public List<Story> searchStored(String query, int limit) {
+                List<Story> stories = store.search(query, limit);
+                // The results go to the adapter as they are, like the loaded stories
+                mSectionColors.resolve(stories);
+                return stories;
+            }
+
+            @Override
+            public List<Story> searchNetwork(String query, int limit, FeedExecutor.CancellationToken token) {
+                // A search is not worth a place in the response cache, nor a retry once the
+                // user typed past it
+                List<Story> stories = QueryUtils.fetchUncachedStoryData(buildSearchUrl(query, limit), token);
+                mSectionColors.resolve(stories);
+                return stories;
+            }
+        }, this,
+                getResources().getInteger(R.integer.search_debounce_millis),
+                TimeUnit.SECONDS.toMillis(getResources().getInteger(R.integer.search_cache_ttl_seconds)),
+                getResources().getInteger(R.integer.search_page_size));
+    }
+
+    /**
+     * Show the search results in the list instead of the feed.
+     */
+    private void startSearch() {
+        mSearching = true;
+        mSearchComplete = false;
+        mSearchResults = new ArrayList<>();
+        // Refresh and paging are for the feed
+        swipeLayout.setEnabled(false);
+        mEmptyStateTextView.setText(R.string.no_search_results);
+        mAdapter.submitList(mSearchResults);
+        updateEmptyView();
+    }
+
+    /**
+     * Stop the search on its way and show the feed again.
+     */
+    private void stopSearch() {
+        mLiveSearch.cancel();
+        mSearching = false;
+        mSearchResults = new ArrayList<>();
+        swipeLayout.setEnabled(true);
+        mEmptyStateTextView.setText(isConnected() ? R.string.no_stories : R.string.no_internet_connection);
+        mAdapter.submitList(mStories);
+        updateEmptyView();
+    }
+
+    @Override
+    public void onSearchResults(String query, List<Story> stories, boolean complete) {
+        if (!mSearching) {
+            return;
+        }
+        mSearchComplete = complete;
+        if (stories != null) {
+            mSearchResults = stories;
+            mAdapter.submitList(stories);
+        } else if (!isConnected()) {
+            // The search failed, the stories found without the network stay
+            mEmptyStateTextView.setText(R.string.no_internet_connection);
+        }
+        updateEmptyView();
+    }
+
+    /**
+     * Return true when there is a network connection.
+     */
+    private boolean isConnected() {
         // Get a reference to the ConnectivityManager to check state of network connectivity
         ConnectivityManager connMgr = (ConnectivityManager)
                 getSystemService(Context.CONNECTIVITY_SERVICE);
         // Get details on the currently active default data network
         assert connMgr != null;
         NetworkInfo networkInfo = connMgr.getActiveNetworkInfo();
-        // If there is a network connection, fetch data
-        if (networkInfo != null && networkInfo.isConnected()) {
-            // Get a reference to the LoaderManager, in order to interact with loaders.
-            LoaderManager loaderManager = getLoaderManager();
-            // Initialize the loader. Pass in the int ID constant defined above and pass in null for
-            // the bundle. Pass in this activity for the LoaderCallbacks parameter (which is valid
-            // because this activity implements the LoaderCallbacks interface).
-            loaderManager.initLoader(STORY_LOADER_ID, null, this);
-        } else {
-            // Otherwise, display error
-            // First, hide loading indicator so error message will be visible
-            mProgressBar.setVisibility(View.GONE);
-
-            // Update empty state with no connection error message
-            mEmptyStateTextView.setText(R.string.no_internet_connection);
-        }
+        return networkInfo != null && networkInfo.isConnected();
     }
     // @Override the onCreateOptionsMenu method to inflate the tool_bar_menu.xml resource for the toolbar menu THEN
     // Return super true.
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.tool_bar_menu, menu);
+        // The metrics are a debugging tool
+        menu.findItem(R.id.action_metrics).setVisible(BuildConfig.DEBUG);
+
+        // Search as the query is typed, the list goes back to the feed when the search is closed
+        MenuItem searchItem = menu.findItem(R.id.action_search);
+        final SearchView searchView = (SearchView) searchItem.getActionView();
+        searchView.setQueryHint(getString(R.string.search_hint));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                // The search already runs, only hide the keyboard
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                if (mSearching) {
+                    mLiveSearch.setQuery(newText);
+                }
+                return true;
+            }
+        });
+        searchItem.setOnActionExpandListener(new MenuItem.OnActionExpandListener() {
+            @Override
+            public boolean onMenuItemActionExpand(MenuItem item) {
+                startSearch();
+                return true;
+            }
+
+            @Override
+            public boolean onMenuItemActionCollapse(MenuItem item) {
+                stopSearch();
+                return true;
+            }
+        });
         return super.onCreateOptionsMenu(menu);
     }
     // Overriding the onOptionsItemSelected for the tool bar menu,
@@ -180,41 +479,246 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
                 // Start the activity inside the intent
                 startActivity(settingsIntent);
                 break;
+            // Case of the Feed metrics debug item.
+            case R.id.action_metrics:
+                showMetrics();
+                break;
             default:
                 break;
         }
         return true;
     }
 
+    /**
+     * Show the stage timings of the fetch pipeline. Export shares them as JSON (to keep the
+     * p50/p95/p99 of every build), Reset starts measuring again.
+     */
+    private void showMetrics() {
+        final View metricsView = LayoutInflater.from(this).inflate(R.layout.metrics_layout, null);
+        final TextView metricsTextView = metricsView.findViewById(R.id.metrics_tv);
+        metricsTextView.setText(FeedMetrics.get().report());
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.metrics)
+                .setView(metricsView)
+                .setPositiveButton(R.string.metrics_export, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        Intent exportIntent = new Intent(Intent.ACTION_SEND);
+                        exportIntent.setType("application/json");
+                        exportIntent.putExtra(Intent.EXTRA_SUBJECT, getString(R.string.metrics_export_subject));
+                        exportIntent.putExtra(Intent.EXTRA_TEXT, FeedMetrics.get().exportJson());
+                        startActivity(Intent.createChooser(exportIntent, getString(R.string.metrics_export)));
+                    }
+                })
+                .setNeutralButton(R.string.metrics_reset, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        FeedMetrics.get().reset();
+                    }
+                })
+                .setNegativeButton(R.string.back, null)
+                .show();
+    }
+
+    /**
+     * Let {@link FeedMetrics} read the bytes allocated by the loader threads.
+     */
+    @SuppressWarnings("deprecation")
+    private static void startAllocationCounting() {
+        Debug.startAllocCounting();
+        FeedMetrics.get().setAllocationCounter(new FeedMetrics.AllocationCounter() {
+            @Override
+            public long getThreadAllocatedBytes() {
+                return Debug.getThreadAllocSize();
+            }
+        });
+    }
+
+    /**
+     * Start loading the page after the last one when the list is scrolled near its end, or the
+     * page before the first one when it is scrolled near its start.
+     */
+    private void loadAdjacentPage(int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+        if (mSearching || mPageLoading || totalItemCount == 0 || mPageWindow.getLastPage() == 0) {
+            return;
+        }
+        if (firstVisibleItem + visibleItemCount >= totalItemCount - mPrefetchDistance
+                && !mPageWindow.isLastPageReached()) {
+            loadPage(mPageWindow.getLastPage() + 1);
+        } else if (firstVisibleItem <= mPrefetchDistance && mPageWindow.getFirstPage() > 1) {
+            loadPage(mPageWindow.getFirstPage() - 1);
+        }
+    }
+
+    private void loadPage(int page) {
+        mPageLoading = true;
+        Bundle args = new Bundle();
+        args.putInt(ARG_PAGE, page);
+        getLoaderManager().restartLoader(PAGE_LOADER_ID, args, this);
+    }
+
+    /**
+     * Add a page loaded while scrolling to the list. The rows on the screen stay where they are:
+     * the adapter only inserts and removes the rows of the added and dropped pages.
+     */
+    private void onPageLoaded(int page, List<Story> stories) {
+        mPageLoading = false;
+        if (stories == null || (page >= mPageWindow.getFirstPage() && page <= mPageWindow.getLastPage())) {
+            // The request failed (the next scroll asks again), or the page is already shown
+            return;
+        }
+        if (page > mPageWindow.getLastPage()) {
+            mPageWindow.appendPage(page, stories, mPageSize);
+        } else {
+            mPageWindow.prependPage(page, stories);
+        }
+        showStories(mPageWindow.getStories());
+    }
+
     @Override
     // onCreateLoader instantiates and returns a new Loader for the given ID
     public Loader<List<Story>> onCreateLoader(int id, Bundle args) {
         Log.d(LOG_TAG, "This is the OnCreateLoader Method");
 //        // Create a new loader for the given URL
 //        return new StoryLoader(this, GUARDIAN_REQUEST_URL);
-        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
+        int page = id == PAGE_LOADER_ID ? args.getInt(ARG_PAGE, 1) : 1;
+        String fromDate = id == REFRESH_LOADER_ID ? args.getString(ARG_FROM_DATE) : null;
+        Map<String, String> sectionUrls = new LinkedHashMap<>();
+        List<String> sectionTags = getSectionTags(this);
+        for (String sectionTag : sectionTags) {
+            sectionUrls.put(sectionTag, buildStoryUrl(sectionTag, page, mPageSize, fromDate));
+        }
+        if (id == STORY_LOADER_ID) {
+            // The background sync keeps the recently viewed sections fresh as well
+            FeedSync.recordViewedSections(this, sectionTags);
+        }
+
+        StoryLoader storyLoader = new StoryLoader(this, sectionUrls, page, mPageSize, fromDate != null);
+        if (id == STORY_LOADER_ID) {
+            storyLoader.setOnStoriesPublishedListener(this);
+        }
+        return storyLoader;
+    }
+
+    /**
+     * Return the tags of the sections chosen in the settings, e.g. politics/politics.
+     */
+    static List<String> getSectionTags(Context context) {
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
         // getString retrieves a String value from the preferences. The second parameter is the default value for this preference.
         String storyTypeToView = sharedPrefs.getString(
-                getString(R.string.settings_view_by_key),
-                getString(R.string.settings_view_by_default));
+                context.getString(R.string.settings_view_by_key),
+                context.getString(R.string.settings_view_by_default));
+        // Two or more sections chosen in the settings are loaded together as one feed
+        Set<String> sectionsToView = sharedPrefs.getStringSet(
+                context.getString(R.string.settings_sections_key), new HashSet<String>());
 
-        // parse breaks apart the URI string that's passed into its parameter
-        Uri baseUri = Uri.parse(GUARDIAN_REQUEST_URL);
-
-        // buildUpon prepares the baseUri that we just parsed so we can add query parameters to it
-        Uri.Builder uriBuilder = baseUri.buildUpon();
+        List<String> sectionTags = new ArrayList<>();
+        if (sectionsToView.size() > 1) {
+            for (String section : new TreeSet<>(sectionsToView)) {
+                sectionTags.add(section + "/" + section);
+            }
+        } else {
+            sectionTags.add(storyTypeToView + "/" + storyTypeToView);
+        }
+        return sectionTags;
+    }
 
-        // Append query parameter and its value. For example, the `format=geojson`
-        uriBuilder.appendQueryParameter("q", "debate");
-//        uriBuilder.appendQueryParameter("tag", "politics/politics");
-        uriBuilder.appendQueryParameter("tag", storyTypeToView + "/" + storyTypeToView);
-        uriBuilder.appendQueryParameter("page-size", "100");
-        uriBuilder.appendQueryParameter("show-tags", "contributor");
-        uriBuilder.appendQueryParameter("show-fields", "trailText,headline,thumbnail,shortUrl");
-        uriBuilder.appendQueryParameter("api-key", "test");
+    /**
+     * Build the Guardian search URL of one page of the section tag. The background sync builds
+     * the same URLs, so its responses are found in the response cache.
+     *
+     * @param fromDate only ask for the stories published since this date, or null for all
+     */
+    static String buildStoryUrl(String sectionTag, int page, int pageSize, String fromDate) {
+        // GuardianQuery adds the query parameters in order to the base URL
+        GuardianQuery query = new GuardianQuery(GUARDIAN_REQUEST_URL)
+                .query("debate")
+//                .tag("politics/politics")
+                .tag(sectionTag)
+                // Newest first, so the pages follow each other in time and match the stored stories
+                .orderBy("newest")
+                // A refresh only asks for what was published since the newest shown story,
+                // a null from-date is left out
+                .fromDate(fromDate)
+                .page(page)
+                .pageSize(pageSize)
+                .showTags("contributor")
+                .showFields("trailText,headline,thumbnail,shortUrl")
+                .apiKey("test");
 
         // Return the completed uri `https://content.guardianapis.com/search?q=debate%20AND%20(economy%20OR%20immigration%20education)&tag=politics/politics&from-date=2018-01-01&to-date=2018-06-01&page-size=100&show-tags=contributor&show-fields=trailText,headline,thumbnail,shortUrl&api-key=test'
-        return new StoryLoader(this, uriBuilder.toString());
+        return query.build();
+    }
+
+    /**
+     * Build the Guardian search URL of the query typed in the search, in all the sections and
+     * best match first. One small page, the search is asked again as the query changes.
+     */
+    static String buildSearchUrl(String terms, int pageSize) {
+        return new GuardianQuery(GUARDIAN_REQUEST_URL)
+                .query(terms)
+                .orderBy("relevance")
+                .pageSize(pageSize)
+                .showTags("contributor")
+                .showFields("trailText,headline,thumbnail,shortUrl")
+                .apiKey("test")
+                .build();
+    }
+    // onStoriesPublished method, called with small batches while the loader is still parsing
+    @Override
+    public void onStoriesPublished(List<Story> stories, boolean firstBatch) {
+        // The first headlines are here, so the spinner is not needed anymore
+        mProgressBar.setVisibility(View.GONE);
+
+        // A new load starts from an empty list
+        List<Story> shown = new ArrayList<>(firstBatch ? new ArrayList<Story>() : mStories);
+        shown.addAll(stories);
+        showStories(shown);
+    }
+    // onStoriesChanged method, called with the new or changed stories after the stored ones were shown
+    @Override
+    public void onStoriesChanged(List<Story> changedStories) {
+        // Replace the shown story with the same short URL, or add the new story to the list
+        List<Story> shown = new ArrayList<>(mStories);
+        for (Story changedStory : changedStories) {
+            int position = findStoryPosition(shown, changedStory.getShortUrl());
+            if (position >= 0) {
+                shown.set(position, changedStory);
+            } else {
+                shown.add(findDatePosition(shown, changedStory.getPublishedMillis()), changedStory);
+            }
+        }
+        showStories(shown);
+    }
+
+    /**
+     * Return the position of the story with this short URL in the list, or -1.
+     */
+    private static int findStoryPosition(List<Story> stories, String shortUrl) {
+        for (int i = 0; i < stories.size(); i++) {
+            Story story = stories.get(i);
+            if (shortUrl != null && shortUrl.equals(story.getShortUrl())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Return the position that keeps the newest first order for a story published at this time,
+     * in epoch milliseconds or -1 for a story without a date.
+     */
+    private static int findDatePosition(List<Story> stories, long publishedMillis) {
+        if (publishedMillis < 0) {
+            return stories.size();
+        }
+        for (int i = 0; i < stories.size(); i++) {
+            if (publishedMillis > stories.get(i).getPublishedMillis()) {
+                return i;
+            }
+        }
+        return stories.size();
     }
     // onLoadFinished method
     @Override
@@ -223,39 +727,129 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
 
         Log.d(LOG_TAG, "This is the onLoadFinished Method");
 
-        // Set empty state text to display "No stories found."
-        mEmptyStateTextView.setText(R.string.no_stories);
+        // A page loaded while scrolling
+        if (loader.getId() == PAGE_LOADER_ID) {
+            onPageLoaded(((StoryLoader) loader).getPage(), stories);
+            return;
+        }
 
-        // Setting the progress spinner to gone when list is fetched
-        mProgressBar.setVisibility(View.GONE);
+        // The stories published since the last load
+        if (loader.getId() == REFRESH_LOADER_ID) {
+            onRefreshLoaded(stories);
+            return;
+        }
 
+        // Page 1 starts the list of pages again
+        mPageWindow.reset(stories != null ? stories : new ArrayList<Story>(), mPageSize);
 
-        // Clear the adapter of previous story data
-        mAdapter.clear();
+        // Set empty state text to display "No stories found.", or the connection error message
+        // when there is nothing stored and no network. The search has its own text, stopSearch
+        // sets this one again.
+        if (!mSearching) {
+            mEmptyStateTextView.setText(isConnected() ? R.string.no_stories : R.string.no_internet_connection);
+        }
 
-        // If there is a valid list of {@link Story}s, then add them to the adapter's
-        // data set. This will trigger the ListView to update.
-        if (stories != null && !stories.isEmpty()) {
-            // Add the Stories data
-            mAdapter.addAll(stories);
+        // Setting the progress spinner to gone when list is fetched
+        mProgressBar.setVisibility(View.GONE);
+        swipeLayout.setRefreshing(false);
+
+        // The stored stories and the changed ones are already in the list
+        if (((StoryLoader) loader).isDeliveredIncrementally() && !mStories.isEmpty()) {
+            updateEmptyView();
+            return;
         }
+
+        // Replace the previous story data and the batches published while parsing. The rows
+        // that did not change stay as they are, so the list keeps its scroll position.
+        showStories(stories != null ? new ArrayList<>(stories) : new ArrayList<Story>());
     }
     // onLoaderReset method
     @Override
     public void onLoaderReset(Loader<List<Story>> loader) {
         Log.d(LOG_TAG, "This is the onLoaderReset Method");
+        if (loader.getId() == PAGE_LOADER_ID) {
+            mPageLoading = false;
+            return;
+        }
+        if (loader.getId() == REFRESH_LOADER_ID) {
+            swipeLayout.setRefreshing(false);
+            return;
+        }
 
         // Loader reset, so we can clear out our existing data.
-        mAdapter.clear();
+        showStories(new ArrayList<Story>());
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        // The app may not come back before it is killed, keep what is shown for the next start.
+        // The file is written on the executor, onStop does not wait for it
+        saveSnapshot();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // Nothing left to show the search results in
+        mLiveSearch.cancel();
+        // Stop the loader from publishing stories to this destroyed activity
+        Loader<List<Story>> loader = getLoaderManager().getLoader(STORY_LOADER_ID);
+        if (loader != null) {
+            ((StoryLoader) loader).setOnStoriesPublishedListener(null);
+        }
     }
 
     @Override
     public void onRefresh() {
-        new Handler().postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                swipeLayout.setRefreshing(false);
+        String newestDate = findNewestDate(mStories);
+        if (newestDate == null || mPageWindow.getLastPage() == 0) {
+            // Nothing shown to compare with, load the whole first page again
+            getLoaderManager().restartLoader(STORY_LOADER_ID, null, this);
+            return;
+        }
+        // Only ask for the stories published since the newest shown one, usually a few KB
+        Bundle args = new Bundle();
+        args.putString(ARG_FROM_DATE, newestDate);
+        getLoaderManager().restartLoader(REFRESH_LOADER_ID, args, this);
+    }
+
+    /**
+     * Put the stories loaded by a refresh at the top of the list.
+     */
+    private void onRefreshLoaded(List<Story> stories) {
+        // The newer stories are here, stop the spinner right away
+        swipeLayout.setRefreshing(false);
+        if (stories == null) {
+            // The request failed, the shown stories stay as they are
+            return;
+        }
+        if (stories.size() >= mPageSize) {
+            // A full page of new stories, there may be more between them and the shown ones,
+            // so load the first page again instead of leaving a gap
+            getLoaderManager().restartLoader(STORY_LOADER_ID, null, this);
+            return;
+        }
+        // from-date includes the newest shown story itself, addNewest only replaces the stories
+        // that are already in the list
+        if (!stories.isEmpty()) {
+            mPageWindow.addNewest(stories);
+            showStories(mPageWindow.getStories());
+        }
+    }
+
+    /**
+     * Return the newest webPublicationDate of the stories, or null when none has a date.
+     */
+    private static String findNewestDate(List<Story> stories) {
+        Story newest = null;
+        for (Story story : stories) {
+            // -1 when there is no date
+            if (story.getPublishedMillis() >= 0
+                    && (newest == null || story.getPublishedMillis() > newest.getPublishedMillis())) {
+                newest = story;
             }
-        }, 5000);
+        }
+        return newest == null ? null : newest.getDate();
     }
 }
@@ -0,0 +1,59 @@
+package com.example.android.yournews;
+
+import android.app.Application;
+import android.util.Log;
+
+import java.io.File;
+
+/**
+ * Sets up the fetch path once per process, for the activities and for the background sync:
+ * the logger, the response cache, the request governor and the transport. Then schedules the
+ * sync jobs.
+ */
+public class NewsApplication extends Application {
+
+    /**
+     * Folder name and maximum size of the disk cache of Guardian responses
+     */
+    private static final String RESPONSE_CACHE_DIR = "guardian-responses";
+    private static final long RESPONSE_CACHE_SIZE = 4 * 1024 * 1024;
+    /**
+     * Quota of the Guardian developer key: 1 request a second, and a burst of 5 for the sections
+     * of a feed. After 5 failed attempts in a row the API is left alone for 30 seconds.
+     */
+    static final double API_REQUESTS_PER_SECOND = 1;
+    private static final int API_BURST = 5;
+    private static final int CIRCUIT_FAILURE_THRESHOLD = 5;
+    private static final long CIRCUIT_OPEN_MILLIS = 30000;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // The fetch path lives in the plain Java :core module, its messages go to logcat
+        FeedLog.setLogger(new FeedLog.Logger() {
+            @Override
+            public void debug(String tag, String message) {
+                Log.d(tag, message);
+            }
+
+            @Override
+            public void error(String tag, String message, Throwable error) {
+                Log.e(tag, message, error);
+            }
+        });
+        // Keep the responses on disk so a repeated load can be a conditional request.
+        // The cache reads nothing from the disk until a background thread uses it.
+        QueryUtils.setResponseCache(new HttpResponseDiskCache(
+                new File(getCacheDir(), RESPONSE_CACHE_DIR), RESPONSE_CACHE_SIZE));
+        // Keep within the API quota, pages loaded ahead give way first, and stop asking a broken
+        // API while the cached responses are shown instead
+        QueryUtils.setRequestGovernor(new RequestGovernor(API_REQUESTS_PER_SECOND, API_BURST,
+                CIRCUIT_FAILURE_THRESHOLD, CIRCUIT_OPEN_MILLIS));
+        // OkHttp shares one pool of connections (HTTP/2 when the server offers it) across all
+        // the requests, instead of the default HttpURLConnection transport
+        QueryUtils.setTransport(new OkHttpTransport());
+
+        // Refresh the sections in the background, so opening the app finds them stored
+        FeedSync.schedule(this);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.android.yournews;
+
+import android.content.Context;
+import android.support.v4.content.ContextCompat;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves the color of the section name of every {@link Story} on the loader thread, so the
+ * adapter only has to set it. The colors are looked up once per section name.
+ */
+final class SectionColors {
+
+    private final Context mContext;
+    private final Map<String, Integer> mColors = new HashMap<>();
+
+    SectionColors(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    /**
+     * Set the section color of the stories that do not have one yet.
+     */
+    synchronized void resolve(List<Story> stories) {
+        if (stories == null) {
+            return;
+        }
+        for (Story story : stories) {
+            if (story.getSectionColor() == 0) {
+                story.setSectionColor(getColor(story.getSectionName()));
+            }
+        }
+    }
+
+    private int getColor(String sectionName) {
+        Integer color = mColors.get(sectionName);
+        if (color == null) {
+            color = ContextCompat.getColor(mContext, getColorResource(sectionName));
+            mColors.put(sectionName, color);
+        }
+        return color;
+    }
+
+    // Helper method to find the section name text color
+    private static int getColorResource(String sectionName) {
+        if (sectionName == null) {
+            return R.color.sectionName;
+        }
+        switch (sectionName) {
+            case "":
+            case "Business":
+                return R.color.business;
+            case "UK news":
+                return R.color.ukNews;
+            case "Politics":
+                return R.color.politics;
+            case "News":
+                return R.color.news;
+            case "Opinion":
+                return R.color.opinion;
+            case "Education":
+                return R.color.education;
+            case "Media":
+                return R.color.media;
+            case "WorldNews":
+                return R.color.worldNews;
+            case "Science":
+                return R.color.science;
+            case "Global development":
+                return R.color.globalDevelopment;
+            case "Higher Education Network":
+                return R.color.higherEducationNetwork;
+            default:
+                return R.color.sectionName;
+        }
+    }
+}
@@ -3,11 +3,15 @@ package com.example.android.yournews;
 import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.preference.ListPreference;
+import android.preference.MultiSelectListPreference;
 import android.preference.Preference;
 import android.preference.PreferenceFragment;
 import android.preference.PreferenceManager;
 import android.support.v7.app.AppCompatActivity;
 
+import java.util.HashSet;
+import java.util.Set;
+
 public class SettingsActivity extends AppCompatActivity {
 
     @Override
@@ -25,11 +29,33 @@ public class SettingsActivity extends AppCompatActivity {
 
             Preference viewBy = findPreference(getString(R.string.settings_view_by_key));
             bindPreferenceSummaryToValue(viewBy);
+
+            Preference sections = findPreference(getString(R.string.settings_sections_key));
+            sections.setOnPreferenceChangeListener(this);
+            onPreferenceChange(sections, sections.getSharedPreferences().getStringSet(
+                    sections.getKey(), new HashSet<String>()));
         }
 
         @Override
         public boolean onPreferenceChange(Preference preference, Object newValue) {
             // The code in this method takes care of updating the displayed preference summary after it has been changed
+            if (preference instanceof MultiSelectListPreference) {
+                // Show the labels of the selected sections, or the default summary when none is selected
+                MultiSelectListPreference multiSelectPreference = (MultiSelectListPreference) preference;
+                StringBuilder labels = new StringBuilder();
+                for (Object value : (Set<?>) newValue) {
+                    int index = multiSelectPreference.findIndexOfValue(value.toString());
+                    if (index >= 0) {
+                        if (labels.length() > 0) {
+                            labels.append(", ");
+                        }
+                        labels.append(multiSelectPreference.getEntries()[index]);
+                    }
+                }
+                preference.setSummary(labels.length() > 0 ? labels.toString()
+                        : getString(R.string.settings_sections_summary));
+                return true;
+            }
             String stringValue = newValue.toString();
             if (preference instanceof ListPreference) {
                 ListPreference listPreference = (ListPreference) preference;
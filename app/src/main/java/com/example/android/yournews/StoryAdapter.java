@@ -1,161 +1,172 @@
 package com.example.android.yournews;
 
-import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.res.ColorStateList;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
-import android.support.v4.content.ContextCompat;
+import android.support.v7.recyclerview.extensions.ListAdapter;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
 import android.widget.ImageView;
 import android.widget.TextView;
 
-import com.bumptech.glide.Glide;
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.integration.recyclerview.RecyclerViewPreloader;
+import com.bumptech.glide.util.FixedPreloadSizeProvider;
 
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
-public class StoryAdapter extends ArrayAdapter<Story> {
-    private static final String DATE_SEPARATOR = "T";
-    private static final String TRIAL_TEXT_SYNTAX1 = "<strong>Letters: ";
+/**
+ * {@link RecyclerView} adapter of the stories. A new list is given with {@link #submitList}; the
+ * difference with the shown list is worked out on a background thread by {@link DiffUtil},
+ * matching the stories by short URL, so only the rows that changed are bound again and the
+ * scroll position is kept.
+ */
+public class StoryAdapter extends ListAdapter<Story, StoryAdapter.StoryViewHolder> {
 
     /**
-     * This is our own custom constructor (it doesn't mirror a superclass constructor).
-     * The context is used to inflate the layout file, and the list is the data we want
-     * to populate into the lists.
-     * @param context     The current context. Used to inflate the layout file.
-     * @param stories A List of AndroidFlavor objects to display in a list
+     * Called when a story of the list is clicked.
      */
-    public StoryAdapter(MainActivity context, ArrayList<Story> stories) {
-        super(context, 0, stories);
+    public interface OnStoryClickListener {
+        void onStoryClick(Story story);
     }
+
     /**
-     * Provides a view for an AdapterView (ListView, GridView, etc.)
-     *
-     * @param position    The position in the list of data that should be displayed in the
-     *                    list item view.
-     * @param convertView The recycled view to populate.
-     * @param parent      The parent ViewGroup that is used for inflation.
-     * @return The View for the position in the AdapterView.
+     * Two stories are the same row when they have the same short URL, and that row has to be
+     * bound again when one of the shown values changed.
+     */
+    private static final DiffUtil.ItemCallback<Story> DIFF_CALLBACK = new DiffUtil.ItemCallback<Story>() {
+        @Override
+        public boolean areItemsTheSame(Story oldStory, Story newStory) {
+            // Compares the encoded URLs, without decoding them for every pair DiffUtil tries
+            return oldStory.hasSameShortUrl(newStory);
+        }
+
+        @Override
+        public boolean areContentsTheSame(Story oldStory, Story newStory) {
+            return oldStory.equals(newStory) && oldStory.getSectionColor() == newStory.getSectionColor();
+        }
+    };
+
+    private final Context mContext;
+    private final OnStoryClickListener mClickListener;
+    private final Thumbnails mThumbnails;
+    /** Shown instead of the time when the date has none */
+    private final String mNotDefined;
+
+    /**
+     * @param context       The current context. Used to inflate the layout file.
+     * @param clickListener Gets the clicked stories
      */
-    @SuppressLint("SetTextI18n")
+    public StoryAdapter(Context context, OnStoryClickListener clickListener) {
+        super(DIFF_CALLBACK);
+        mContext = context;
+        mClickListener = clickListener;
+        mThumbnails = new Thumbnails(context);
+        mNotDefined = context.getString(R.string.not_defined);
+    }
+
     @NonNull
     @Override
-    public View getView(int position, @Nullable View convertView, @NonNull ViewGroup parent) {
-        // Check if the existing view is being reused, otherwise inflate the view
-        View listItemView = convertView;
-        if (listItemView == null) {
-            listItemView = LayoutInflater.from(getContext()).inflate(
-                    R.layout.list_item, parent, false);
-        }
+    public StoryViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View listItemView = LayoutInflater.from(mContext).inflate(R.layout.list_item, parent, false);
+        return new StoryViewHolder(listItemView);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull StoryViewHolder holder, int position) {
+        long start = System.nanoTime();
         // Get the {@link Story} object located at this position in the list
         Story currentStory = getItem(position);
-        // Find the TextView in the list_item.xml layout with the ID sectionName
-        TextView sectionNameTextView = listItemView.findViewById(R.id.sectionName);
-        // Change the section name text color using the getSectionNameColor helper method
-        assert currentStory != null;
-        sectionNameTextView.setTextColor(getSectionNameColor(currentStory.getSectionName()));
-        // Get the section name value from the current Story object and
-        // set this text on the section name TextView
-        sectionNameTextView.setText(currentStory.getSectionName());
-        ///// DATE SPLIT /////
-        String originalDateValue = currentStory.getDate();
-        String date;
-        String time;
-        if (originalDateValue.contains(DATE_SEPARATOR)) {
-            String[] parts = originalDateValue.split(DATE_SEPARATOR);
-            date = parts[0];
-            time = parts[1];
-            time = time.substring(0, time.length() - 4);
-        } else {
-            time = getContext().getString(R.string.not_defined);
-            date = originalDateValue;
-        }
-        ///// Setting date & time TVs /////
-        TextView dateTv = listItemView.findViewById(R.id.dateTv);
-        dateTv.setText(date);
-        TextView timeTv = listItemView.findViewById(R.id.timeTv);
-        timeTv.setText(time);
-
-        // Find the TextView in the list_item.xml layout with the ID author
-        TextView author = listItemView.findViewById(R.id.author);
-        author.setText(currentStory.getAuthor());
-
-        // Find the TextView in the list_item.xml layout with the ID headline
-        TextView headlineTextView = listItemView.findViewById(R.id.headline);
-        headlineTextView.setText(currentStory.getHeadline());
-
-        ////// TRIAL TXT WEB SYNTAX SPLIT //////
-        String originalTrialTextValue = currentStory.getTrailText();
-        String trialText;
-        if (originalTrialTextValue.contains(TRIAL_TEXT_SYNTAX1)) {
-            String[] parts = originalTrialTextValue.split(TRIAL_TEXT_SYNTAX1);
-            trialText = parts[1];
+
+        // Everything shown was worked out by the loader, so binding only sets the values
+        if (currentStory.getSectionColor() != 0) {
+            holder.sectionName.setTextColor(currentStory.getSectionColor());
         } else {
-            trialText = originalTrialTextValue;
+            holder.sectionName.setTextColor(holder.defaultSectionColor);
         }
-        // Find the TextView in the list_item.xml layout with the ID trailText
-        TextView trailTextTextView = listItemView.findViewById(R.id.trailText);
-        trailTextTextView.setText(trialText);
-
-        // Find the TextView in the list_item.xml layout with the ID shortUrl
-        TextView shortUrlTextView = listItemView.findViewById(R.id.shortUrl);
-        shortUrlTextView.setText(currentStory.getShortUrl());
-
-        // Find the ImageView in the list_item.xml layout with ID story_thumb
-        ImageView storyThumbnail = listItemView.findViewById(R.id.story_thumb);
-        // Glide to get the image in the thumbnail string URL
-        Glide.with(getContext())
-                .asBitmap()
-                .load(currentStory.getThumbnailUrl())
-                .into(storyThumbnail);
-
-        // Return the whole list item layout (containing 2 TextViews and an ImageView)
-        // so that it can be shown in the ListView
-        return listItemView;
+        holder.sectionName.setText(currentStory.getSectionName());
+        holder.date.setText(currentStory.getDisplayDate());
+        holder.time.setText(currentStory.getDisplayTime() != null
+                ? currentStory.getDisplayTime() : mNotDefined);
+        holder.author.setText(currentStory.getAuthor());
+        holder.headline.setText(currentStory.getHeadline());
+        holder.trailText.setText(currentStory.getDisplayTrailText());
+        holder.shortUrl.setText(currentStory.getShortUrl());
+
+        // Glide to get the image in the thumbnail string URL, decoded at the size of the view
+        mThumbnails.load(currentStory.getThumbnailUrl(), holder.thumbnail);
+        FeedMetrics.get().recordNanos(FeedMetrics.Stage.BIND, System.nanoTime() - start);
     }
-    // Helper method to change the section name text color
-    private int getSectionNameColor (String sectionName) {
-        int storySectionNameColorRID;
-        switch (sectionName) {
-            case "":
-            case "Business":
-                storySectionNameColorRID = R.color.business;
-                break;
-            case "UK news":
-                storySectionNameColorRID = R.color.ukNews;
-                break;
-            case "Politics":
-                storySectionNameColorRID = R.color.politics;
-                break;
-            case "News":
-                storySectionNameColorRID = R.color.news;
-                break;
-            case "Opinion":
-                storySectionNameColorRID = R.color.opinion;
-                break;
-            case "Education":
-                storySectionNameColorRID = R.color.education;
-                break;
-            case "Media":
-                storySectionNameColorRID = R.color.media;
-                break;
-            case "WorldNews":
-                storySectionNameColorRID = R.color.worldNews;
-                break;
-            case "Science":
-                storySectionNameColorRID = R.color.science;
-                break;
-            case "Global development":
-                storySectionNameColorRID = R.color.globalDevelopment;
-                break;
-            case "Higher Education Network":
-                storySectionNameColorRID = R.color.higherEducationNetwork;
-                break;
-            default:
-                storySectionNameColorRID = R.color.sectionName;
-                break;
+
+    /**
+     * Return a scroll listener of the list that loads the thumbnails of the next rows in the
+     * direction of the scroll, so they are in the memory cache before the rows are shown.
+     *
+     * @param rows how many rows ahead to load
+     */
+    public RecyclerViewPreloader<Story> createThumbnailPreloader(int rows) {
+        ListPreloader.PreloadModelProvider<Story> modelProvider = new ListPreloader.PreloadModelProvider<Story>() {
+            @NonNull
+            @Override
+            public List<Story> getPreloadItems(int position) {
+                // The list may have changed since the scroll that asked for this position
+                if (position >= getItemCount() || getItem(position).getThumbnailUrl() == null) {
+                    return Collections.emptyList();
+                }
+                return Collections.singletonList(getItem(position));
+            }
+
+            @Nullable
+            @Override
+            public RequestBuilder<?> getPreloadRequestBuilder(@NonNull Story story) {
+                // The same request as onBindViewHolder, so the row finds the preloaded bitmap
+                return mThumbnails.request(story.getThumbnailUrl());
+            }
+        };
+        return new RecyclerViewPreloader<>(mThumbnails.getRequestManager(), modelProvider,
+                new FixedPreloadSizeProvider<Story>(mThumbnails.getSize(), mThumbnails.getSize()), rows);
+    }
+
+    /**
+     * The views of a list item, found once when the item is inflated.
+     */
+    class StoryViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
+        final TextView sectionName;
+        final TextView date;
+        final TextView time;
+        final TextView author;
+        final TextView headline;
+        final TextView trailText;
+        final TextView shortUrl;
+        final ImageView thumbnail;
+        final ColorStateList defaultSectionColor;
+
+        StoryViewHolder(View listItemView) {
+            super(listItemView);
+            sectionName = listItemView.findViewById(R.id.sectionName);
+            defaultSectionColor = sectionName.getTextColors();
+            date = listItemView.findViewById(R.id.dateTv);
+            time = listItemView.findViewById(R.id.timeTv);
+            author = listItemView.findViewById(R.id.author);
+            headline = listItemView.findViewById(R.id.headline);
+            trailText = listItemView.findViewById(R.id.trailText);
+            shortUrl = listItemView.findViewById(R.id.shortUrl);
+            thumbnail = listItemView.findViewById(R.id.story_thumb);
+            listItemView.setOnClickListener(this);
+        }
+
+        @Override
+        public void onClick(View v) {
+            int position = getAdapterPosition();
+            if (position != RecyclerView.NO_POSITION && mClickListener != null) {
+                mClickListener.onStoryClick(getItem(position));
+            }
         }
-        return ContextCompat.getColor(getContext(), storySectionNameColorRID);
     }
 }
@@ -1,46 +1,518 @@
 package com.example.android.yournews;
 
-import android.content.AsyncTaskLoader;
 import android.content.Context;
+import android.content.Loader;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
-public class StoryLoader extends AsyncTaskLoader<List<Story>> {
+/**
+ * Loads the stories of one page of the feed on the {@link FeedExecutor}, in the lane of its
+ * kind of load: the first page is {@link FeedExecutor.Priority#VISIBLE}, a refresh
+ * {@link FeedExecutor.Priority#REFRESH} and a page loaded while scrolling
+ * {@link FeedExecutor.Priority#PREFETCH}.
+ */
+public class StoryLoader extends Loader<List<Story>> {
     /** Tag for log messages */
     private static final String LOG_TAG = StoryLoader.class.getName();
-    /** Query URL */
-    private String mUrl;
+    /** Number of stories in the first published batch, enough to fill the first screen */
+    private static final int FIRST_BATCH_SIZE = 5;
+    /** Number of stories in every following published batch */
+    private static final int BATCH_SIZE = 15;
+    /** Query URL of every section tag, the stored stories are kept per tag */
+    private Map<String, String> mSectionUrls;
+    /** Time after which the sections that are still loading are left out of a multi-section feed */
+    private long mSectionDeadlineMillis;
+    /** Page of the feed asked for by the query URL, starting at 1, and the stories per page */
+    private int mPage;
+    private int mPageSize;
+    /** True when the urls only ask for the stories newer than the shown ones */
+    private boolean mRefresh;
+    /** Offline copy of the stories */
+    private final StoryStore mStoryStore;
+    /** True when the current load was shown through the listener and only needs its changed rows */
+    private volatile boolean mDeliveredIncrementally;
+    /** Stories of the recently fetched urls, shared by all the loaders */
+    private static StoryMemoryCache sMemoryCache;
+    private final StoryMemoryCache mMemoryCache;
+    /** Last loaded stories and when they were loaded, delivered again while they are fresh */
+    private List<Story> mLastStories;
+    private long mLastLoadedAt;
+    private final long mMemoryCacheTtlMillis;
+    /** Runs the loads, and the load in progress (null when there is none) */
+    private final FeedExecutor mExecutor;
+    private FeedExecutor.FeedFuture<Void> mTask;
+    /** Resolves the section name colors on the loader thread */
+    private final SectionColors mSectionColors;
+    /** Handler used to publish the batches on the main thread */
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    /** Receives the stories while the response is still being parsed, may be null */
+    private volatile OnStoriesPublishedListener mPublishedListener;
+    /** Stage timings of the loads */
+    private final FeedMetrics mMetrics = FeedMetrics.get();
+
+    /**
+     * Receives stories in small batches while the load is still reading the
+     * response. The complete list is still delivered to onLoadFinished at the end of the load.
+     */
+    public interface OnStoriesPublishedListener {
+        /**
+         * Called on the main thread.
+         *
+         * @param stories    the next batch of parsed stories
+         * @param firstBatch true for the first batch of a new load
+         */
+        void onStoriesPublished(List<Story> stories, boolean firstBatch);
+
+        /**
+         * Called on the main thread after the stored stories were published, with only the
+         * stories that are new or changed in the network response.
+         */
+        void onStoriesChanged(List<Story> changedStories);
+    }
+
     /**
      * Constructs a new {@link StoryLoader}.
      *
      * @param context of the activity
-     * @param url to load data from
+     * @param sectionUrls the url to load data from for every section tag, more than one section
+     *                    are loaded at the same time and merged into one feed
+     * @param page the page asked for by the urls, starting at 1
+     * @param pageSize the page size asked for by the urls
      */
-    public StoryLoader(Context context, String url) {
+    public StoryLoader(Context context, Map<String, String> sectionUrls, int page, int pageSize) {
+        this(context, sectionUrls, page, pageSize, false);
+    }
+
+    /**
+     * Constructs a new {@link StoryLoader}.
+     *
+     * @param refresh true when the urls only ask for the stories newer than the shown ones
+     *                (from-date), the result is then only those stories and not the stored ones
+     */
+    public StoryLoader(Context context, Map<String, String> sectionUrls, int page, int pageSize,
+                       boolean refresh) {
         super(context);
-        mUrl = url;
+        mRefresh = refresh;
+        mSectionUrls = new LinkedHashMap<>(sectionUrls);
+        mSectionDeadlineMillis = context.getResources().getInteger(R.integer.feed_section_deadline_millis);
+        mPage = page;
+        mPageSize = pageSize;
+        mStoryStore = StoryStore.getInstance(context);
+        mSectionColors = new SectionColors(context);
+        mMemoryCacheTtlMillis = TimeUnit.SECONDS.toMillis(
+                context.getResources().getInteger(R.integer.feed_memory_cache_ttl_seconds));
+        mMemoryCache = sharedMemoryCache(context);
+        mExecutor = FeedExecutor.shared();
+    }
+
+    /**
+     * Return the memory cache shared by all the loaders, see res/values/integers.xml for its
+     * time to live and size.
+     */
+    static synchronized StoryMemoryCache sharedMemoryCache(Context context) {
+        if (sMemoryCache == null) {
+            sMemoryCache = new StoryMemoryCache(
+                    TimeUnit.SECONDS.toMillis(context.getResources().getInteger(R.integer.feed_memory_cache_ttl_seconds)),
+                    context.getResources().getInteger(R.integer.feed_memory_cache_kb) * 1024L);
+        }
+        return sMemoryCache;
+    }
+
+    /**
+     * Set the listener that gets the stories batch by batch, pass null to stop receiving them.
+     */
+    public void setOnStoriesPublishedListener(OnStoriesPublishedListener listener) {
+        mPublishedListener = listener;
+    }
+
+    /**
+     * Return true when the last result was already shown through the listener, as the stored
+     * stories followed by the changed ones, so onLoadFinished does not need to replace the list.
+     */
+    public boolean isDeliveredIncrementally() {
+        return mDeliveredIncrementally;
+    }
+
+    /**
+     * Return true when this loader only loads the stories newer than the shown ones.
+     */
+    public boolean isRefresh() {
+        return mRefresh;
+    }
+
+    /**
+     * Return the page of the feed this loader loads, starting at 1.
+     */
+    public int getPage() {
+        return mPage;
     }
 
     @Override
     protected void onStartLoading() {
         Log.d(LOG_TAG,"This is the onStartLoading loader Method");
-        forceLoad();
+        // Coming back to the activity within the time to live keeps the shown stories instead
+        // of loading them again (the LoaderManager delivers them again after a rotation)
+        if (mTask != null) {
+            // Still loading, its result is delivered when it is done
+            return;
+        }
+        if (mLastStories == null || takeContentChanged()
+                || SystemClock.elapsedRealtime() - mLastLoadedAt >= mMemoryCacheTtlMillis) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    public void deliverResult(List<Story> stories) {
+        if (stories != null && stories != mLastStories) {
+            mLastStories = stories;
+            mLastLoadedAt = SystemClock.elapsedRealtime();
+        }
+        super.deliverResult(stories);
+    }
+
+    @Override
+    protected void onForceLoad() {
+        super.onForceLoad();
+        // A new load replaces the one in progress
+        onCancelLoad();
+        mTask = mExecutor.submit(getPriority(), new FeedExecutor.Task<Void>() {
+            @Override
+            public Void run(final FeedExecutor.CancellationToken token) {
+                List<Story> result;
+                try {
+                    result = loadInBackground(token);
+                } catch (RuntimeException e) {
+                    // The executor would keep it in the future, deliver the failure instead
+                    Log.e(LOG_TAG, "Problem loading the stories", e);
+                    result = null;
+                }
+                final List<Story> stories = result;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Only the result of the current load is delivered
+                        if (mTask != null && mTask.getToken() == token && !token.isCancelled()) {
+                            mTask = null;
+                            deliverResult(stories);
+                        }
+                    }
+                });
+                return null;
+            }
+        });
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onCancelLoad();
+        mLastStories = null;
+    }
+
+    @Override
+    protected void onAbandon() {
+        super.onAbandon();
+        // Replaced by a new loader, its result will not be used
+        onCancelLoad();
     }
 
     /**
-     * This is on a background thread.
+     * Cancel the load in progress: its result is dropped, its open connections are aborted, the
+     * parser stops before the next story and a retry wait is interrupted. The LoaderManager
+     * calls it (through cancelLoad) on API 16 and later, onReset and onAbandon call it on all
+     * versions.
+     *
+     * @return true when there was a load to cancel
      */
     @Override
-    public List<Story> loadInBackground() {
+    protected boolean onCancelLoad() {
+        if (mTask == null) {
+            return false;
+        }
+        mTask.cancel(true);
+        mTask = null;
+        return true;
+    }
+
+    /**
+     * Return the lane of this load in the {@link FeedExecutor}.
+     */
+    FeedExecutor.Priority getPriority() {
+        if (mRefresh) {
+            return FeedExecutor.Priority.REFRESH;
+        }
+        return mPage > 1 ? FeedExecutor.Priority.PREFETCH : FeedExecutor.Priority.VISIBLE;
+    }
+
+    /**
+     * This is on a background thread of the {@link FeedExecutor}.
+     */
+    private List<Story> loadInBackground(FeedExecutor.CancellationToken token) {
         Log.d(LOG_TAG,"This is the loadInBackground loader Method");
 
-        if (mUrl == null) {
+        long start = System.nanoTime();
+        List<Story> stories = loadStories(token, start);
+        // The adapter only sets the values, everything shown is worked out here
+        mSectionColors.resolve(stories);
+        mMetrics.recordNanos(FeedMetrics.Stage.LOAD, System.nanoTime() - start);
+        return stories;
+    }
+
+    /**
+     * Load the stories of the page, from the store and the network.
+     *
+     * @param startNanos when the load started, to time its first published batch
+     */
+    private List<Story> loadStories(FeedExecutor.CancellationToken token, long startNanos) {
+        mDeliveredIncrementally = false;
+        if (mSectionUrls.isEmpty()) {
+            return null;
+        }
+
+        if (mPage > 1 || mRefresh) {
+            // Later pages are only asked for while scrolling, and a refresh only asks for the
+            // newer stories, fetchSections stores them for the next time
+            return fetchSections(null, new ArrayList<Story>(), token);
+        }
+
+        // Show the stored stories right away, the network response then only adds what changed
+        List<Story> storedStories = queryStore();
+        boolean showingStored = !storedStories.isEmpty() && publish(storedStories, true, token, startNanos);
+
+        // Perform the network request, parse the response, and publish the stories while parsing
+        // when there was nothing stored to show.
+        List<Story> changedStories = new ArrayList<>();
+        List<Story> stories = fetchSections(showingStored ? null : new BatchPublisher(token, startNanos), changedStories, token);
+        if (token.isCancelled()) {
+            // Abandoned, nobody will see the result
             return null;
         }
+        if (stories == null) {
+            // Offline or the request failed, the stored stories are the best we have
+            mDeliveredIncrementally = showingStored;
+            return storedStories;
+        }
+
+        if (showingStored) {
+            mDeliveredIncrementally = changedStories.isEmpty() || publishChanged(changedStories, token);
+        }
+        return queryStore();
+    }
+
+    /**
+     * Load the stories of all the sections and save them in the store. One section is loaded
+     * on this thread, more sections are loaded at the same time and merged into one feed.
+     *
+     * @param listener       gets the stories while they are parsed, only used for one section
+     * @param changedStories collects the stories that were new or changed in the store
+     * @return the loaded stories, or null when no section could be loaded
+     */
+    private List<Story> fetchSections(StoryJsonParser.Listener listener, final List<Story> changedStories,
+                                      final FeedExecutor.CancellationToken token) {
+        if (mSectionUrls.size() == 1) {
+            Map.Entry<String, String> section = mSectionUrls.entrySet().iterator().next();
+            List<Story> stories = fetchStoryData(section.getValue(), listener, token);
+            if (stories != null) {
+                changedStories.addAll(save(section.getKey(), stories));
+            }
+            return stories;
+        }
+
+        SectionFanOut fanOut = new SectionFanOut(mExecutor, mSectionDeadlineMillis);
+        return fanOut.fetchAll(new ArrayList<>(mSectionUrls.keySet()), new SectionFanOut.SectionFetcher() {
+            @Override
+            public List<Story> fetch(String sectionTag, FeedExecutor.CancellationToken sectionToken) {
+                List<Story> stories = fetchStoryData(mSectionUrls.get(sectionTag), null, sectionToken);
+                if (stories != null) {
+                    List<Story> changed = save(sectionTag, stories);
+                    synchronized (changedStories) {
+                        changedStories.addAll(changed);
+                    }
+                }
+                return stories;
+            }
+        }, token);
+    }
 
-        // Perform the network request, parse the response, and extract a list of earthquakes.
-        List<Story> stories = QueryUtils.fetchStoryData(mUrl);
+    /**
+     * Return the stories of the url from the memory cache, or fetch them. A refresh always goes
+     * to the network, and the cached pages are then out of date.
+     *
+     * @param listener gets every story, while it is parsed or from the cache, may be null
+     */
+    private List<Story> fetchStoryData(String url, StoryJsonParser.Listener listener,
+                                       final FeedExecutor.CancellationToken token) {
+        if (mRefresh) {
+            List<Story> stories = QueryUtils.fetchStoryData(url, listener, token);
+            if (stories != null && !stories.isEmpty()) {
+                mMemoryCache.clear();
+            }
+            return stories;
+        }
+        final CountingListener countingListener = new CountingListener(listener);
+        List<Story> stories = mMemoryCache.get(url, new StoryMemoryCache.Fetcher() {
+            @Override
+            public List<Story> fetch(String url) {
+                return QueryUtils.fetchStoryData(url, countingListener, token);
+            }
+        }, token);
+        if (stories != null && listener != null && countingListener.mCount == 0) {
+            // A cache hit, or the fetch of another loader, so nothing was parsed here
+            for (Story story : stories) {
+                listener.onStory(story);
+            }
+        }
         return stories;
     }
+
+    /**
+     * Passes the parsed stories on to a listener (which may be null) and counts the ones of the
+     * last attempt.
+     */
+    private static class CountingListener implements QueryUtils.AttemptListener {
+        private final StoryJsonParser.Listener mListener;
+        private int mCount;
+
+        CountingListener(StoryJsonParser.Listener listener) {
+            mListener = listener;
+        }
+
+        @Override
+        public void onAttemptStarted() {
+            mCount = 0;
+            if (mListener instanceof QueryUtils.AttemptListener) {
+                ((QueryUtils.AttemptListener) mListener).onAttemptStarted();
+            }
+        }
+
+        @Override
+        public void onStory(Story story) {
+            mCount++;
+            if (mListener != null) {
+                mListener.onStory(story);
+            }
+        }
+    }
+
+    /**
+     * Save the fetched stories of a section in the store.
+     *
+     * @return the stories that were new or changed
+     */
+    private List<Story> save(String sectionTag, List<Story> stories) {
+        long start = System.nanoTime();
+        List<Story> changed = mStoryStore.save(sectionTag, stories);
+        mMetrics.recordNanos(FeedMetrics.Stage.STORE_SAVE, System.nanoTime() - start);
+        return changed;
+    }
+
+    /**
+     * Return the stored stories of all the sections, newest first.
+     */
+    private List<Story> queryStore() {
+        long start = System.nanoTime();
+        try {
+            if (mSectionUrls.size() == 1) {
+                return mStoryStore.query(mSectionUrls.keySet().iterator().next(), mPageSize);
+            }
+            List<List<Story>> sections = new ArrayList<>();
+            for (String sectionTag : mSectionUrls.keySet()) {
+                sections.add(mStoryStore.query(sectionTag, mPageSize));
+            }
+            return SectionFanOut.merge(sections);
+        } finally {
+            mMetrics.recordNanos(FeedMetrics.Stage.STORE_QUERY, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Post a batch of stories to the listener on the main thread.
+     *
+     * @param startNanos when the load started, the time to the first batch is recorded
+     * @return false when there is no listener to publish to
+     */
+    private boolean publish(final List<Story> stories, final boolean firstBatch,
+                            FeedExecutor.CancellationToken token, long startNanos) {
+        if (mPublishedListener == null || token.isCancelled()) {
+            return false;
+        }
+        mSectionColors.resolve(stories);
+        if (firstBatch) {
+            mMetrics.recordNanos(FeedMetrics.Stage.FIRST_PUBLISH, System.nanoTime() - startNanos);
+        }
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                OnStoriesPublishedListener listener = mPublishedListener;
+                if (listener != null && isStarted()) {
+                    listener.onStoriesPublished(stories, firstBatch);
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Post the new and changed stories to the listener on the main thread.
+     *
+     * @return false when there is no listener to publish to
+     */
+    private boolean publishChanged(final List<Story> changedStories, FeedExecutor.CancellationToken token) {
+        if (mPublishedListener == null || token.isCancelled()) {
+            return false;
+        }
+        mSectionColors.resolve(changedStories);
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                OnStoriesPublishedListener listener = mPublishedListener;
+                if (listener != null && isStarted()) {
+                    listener.onStoriesChanged(changedStories);
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Collects the parsed stories and posts them to the main thread in small batches. Every
+     * attempt of the request starts a new list, so a retry replaces the stories of the failed
+     * attempt instead of adding them again.
+     */
+    private class BatchPublisher implements QueryUtils.AttemptListener {
+        private final FeedExecutor.CancellationToken mToken;
+        private final long mStartNanos;
+        private List<Story> mBatch = new ArrayList<>();
+        private boolean mFirstBatch = true;
+
+        BatchPublisher(FeedExecutor.CancellationToken token, long startNanos) {
+            mToken = token;
+            mStartNanos = startNanos;
+        }
+
+        @Override
+        public void onAttemptStarted() {
+            mBatch = new ArrayList<>();
+            mFirstBatch = true;
+        }
+
+        @Override
+        public void onStory(Story story) {
+            mBatch.add(story);
+            if (mBatch.size() >= (mFirstBatch ? FIRST_BATCH_SIZE : BATCH_SIZE)) {
+                publish(mBatch, mFirstBatch, mToken, mStartNanos);
+                mBatch = new ArrayList<>();
+                mFirstBatch = false;
+            }
+        }
+    }
 }
@@ -0,0 +1,266 @@
+package com.example.android.yournews;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * SQLite store of the last {@link Story}s loaded for every section tag, so the list can be shown
+ * before (or without) the network request. The store is kept small: stories older than
+ * {@link #MAX_AGE_MILLIS} are deleted, and only the newest {@link #MAX_STORIES_PER_SECTION} of a
+ * section and {@link #MAX_STORIES} in total are kept.
+ */
+public final class StoryStore {
+
+    /** Stories saved longer ago than this are deleted (7 days) */
+    static final long MAX_AGE_MILLIS = 7L * 24 * 60 * 60 * 1000;
+    /** Maximum number of stories kept for one section tag */
+    static final int MAX_STORIES_PER_SECTION = 200;
+    /** Maximum number of stories kept for all the section tags together */
+    static final int MAX_STORIES = 1000;
+
+    private static final String DATABASE_NAME = "stories.db";
+    private static final int DATABASE_VERSION = 1;
+
+    private static final String TABLE_STORIES = "stories";
+    private static final String COLUMN_SECTION_TAG = "section_tag";
+    private static final String COLUMN_SHORT_URL = "short_url";
+    private static final String COLUMN_SECTION_NAME = "section_name";
+    private static final String COLUMN_DATE = "date";
+    private static final String COLUMN_AUTHOR = "author";
+    private static final String COLUMN_HEADLINE = "headline";
+    private static final String COLUMN_TRAIL_TEXT = "trail_text";
+    private static final String COLUMN_THUMBNAIL_URL = "thumbnail_url";
+    private static final String COLUMN_SAVED_AT = "saved_at";
+
+    private static final String[] STORY_COLUMNS = {COLUMN_SECTION_NAME, COLUMN_DATE, COLUMN_AUTHOR,
+            COLUMN_HEADLINE, COLUMN_TRAIL_TEXT, COLUMN_SHORT_URL, COLUMN_THUMBNAIL_URL};
+
+    private static StoryStore sInstance;
+
+    private final DbHelper mDbHelper;
+    /** Search index of all the stored stories, built by the first search */
+    private StoryIndex mIndex;
+
+    private StoryStore(Context context) {
+        mDbHelper = new DbHelper(context);
+    }
+
+    /**
+     * Return the store shared by the whole app.
+     */
+    public static synchronized StoryStore getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new StoryStore(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Return the stored stories of the section tag, newest first. Reads the disk, so call it
+     * from a background thread.
+     */
+    public List<Story> query(String sectionTag) {
+        return query(sectionTag, MAX_STORIES_PER_SECTION);
+    }
+
+    /**
+     * Return at most {@code limit} of the newest stored stories of the section tag.
+     */
+    public List<Story> query(String sectionTag, int limit) {
+        SQLiteDatabase db = mDbHelper.getReadableDatabase();
+        Cursor cursor = db.query(TABLE_STORIES, STORY_COLUMNS, COLUMN_SECTION_TAG + " = ?",
+                new String[]{sectionTag}, null, null, COLUMN_DATE + " DESC",
+                String.valueOf(Math.min(limit, MAX_STORIES_PER_SECTION)));
+        return readStories(cursor);
+    }
+
+    /**
+     * Return the stored stories of all the sections matching every word of the query, best match
+     * first. Each word also matches the words it is the start of. The first search reads the
+     * whole table into the {@link StoryIndex}, so call it from a background thread.
+     */
+    public List<Story> search(String query, int limit) {
+        return getIndex().search(query, limit);
+    }
+
+    private synchronized StoryIndex getIndex() {
+        if (mIndex == null) {
+            StoryIndex index = new StoryIndex();
+            Cursor cursor = mDbHelper.getReadableDatabase().query(TABLE_STORIES, STORY_COLUMNS,
+                    null, null, null, null, null);
+            index.addAll(readStories(cursor));
+            mIndex = index;
+        }
+        return mIndex;
+    }
+
+    private static List<Story> readStories(Cursor cursor) {
+        List<Story> stories = new ArrayList<>(cursor.getCount());
+        try {
+            while (cursor.moveToNext()) {
+                stories.add(new Story(cursor.getString(0), cursor.getString(1), cursor.getString(2),
+                        cursor.getString(3), cursor.getString(4), cursor.getString(5), cursor.getString(6)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return stories;
+    }
+
+    /**
+     * Save the stories loaded for the section tag and apply the retention limits.
+     *
+     * @return the stories that were not stored yet or whose values changed
+     */
+    public List<Story> save(String sectionTag, List<Story> stories) {
+        List<Story> changed = new ArrayList<>();
+        Set<String> evicted;
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            Map<String, Story> stored = new HashMap<>();
+            for (Story story : query(sectionTag)) {
+                stored.put(story.getShortUrl(), story);
+            }
+            long now = System.currentTimeMillis();
+            for (Story story : stories) {
+                if (story.getShortUrl() == null) {
+                    // Without its short URL a story can not be told apart from the others
+                    continue;
+                }
+                ContentValues values = new ContentValues();
+                values.put(COLUMN_SAVED_AT, now);
+                if (story.equals(stored.get(story.getShortUrl()))) {
+                    // Same values, only keep it from expiring
+                    db.update(TABLE_STORIES, values, COLUMN_SECTION_TAG + " = ? AND " + COLUMN_SHORT_URL + " = ?",
+                            new String[]{sectionTag, story.getShortUrl()});
+                    continue;
+                }
+                values.put(COLUMN_SECTION_TAG, sectionTag);
+                values.put(COLUMN_SHORT_URL, story.getShortUrl());
+                values.put(COLUMN_SECTION_NAME, story.getSectionName());
+                values.put(COLUMN_DATE, story.getDate());
+                values.put(COLUMN_AUTHOR, story.getAuthor());
+                values.put(COLUMN_HEADLINE, story.getHeadline());
+                values.put(COLUMN_TRAIL_TEXT, story.getTrailText());
+                values.put(COLUMN_THUMBNAIL_URL, story.getThumbnailUrl());
+                db.insertWithOnConflict(TABLE_STORIES, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+                changed.add(story);
+            }
+            evicted = evict(db, sectionTag, now);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        updateIndex(changed, evicted);
+        return changed;
+    }
+
+    /**
+     * Add the new and changed stories to the search index, if it was built, and take the evicted
+     * ones out of it.
+     */
+    private synchronized void updateIndex(List<Story> changed, Set<String> evicted) {
+        if (mIndex == null) {
+            return;
+        }
+        for (String shortUrl : evicted) {
+            mIndex.remove(shortUrl);
+        }
+        mIndex.addAll(changed);
+    }
+
+    /**
+     * Delete the expired stories, then the oldest ones over the per section and total limits.
+     *
+     * @return the short URLs of the stories that are not stored for any section anymore
+     */
+    private static Set<String> evict(SQLiteDatabase db, String sectionTag, long now) {
+        Set<String> evicted = new HashSet<>();
+        delete(db, COLUMN_SAVED_AT + " < ?", new String[]{String.valueOf(now - MAX_AGE_MILLIS)}, evicted);
+        delete(db, COLUMN_SECTION_TAG + " = ? AND rowid NOT IN"
+                        + " (SELECT rowid FROM " + TABLE_STORIES + " WHERE " + COLUMN_SECTION_TAG + " = ?"
+                        + " ORDER BY " + COLUMN_DATE + " DESC LIMIT " + MAX_STORIES_PER_SECTION + ")",
+                new String[]{sectionTag, sectionTag}, evicted);
+        delete(db, "rowid NOT IN"
+                + " (SELECT rowid FROM " + TABLE_STORIES
+                + " ORDER BY " + COLUMN_SAVED_AT + " DESC, " + COLUMN_DATE + " DESC LIMIT " + MAX_STORIES + ")",
+                null, evicted);
+        if (!evicted.isEmpty()) {
+            // A story of several sections stays in the index while one of them keeps it
+            Cursor cursor = db.query(true, TABLE_STORIES, new String[]{COLUMN_SHORT_URL},
+                    null, null, null, null, null, null);
+            try {
+                while (cursor.moveToNext()) {
+                    evicted.remove(cursor.getString(0));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Delete the rows matching the selection, adding their short URLs to the deleted ones.
+     */
+    private static void delete(SQLiteDatabase db, String selection, String[] selectionArgs, Set<String> deleted) {
+        // Read first, SQLite only tells how many rows a DELETE took out
+        Cursor cursor = db.query(TABLE_STORIES, new String[]{COLUMN_SHORT_URL},
+                selection, selectionArgs, null, null, null);
+        try {
+            if (cursor.getCount() == 0) {
+                return;
+            }
+            while (cursor.moveToNext()) {
+                deleted.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        db.delete(TABLE_STORIES, selection, selectionArgs);
+    }
+
+    private static class DbHelper extends SQLiteOpenHelper {
+
+        DbHelper(Context context) {
+            super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE " + TABLE_STORIES + " ("
+                    + COLUMN_SECTION_TAG + " TEXT NOT NULL, "
+                    + COLUMN_SHORT_URL + " TEXT NOT NULL, "
+                    + COLUMN_SECTION_NAME + " TEXT, "
+                    + COLUMN_DATE + " TEXT, "
+                    + COLUMN_AUTHOR + " TEXT, "
+                    + COLUMN_HEADLINE + " TEXT, "
+                    + COLUMN_TRAIL_TEXT + " TEXT, "
+                    + COLUMN_THUMBNAIL_URL + " TEXT, "
+                    + COLUMN_SAVED_AT + " INTEGER NOT NULL, "
+                    + "PRIMARY KEY (" + COLUMN_SECTION_TAG + ", " + COLUMN_SHORT_URL + "))");
+            // webPublicationDate is ISO 8601 in UTC, so sorting the text sorts by time
+            db.execSQL("CREATE INDEX stories_section_date ON " + TABLE_STORIES
+                    + " (" + COLUMN_SECTION_TAG + ", " + COLUMN_DATE + " DESC)");
+            db.execSQL("CREATE INDEX stories_saved_at ON " + TABLE_STORIES + " (" + COLUMN_SAVED_AT + ")");
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            // The table only holds a copy of the Guardian data, so it can simply be rebuilt
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_STORIES);
+            onCreate(db);
+        }
+    }
+}
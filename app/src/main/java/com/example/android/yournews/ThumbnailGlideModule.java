@@ -0,0 +1,59 @@
+package com.example.android.yournews;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.os.Build;
+import android.support.annotation.NonNull;
+
+import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.annotation.GlideModule;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.load.engine.bitmap_recycle.LruBitmapPool;
+import com.bumptech.glide.load.engine.cache.InternalCacheDiskCacheFactory;
+import com.bumptech.glide.load.engine.cache.LruResourceCache;
+import com.bumptech.glide.module.AppGlideModule;
+import com.bumptech.glide.request.RequestOptions;
+
+/**
+ * Glide settings of the app. The caches of the thumbnails are sized from the memory class of
+ * the device instead of Glide's screen-based defaults: a phone with a small heap keeps fewer
+ * thumbnails in memory and on disk, and a low-RAM device decodes them with 2 bytes a pixel.
+ */
+@GlideModule
+public final class ThumbnailGlideModule extends AppGlideModule {
+
+    /** Directory of the thumbnail disk cache, in the cache directory of the app */
+    private static final String DISK_CACHE_DIR = "thumbnails";
+    private static final long SMALL_DISK_CACHE_BYTES = 16 * 1024 * 1024;
+    private static final long LARGE_DISK_CACHE_BYTES = 48 * 1024 * 1024;
+    /** Heaps of this many MB or more get the large disk cache */
+    private static final int LARGE_MEMORY_CLASS = 128;
+
+    @Override
+    public void applyOptions(@NonNull Context context, @NonNull GlideBuilder builder) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        assert activityManager != null;
+        long heapBytes = activityManager.getMemoryClass() * 1024L * 1024L;
+        boolean lowRam = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT
+                && activityManager.isLowRamDevice();
+
+        // A 16th of the heap for the decoded thumbnails, that is about 2 MB on a 32 MB heap,
+        // and half of that again for bitmaps kept to be reused while scrolling
+        long memoryCacheBytes = heapBytes / (lowRam ? 32 : 16);
+        builder.setMemoryCache(new LruResourceCache(memoryCacheBytes));
+        builder.setBitmapPool(new LruBitmapPool(memoryCacheBytes / 2));
+        builder.setDiskCache(new InternalCacheDiskCacheFactory(context, DISK_CACHE_DIR,
+                activityManager.getMemoryClass() >= LARGE_MEMORY_CLASS
+                        ? LARGE_DISK_CACHE_BYTES : SMALL_DISK_CACHE_BYTES));
+        if (lowRam) {
+            // Half the memory per thumbnail, the small images barely look different
+            builder.setDefaultRequestOptions(new RequestOptions().format(DecodeFormat.PREFER_RGB_565));
+        }
+    }
+
+    @Override
+    public boolean isManifestParsingEnabled() {
+        // There are no modules in the manifest, skip looking for them at startup
+        return false;
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.android.yournews;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.drawable.ColorDrawable;
+import android.support.annotation.Nullable;
+import android.support.v4.content.ContextCompat;
+import android.widget.ImageView;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.RequestOptions;
+import com.bumptech.glide.request.target.Target;
+
+/**
+ * Loads the story thumbnails. Every image is decoded at the size of the row's
+ * {@code ImageView} instead of the full size of the Guardian image, and only that small bitmap
+ * is kept in the disk cache. A load and a prefetch of the same URL use the same options, so the
+ * prefetched bitmap is the one found in the memory cache when the row is bound.
+ * <p>
+ * Where every thumbnail came from, and the bytes of the decoded ones, are counted in
+ * {@link FeedMetrics}.
+ */
+final class Thumbnails {
+
+    /**
+     * Counts the memory cache hits, disk cache hits, downloads and failures.
+     */
+    private static final RequestListener<Bitmap> COUNTING_LISTENER = new RequestListener<Bitmap>() {
+        @Override
+        public boolean onLoadFailed(@Nullable GlideException e, Object model, Target<Bitmap> target,
+                                    boolean isFirstResource) {
+            FeedMetrics.get().increment(FeedMetrics.Counter.THUMBNAIL_FAILURES);
+            // Let Glide show the error drawable
+            return false;
+        }
+
+        @Override
+        public boolean onResourceReady(Bitmap resource, Object model, Target<Bitmap> target,
+                                       DataSource dataSource, boolean isFirstResource) {
+            FeedMetrics metrics = FeedMetrics.get();
+            if (dataSource == DataSource.MEMORY_CACHE) {
+                metrics.increment(FeedMetrics.Counter.THUMBNAIL_MEMORY_HITS);
+                return false;
+            }
+            if (dataSource == DataSource.REMOTE) {
+                metrics.increment(FeedMetrics.Counter.THUMBNAIL_DOWNLOADS);
+            } else {
+                metrics.increment(FeedMetrics.Counter.THUMBNAIL_DISK_HITS);
+            }
+            // Everything that did not come from memory was decoded
+            metrics.record(FeedMetrics.Stage.THUMBNAIL_DECODED, resource.getByteCount());
+            return false;
+        }
+    };
+
+    private final RequestManager mRequestManager;
+    private final RequestOptions mOptions;
+    /** Width and height in pixels every thumbnail is decoded at */
+    private final int mSize;
+
+    /**
+     * @param context for an activity the requests are paused and cleared with its lifecycle
+     */
+    Thumbnails(Context context) {
+        mRequestManager = Glide.with(context);
+        // The thumbnail is a square of storyImageSize, see list_item.xml
+        mSize = context.getResources().getDimensionPixelSize(R.dimen.storyImageSize);
+        ColorDrawable placeholder = new ColorDrawable(ContextCompat.getColor(context, R.color.lightGray));
+        mOptions = new RequestOptions()
+                .override(mSize, mSize)
+                .centerCrop()
+                .placeholder(placeholder)
+                .fallback(placeholder)
+                .error(placeholder)
+                // Keep only the downsampled thumbnail on disk, not the original image
+                .diskCacheStrategy(DiskCacheStrategy.RESOURCE);
+    }
+
+    /**
+     * The request of the thumbnail at this URL, shared by the rows and the prefetch.
+     */
+    RequestBuilder<Bitmap> request(@Nullable String thumbnailUrl) {
+        return mRequestManager
+                .asBitmap()
+                .load(thumbnailUrl)
+                .apply(mOptions)
+                .listener(COUNTING_LISTENER);
+    }
+
+    /**
+     * Show the thumbnail at this URL in the view, or the placeholder when the story has none.
+     */
+    void load(@Nullable String thumbnailUrl, ImageView view) {
+        request(thumbnailUrl).into(view);
+    }
+
+    /**
+     * The request manager, for the preloader.
+     */
+    RequestManager getRequestManager() {
+        return mRequestManager;
+    }
+
+    /**
+     * The width and height in pixels every thumbnail is decoded at.
+     */
+    int getSize() {
+        return mSize;
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.android.yournews;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * The three kinds of load of the feed through the fetch path of the app (OkHttp transport, disk
+ * cache and retries), against a {@link MockGuardianServer} whose responses are slow, throttled,
+ * or cut off now and then: the first page, the next page, and the refresh that asks for the
+ * stories published since the newest one shown. Before every refresh a few stories are
+ * published. The tear down prints what the server answered and the {@link FeedMetrics}.
+ */
+@State(Scope.Benchmark)
+public class FeedLoadBenchmark {
+
+    private static final String TAG = "politics/politics";
+    private static final int PAGE_SIZE = 10;
+
+    private MockGuardianServer mServer;
+    private HttpTransport mPreviousTransport;
+    private File mCacheDirectory;
+    /** The date of the newest story the refresh has seen */
+    private volatile String mNewestDate;
+
+    /**
+     * Publishes the stories the next refresh finds.
+     */
+    @State(Scope.Thread)
+    public static class Publisher {
+        private final Random mRandom = new Random(7);
+
+        @Setup(Level.Invocation)
+        public void publish(FeedLoadBenchmark benchmark) {
+            benchmark.mServer.publish(TAG, mRandom.nextInt(4));
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        mServer = new MockGuardianServer(42);
+        mServer.addStories(TAG, MockGuardianServer.fixtureStories("fixtures/search_politics_100.json"));
+        mServer.latency(5).bandwidth(512 * 1024).tooManyRequests(0.1, 0).truncate(0.1);
+        mCacheDirectory = File.createTempFile("responses", "");
+        if (!mCacheDirectory.delete() || !mCacheDirectory.mkdir()) {
+            throw new IOException("Could not create " + mCacheDirectory);
+        }
+        mPreviousTransport = QueryUtils.getTransport();
+        QueryUtils.setTransport(new OkHttpTransport());
+        QueryUtils.setResponseCache(new HttpResponseDiskCache(mCacheDirectory, 4 * 1024 * 1024));
+        QueryUtils.setRetryPolicy(new ExponentialBackoffRetryPolicy(4, 10, 100, new Random(1)));
+        QueryUtils.setRequestBudget(new RequestBudget(1000, 1000, 2000, 5000));
+        FeedMetrics.get().reset();
+        mNewestDate = firstPage().get(0).getDate();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        System.out.println(String.format(Locale.US, "%d requests: %d not modified, %d 429s, %d truncated",
+                mServer.requestCount(), mServer.notModifiedCount(),
+                mServer.tooManyRequestsCount(), mServer.truncatedCount()));
+        System.out.println(FeedMetrics.get().report());
+        mServer.shutdown();
+        QueryUtils.setTransport(mPreviousTransport);
+        QueryUtils.setResponseCache(null);
+        File[] files = mCacheDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mCacheDirectory.delete();
+    }
+
+    @Benchmark
+    public List<Story> firstPage() throws IOException {
+        return check(QueryUtils.fetchStoryData(mServer.url(TAG, 1, PAGE_SIZE, null)));
+    }
+
+    @Benchmark
+    public List<Story> nextPage() throws IOException {
+        return check(QueryUtils.fetchStoryData(mServer.url(TAG, 2, PAGE_SIZE, null)));
+    }
+
+    @Benchmark
+    public List<Story> refresh(Publisher publisher) throws IOException {
+        List<Story> newer = check(QueryUtils.fetchStoryData(mServer.url(TAG, 1, PAGE_SIZE, mNewestDate)));
+        if (!newer.isEmpty()) {
+            mNewestDate = newer.get(0).getDate();
+        }
+        return newer;
+    }
+
+    /**
+     * A load that fails after all its retries would not measure a load.
+     */
+    private static List<Story> check(List<Story> stories) throws IOException {
+        if (stories == null) {
+            throw new IOException("The load failed");
+        }
+        return stories;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.android.yournews;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Reading and parsing one response: the String + JSONObject path of
+ * {@link QueryUtils#readFromStream} and {@link QueryUtils#extractFeatureFromJson}, and the
+ * streaming {@link StoryJsonParser} the fetch path uses. Every operation is one whole response.
+ * <p>
+ * extractFeatureFromJson stops at the first story without tags or a thumbnail, so on the
+ * "_missing" fixtures it only covers the stories before that one.
+ */
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+
+    @Param({"search_politics_10.json", "search_politics_10_missing.json",
+            "search_politics_50.json", "search_politics_50_missing.json",
+            "search_politics_100.json", "search_politics_100_missing.json",
+            "search_politics_200.json", "search_politics_200_missing.json"})
+    public String fixture;
+
+    private byte[] mJson;
+    private String mJsonString;
+
+    @Setup
+    public void setUp() throws IOException {
+        mJson = Fixtures.read(fixture);
+        mJsonString = QueryUtils.readFromStream(new ByteArrayInputStream(mJson));
+    }
+
+    @Benchmark
+    public String readFromStream() throws IOException {
+        return QueryUtils.readFromStream(new ByteArrayInputStream(mJson));
+    }
+
+    @Benchmark
+    public List<Story> extractFeatureFromJson() {
+        return QueryUtils.extractFeatureFromJson(mJsonString);
+    }
+
+    /**
+     * readFromStream followed by extractFeatureFromJson, the whole JSONObject path.
+     */
+    @Benchmark
+    public List<Story> jsonObjectPath() throws IOException {
+        return QueryUtils.extractFeatureFromJson(QueryUtils.readFromStream(new ByteArrayInputStream(mJson)));
+    }
+
+    @Benchmark
+    public List<Story> streamingParse() throws IOException {
+        return StoryJsonParser.parse(new ByteArrayInputStream(mJson));
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.android.yournews;
+
+/**
+ * The {@link Story} as it was before it was made compact: its own String for every value and
+ * every display value. Only kept to compare the two in {@link StoryMemoryBenchmark}.
+ */
+final class PlainStory {
+    private final String mSectionName;
+    private final String mDate;
+    private final String mAuthor;
+    private final String mHeadline;
+    private final String mTrailText;
+    private final String mShortUrl;
+    private final String mThumbnailUrl;
+    private final long mPublishedMillis;
+    private final String mDisplayDate;
+    private final String mDisplayTime;
+    private final String mDisplayTrailText;
+    private int mSectionColor;
+
+    PlainStory(String sectionName, String date, String author, String headline, String trailText, String shortUrl, String thumbnailUrl) {
+        mSectionName = sectionName;
+        mDate = date;
+        mAuthor = author;
+        mHeadline = headline;
+        mTrailText = trailText;
+        mShortUrl = shortUrl;
+        mThumbnailUrl = thumbnailUrl;
+        mPublishedMillis = StoryFormatter.parseDate(date);
+        mDisplayDate = StoryFormatter.formatDate(date);
+        mDisplayTime = StoryFormatter.formatTime(date);
+        mDisplayTrailText = StoryFormatter.stripHtml(trailText);
+    }
+
+    String getSectionName() {
+        return mSectionName;
+    }
+
+    String getDate() {
+        return mDate;
+    }
+
+    String getAuthor() {
+        return mAuthor;
+    }
+
+    String getHeadline() {
+        return mHeadline;
+    }
+
+    String getTrailText() {
+        return mTrailText;
+    }
+
+    String getShortUrl() {
+        return mShortUrl;
+    }
+
+    String getThumbnailUrl() {
+        return mThumbnailUrl;
+    }
+
+    long getPublishedMillis() {
+        return mPublishedMillis;
+    }
+
+    String getDisplayDate() {
+        return mDisplayDate;
+    }
+
+    String getDisplayTime() {
+        return mDisplayTime;
+    }
+
+    String getDisplayTrailText() {
+        return mDisplayTrailText;
+    }
+
+    int getSectionColor() {
+        return mSectionColor;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.android.yournews;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The date and trail text transformation of the rows. The adapter used to do it in getView for
+ * every row shown, it is now done by {@link StoryFormatter} once per story when the
+ * {@link Story} is created on the loader thread. Every operation is all the stories of a response.
+ */
+@State(Scope.Benchmark)
+public class RowBindingBenchmark {
+
+    @Param({"search_politics_10.json", "search_politics_50.json",
+            "search_politics_100.json", "search_politics_200.json"})
+    public String fixture;
+
+    private List<Story> mStories;
+
+    @Setup
+    public void setUp() throws IOException {
+        mStories = StoryJsonParser.parse(new ByteArrayInputStream(Fixtures.read(fixture)));
+    }
+
+    /**
+     * Everything the row shows, as the Story constructor works it out.
+     */
+    @Benchmark
+    public void createStories(Blackhole blackhole) {
+        for (Story story : mStories) {
+            blackhole.consume(new Story(story.getSectionName(), story.getDate(), story.getAuthor(),
+                    story.getHeadline(), story.getTrailText(), story.getShortUrl(), story.getThumbnailUrl()));
+        }
+    }
+
+    @Benchmark
+    public void formatDates(Blackhole blackhole) {
+        for (Story story : mStories) {
+            blackhole.consume(StoryFormatter.parseDate(story.getDate()));
+            blackhole.consume(StoryFormatter.formatDate(story.getDate()));
+            blackhole.consume(StoryFormatter.formatTime(story.getDate()));
+        }
+    }
+
+    @Benchmark
+    public void stripTrailText(Blackhole blackhole) {
+        for (Story story : mStories) {
+            blackhole.consume(StoryFormatter.stripHtml(story.getTrailText()));
+        }
+    }
+}
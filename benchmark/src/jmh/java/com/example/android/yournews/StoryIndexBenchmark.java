@@ -0,0 +1,127 @@
+package com.example.android.yournews;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Build time and query time of the {@link StoryIndex}, for as many stories as the store keeps
+ * and for much more. The stories are made up from the words of the recorded politics responses,
+ * so the words are as common as in real stories. The footprint of the index is printed by the
+ * set up: the estimate of the index, and the heap it really took.
+ */
+@State(Scope.Benchmark)
+public class StoryIndexBenchmark {
+
+    /** Different words in the stories */
+    private static final int VOCABULARY_SIZE = 20000;
+    private static final String[] SYLLABLES = {"ba", "ker", "lo", "min", "sta", "ro", "vel", "ti",
+            "gan", "dor", "pe", "su", "mar", "ka", "len", "zo", "ther", "wi", "co", "nes"};
+
+    @Param({"1000", "10000", "50000"})
+    public int size;
+
+    private List<Story> mStories;
+    private StoryIndex mIndex;
+    private String mCommonPrefix;
+    private String mTwoWords;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<Story> fixture = StoryJsonParser.parse(new ByteArrayInputStream(Fixtures.read("search_politics_200.json")));
+        // The same stories every run
+        Random random = new Random(42);
+        // The common words of the fixture first, then made up ones for the long tail of names
+        // and rare words a real news vocabulary has
+        Set<String> vocabulary = new LinkedHashSet<>();
+        List<String> authors = new ArrayList<>();
+        for (Story story : fixture) {
+            vocabulary.addAll(StoryIndex.tokenize(story.getHeadline(), 2));
+            vocabulary.addAll(StoryIndex.tokenize(story.getDisplayTrailText(), 2));
+            if (story.getAuthor() != null) {
+                authors.add(story.getAuthor());
+            }
+        }
+        while (vocabulary.size() < VOCABULARY_SIZE) {
+            vocabulary.add(madeUpWord(random));
+        }
+        List<String> words = new ArrayList<>(vocabulary);
+        String[] sections = {"Politics", "World news", "Business", "Sport", "Opinion", "Culture"};
+
+        mStories = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String date = String.format(Locale.US, "2018-%02d-%02dT%02d:00:00Z",
+                    1 + random.nextInt(12), 1 + random.nextInt(28), random.nextInt(24));
+            mStories.add(new Story(sections[random.nextInt(sections.length)], date,
+                    authors.get(random.nextInt(authors.size())), words(random, words, 10),
+                    words(random, words, 30), "https://gu.com/p/" + i, null));
+        }
+        mCommonPrefix = words.get(0).substring(0, 2);
+        mTwoWords = words.get(1) + " " + words.get(2).substring(0, Math.min(3, words.get(2).length()));
+
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+        mIndex = new StoryIndex();
+        mIndex.addAll(mStories);
+        System.gc();
+        long after = runtime.totalMemory() - runtime.freeMemory();
+        System.out.println(size + " stories, " + mIndex.getWordCount() + " words, estimate "
+                + mIndex.estimateBytes() / 1024 + " KB, heap " + (after - before) / 1024 + " KB");
+    }
+
+    /**
+     * Return count words, the first words of the list much more often than the last ones.
+     */
+    private static String words(Random random, List<String> words, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            double skewed = Math.pow(random.nextDouble(), 3);
+            text.append(words.get((int) (skewed * words.size()))).append(' ');
+        }
+        return text.toString();
+    }
+
+    private static String madeUpWord(Random random) {
+        StringBuilder word = new StringBuilder();
+        int syllables = 2 + random.nextInt(3);
+        for (int i = 0; i < syllables; i++) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return word.toString();
+    }
+
+    /**
+     * All the stored stories indexed from scratch, as the app does on its first search.
+     */
+    @Benchmark
+    public StoryIndex build() {
+        StoryIndex index = new StoryIndex();
+        index.addAll(mStories);
+        return index;
+    }
+
+    /**
+     * A two letter prefix matches many words, the worst case while typing.
+     */
+    @Benchmark
+    public List<Story> searchShortPrefix() {
+        return mIndex.search(mCommonPrefix, 20);
+    }
+
+    @Benchmark
+    public List<Story> searchTwoWords() {
+        return mIndex.search(mTwoWords, 20);
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.android.yournews;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The compact {@link Story} against the {@link PlainStory} it replaced, for a feed of 1000 and
+ * 10000 stories. The set up prints the heap each list of stories keeps; the benchmarks measure
+ * what creating them costs, and what reading the values of a row costs now that the text is
+ * decoded when it is read.
+ * <p>
+ * The stories are the 200 of the recorded politics response over and over, with their own
+ * short URL and date. Every story gets its own copy of the values, like the parser gives it.
+ */
+@State(Scope.Benchmark)
+public class StoryMemoryBenchmark {
+
+    @Param({"1000", "10000"})
+    public int size;
+
+    private List<Story> mTemplates;
+    private List<Story> mStories;
+    private List<PlainStory> mPlainStories;
+
+    @Setup
+    public void setUp() throws IOException {
+        mTemplates = StoryJsonParser.parse(new ByteArrayInputStream(Fixtures.read("search_politics_200.json")));
+
+        long before = usedMemory();
+        mPlainStories = createPlainStories();
+        long plainBytes = usedMemory() - before;
+        before = usedMemory();
+        mStories = createStories();
+        long compactBytes = usedMemory() - before;
+        System.out.println(String.format(Locale.US, "%d stories: plain %d KB (%d bytes a story),"
+                        + " compact %d KB (%d bytes a story)", size, plainBytes / 1024, plainBytes / size,
+                compactBytes / 1024, compactBytes / size));
+    }
+
+    @Benchmark
+    public List<PlainStory> createPlainStories() {
+        List<PlainStory> stories = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Story template = mTemplates.get(i % mTemplates.size());
+            stories.add(new PlainStory(copy(template.getSectionName()), date(i), copy(template.getAuthor()),
+                    copy(template.getHeadline()), copy(template.getTrailText()), shortUrl(i),
+                    copy(template.getThumbnailUrl())));
+        }
+        return stories;
+    }
+
+    @Benchmark
+    public List<Story> createStories() {
+        List<Story> stories = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Story template = mTemplates.get(i % mTemplates.size());
+            stories.add(new Story(copy(template.getSectionName()), date(i), copy(template.getAuthor()),
+                    copy(template.getHeadline()), copy(template.getTrailText()), shortUrl(i),
+                    copy(template.getThumbnailUrl())));
+        }
+        return stories;
+    }
+
+    /**
+     * Everything StoryAdapter reads to bind a row, for every story.
+     */
+    @Benchmark
+    public void bindPlainStories(Blackhole blackhole) {
+        for (PlainStory story : mPlainStories) {
+            blackhole.consume(story.getHeadline());
+            blackhole.consume(story.getDisplayTrailText());
+            blackhole.consume(story.getSectionName());
+            blackhole.consume(story.getAuthor());
+            blackhole.consume(story.getDisplayDate());
+            blackhole.consume(story.getDisplayTime());
+            blackhole.consume(story.getThumbnailUrl());
+        }
+    }
+
+    @Benchmark
+    public void bindStories(Blackhole blackhole) {
+        for (Story story : mStories) {
+            blackhole.consume(story.getHeadline());
+            blackhole.consume(story.getDisplayTrailText());
+            blackhole.consume(story.getSectionName());
+            blackhole.consume(story.getAuthor());
+            blackhole.consume(story.getDisplayDate());
+            blackhole.consume(story.getDisplayTime());
+            blackhole.consume(story.getThumbnailUrl());
+        }
+    }
+
+    private static String copy(String value) {
+        return value == null ? null : new String(value.toCharArray());
+    }
+
+    private static String date(int i) {
+        return String.format(Locale.US, "2018-%02d-%02dT%02d:%02d:00Z", 1 + i % 12, 1 + i % 28, i % 24, i % 60);
+    }
+
+    private static String shortUrl(int i) {
+        return "https://gu.com/p/" + Integer.toString(i, 36);
+    }
+
+    /**
+     * Return the heap in use once the garbage is collected.
+     */
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
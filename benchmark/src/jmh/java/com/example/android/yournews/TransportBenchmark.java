@@ -0,0 +1,86 @@
+package com.example.android.yournews;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * One feed request of 100 stories through each {@link HttpTransport}, against a local
+ * {@link MockGuardianServer} that gzips its responses. Every operation sends the request,
+ * parses the stories and closes the response, on one connection kept alive between them.
+ * <p>
+ * Besides the requests per millisecond, the {@link Wire} counters give the body bytes received
+ * on the wire and the connections opened during every iteration, divide them by the operations
+ * of the iteration for the numbers of one request.
+ */
+@State(Scope.Benchmark)
+public class TransportBenchmark {
+
+    private static final String TAG = "politics/politics";
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"HttpURLConnection", "OkHttp"})
+    public String transport;
+
+    private MockGuardianServer mServer;
+    private HttpTransport mTransport;
+    private String mUrl;
+
+    /**
+     * The bytes and connections of the requests of an iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Wire {
+        public long bytesReceived;
+        public long connections;
+        private int mConnectionsBefore;
+        private MockGuardianServer mServer;
+
+        @Setup(Level.Iteration)
+        public void setUp(TransportBenchmark benchmark) {
+            mServer = benchmark.mServer;
+            mConnectionsBefore = mServer.connectionCount();
+            bytesReceived = 0;
+            connections = 0;
+        }
+
+        void add(long bytes) {
+            bytesReceived += bytes;
+            connections = mServer.connectionCount() - mConnectionsBefore;
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        mServer = new MockGuardianServer();
+        mServer.addStories(TAG, MockGuardianServer.fixtureStories("fixtures/search_politics_100.json"));
+        mUrl = mServer.url(TAG, 1, PAGE_SIZE, null);
+        mTransport = "OkHttp".equals(transport) ? new OkHttpTransport() : new UrlConnectionTransport();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        mServer.shutdown();
+    }
+
+    @Benchmark
+    public List<Story> fetch(Wire wire) throws IOException {
+        HttpResponse response = mTransport.execute(new HttpRequest(mUrl, 1000, 1000));
+        try {
+            List<Story> stories = StoryJsonParser.parse(response.getBody());
+            wire.add(response.getBytesReceived());
+            return stories;
+        } finally {
+            response.close();
+        }
+    }
+}
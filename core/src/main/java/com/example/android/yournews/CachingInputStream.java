@@ -0,0 +1,73 @@
+package com.example.android.yournews;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Copies everything read from a response stream into a {@link HttpResponseDiskCache.Editor}.
+ * The entry is committed when the stream is closed after it was read to the end, and aborted
+ * when it is closed early, so a cut-off response never replaces a good cached one.
+ */
+final class CachingInputStream extends FilterInputStream {
+    private HttpResponseDiskCache.Editor mEditor;
+    private boolean mEndOfStream;
+
+    CachingInputStream(InputStream in, HttpResponseDiskCache.Editor editor) {
+        super(in);
+        mEditor = editor;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int count = read(single, 0, 1);
+        return count == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int count) throws IOException {
+        int read = in.read(buffer, offset, count);
+        if (read == -1) {
+            mEndOfStream = true;
+        } else if (read > 0 && mEditor != null) {
+            try {
+                mEditor.write(buffer, offset, read);
+            } catch (IOException e) {
+                // A cache write error must not break the response, just stop caching
+                mEditor.abort();
+                mEditor = null;
+            }
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long count) throws IOException {
+        // Skipped bytes would be missing from the cached copy
+        byte[] buffer = new byte[(int) Math.min(count, 4096)];
+        int read = read(buffer, 0, buffer.length);
+        return read == -1 ? 0 : read;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            if (mEditor != null) {
+                if (mEndOfStream) {
+                    mEditor.commit();
+                } else {
+                    mEditor.abort();
+                }
+                mEditor = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.android.yournews;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How many bytes background work may still download today. The count starts again at midnight
+ * UTC. The day and the bytes used are kept by the caller between runs, see {@link #getDay()} and
+ * {@link #getUsedBytes()}.
+ */
+public final class DailyByteBudget {
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private final long mBytesPerDay;
+    private long mDay;
+    private long mUsedBytes;
+
+    /**
+     * @param bytesPerDay bytes that may be downloaded in a day
+     * @param day         day of the stored count, from {@link #getDay()}, or 0 when there is none
+     * @param usedBytes   bytes already downloaded on that day
+     */
+    public DailyByteBudget(long bytesPerDay, long day, long usedBytes) {
+        mBytesPerDay = bytesPerDay;
+        mDay = day;
+        mUsedBytes = usedBytes;
+    }
+
+    /**
+     * Return the bytes left for the day of the time, 0 when the budget is spent.
+     */
+    public synchronized long getRemaining(long nowMillis) {
+        startDay(nowMillis);
+        return Math.max(0, mBytesPerDay - mUsedBytes);
+    }
+
+    /**
+     * Count the downloaded bytes against the day of the time.
+     */
+    public synchronized void spend(long bytes, long nowMillis) {
+        startDay(nowMillis);
+        mUsedBytes += Math.max(0, bytes);
+    }
+
+    /**
+     * Return the day of the count, in days since 1 January 1970.
+     */
+    public synchronized long getDay() {
+        return mDay;
+    }
+
+    public synchronized long getUsedBytes() {
+        return mUsedBytes;
+    }
+
+    private void startDay(long nowMillis) {
+        long day = nowMillis / DAY_MILLIS;
+        if (day != mDay) {
+            mDay = day;
+            mUsedBytes = 0;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.android.yournews;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+
+/**
+ * Fails with a {@link SocketTimeoutException} once a deadline has passed. The read timeout of a
+ * connection only limits the wait for the next bytes, this limits the whole download of a body
+ * that keeps trickling in.
+ */
+final class DeadlineInputStream extends FilterInputStream {
+    private final long mDeadlineNanos;
+
+    /**
+     * @param deadlineNanos deadline as a {@link System#nanoTime()} value
+     */
+    DeadlineInputStream(InputStream in, long deadlineNanos) {
+        super(in);
+        mDeadlineNanos = deadlineNanos;
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkDeadline();
+        return in.read();
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int count) throws IOException {
+        checkDeadline();
+        return in.read(buffer, offset, count);
+    }
+
+    @Override
+    public long skip(long count) throws IOException {
+        checkDeadline();
+        return in.skip(count);
+    }
+
+    private void checkDeadline() throws SocketTimeoutException {
+        if (System.nanoTime() - mDeadlineNanos > 0) {
+            throw new SocketTimeoutException("Response deadline exceeded");
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.android.yournews;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ProtocolException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.Random;
+
+/**
+ * {@link RetryPolicy} that retries connect and read timeouts, dropped connections, 5xx responses
+ * and 429 responses. The delay grows exponentially with the number of failed attempts and is
+ * picked at random below that bound ("full jitter"), so many clients do not retry at the same time.
+ * A 429 response waits for its Retry-After delay when it has one.
+ */
+public class ExponentialBackoffRetryPolicy implements RetryPolicy {
+
+    // HTTP response code sent when the API key used too many requests
+    static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    private final int mMaxAttempts;
+    private final long mBaseDelayMillis;
+    private final long mMaxDelayMillis;
+    private final Random mRandom;
+
+    /**
+     * @param maxAttempts     maximum number of attempts, including the first one
+     * @param baseDelayMillis upper bound of the delay after the first failure
+     * @param maxDelayMillis  upper bound of any delay, also caps the Retry-After delay
+     */
+    public ExponentialBackoffRetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        this(maxAttempts, baseDelayMillis, maxDelayMillis, new Random());
+    }
+
+    ExponentialBackoffRetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis, Random random) {
+        mMaxAttempts = maxAttempts;
+        mBaseDelayMillis = baseDelayMillis;
+        mMaxDelayMillis = maxDelayMillis;
+        mRandom = random;
+    }
+
+    @Override
+    public long getRetryDelay(int failedAttempts, int responseCode, IOException exception, long retryAfterMillis) {
+        if (failedAttempts >= mMaxAttempts) {
+            return NO_RETRY;
+        }
+        if (exception != null) {
+            if (!isRetryable(exception)) {
+                return NO_RETRY;
+            }
+        } else if (responseCode == HTTP_TOO_MANY_REQUESTS) {
+            if (retryAfterMillis >= 0) {
+                return Math.min(retryAfterMillis, mMaxDelayMillis);
+            }
+        } else if (responseCode < 500 || responseCode > 599) {
+            return NO_RETRY;
+        }
+        return backoff(failedAttempts);
+    }
+
+    /**
+     * Random delay between 0 and base * 2^(failedAttempts - 1), capped at the maximum delay.
+     */
+    private long backoff(int failedAttempts) {
+        long bound = mBaseDelayMillis;
+        for (int i = 1; i < failedAttempts && bound < mMaxDelayMillis; i++) {
+            bound *= 2;
+        }
+        bound = Math.min(bound, mMaxDelayMillis);
+        return (long) (mRandom.nextDouble() * (bound + 1));
+    }
+
+    /**
+     * Timeouts and broken connections are worth another attempt, including a body cut off before
+     * its Content-Length (OkHttp reports it as a ProtocolException). Other errors, like an unknown
+     * host when there is no network or a response that can not be parsed, fail the same way again.
+     */
+    private static boolean isRetryable(IOException exception) {
+        return exception instanceof SocketTimeoutException
+                || exception instanceof ConnectException
+                || exception instanceof SocketException
+                || exception instanceof EOFException
+                || exception instanceof ProtocolException;
+    }
+}
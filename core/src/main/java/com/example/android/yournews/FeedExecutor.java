@@ -0,0 +1,334 @@
+package com.example.android.yournews;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the feed work (network requests and parsing) on a small pool of its own, instead of the
+ * single AsyncTask thread. Waiting tasks are taken by {@link Priority}: the section on the
+ * screen first, then a refresh, then the prefetched pages, and in order within a priority.
+ * Cancelling a task tells it through its {@link CancellationToken}, and the executor keeps the
+ * queue depth and the time the tasks waited for a thread.
+ * It only uses java.util.concurrent, so it also runs in plain JVM unit tests.
+ */
+public final class FeedExecutor {
+
+    /** Threads of the shared executor */
+    private static final int SHARED_THREADS = 3;
+
+    private static FeedExecutor sShared;
+
+    /**
+     * The lanes of the queue, in the order their tasks are started.
+     */
+    public enum Priority {
+        /** The stories of the section on the screen */
+        VISIBLE,
+        /** Pull to refresh */
+        REFRESH,
+        /** Pages loaded before they are scrolled to */
+        PREFETCH
+    }
+
+    /**
+     * Work run on a thread of the executor. Long work should check the token now and then, and
+     * stop when it is cancelled.
+     */
+    public interface Task<V> {
+        V run(CancellationToken token) throws Exception;
+    }
+
+    /**
+     * Tells a running task that its result is not wanted anymore. Blocking work that can not
+     * check the token itself, like an open connection, registers a listener that aborts it.
+     */
+    public static final class CancellationToken {
+        private volatile boolean mCancelled;
+        private final List<Runnable> mListeners = new CopyOnWriteArrayList<>();
+        private final Priority mPriority;
+
+        /**
+         * A token of work for the screen.
+         */
+        public CancellationToken() {
+            this(Priority.VISIBLE);
+        }
+
+        /**
+         * @param priority lane of the task, the fetch path lets the lower lanes back off first
+         */
+        public CancellationToken(Priority priority) {
+            mPriority = priority;
+        }
+
+        public Priority getPriority() {
+            return mPriority;
+        }
+
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+
+        /**
+         * Run the listener on the cancelling thread when the token is cancelled, or right away
+         * when it already is.
+         */
+        public void addOnCancelListener(Runnable listener) {
+            mListeners.add(listener);
+            if (mCancelled && mListeners.remove(listener)) {
+                listener.run();
+            }
+        }
+
+        public void removeOnCancelListener(Runnable listener) {
+            mListeners.remove(listener);
+        }
+
+        /**
+         * Cancel the token and run its listeners, for the tasks and for tests.
+         */
+        public void cancel() {
+            mCancelled = true;
+            for (Runnable listener : mListeners) {
+                if (mListeners.remove(listener)) {
+                    listener.run();
+                }
+            }
+        }
+    }
+
+    private final ThreadPoolExecutor mExecutor;
+    /** Runs the short timed work (deadlines), created on first use */
+    private ScheduledThreadPoolExecutor mTimer;
+    private final AtomicLong mSequence = new AtomicLong();
+    private final AtomicInteger[] mQueueDepth = new AtomicInteger[Priority.values().length];
+    private final long[] mWaitCount = new long[Priority.values().length];
+    private final long[] mWaitTotalNanos = new long[Priority.values().length];
+    private final long[] mWaitMaxNanos = new long[Priority.values().length];
+
+    /**
+     * @param threads number of tasks run at the same time
+     */
+    public FeedExecutor(int threads) {
+        for (int i = 0; i < mQueueDepth.length; i++) {
+            mQueueDepth[i] = new AtomicInteger();
+        }
+        // The queue is unbounded, so the pool never grows over the core size
+        mExecutor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), new FeedThreadFactory("feed-"));
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Return the executor shared by all the feed work of the app.
+     */
+    public static synchronized FeedExecutor shared() {
+        if (sShared == null) {
+            sShared = new FeedExecutor(SHARED_THREADS);
+        }
+        return sShared;
+    }
+
+    /**
+     * Queue the task in the lane of its priority.
+     */
+    public <V> FeedFuture<V> submit(Priority priority, Task<V> task) {
+        FeedFuture<V> future = new FeedFuture<>(priority, mSequence.getAndIncrement(), task);
+        enqueue(future);
+        return future;
+    }
+
+    /**
+     * Queue the task in the lane of its priority once the delay has passed. Until then it holds
+     * no thread, and cancelling it keeps it from being queued.
+     */
+    public <V> FeedFuture<V> schedule(Priority priority, Task<V> task, long delayMillis) {
+        final FeedFuture<V> future = new FeedFuture<>(priority, mSequence.getAndIncrement(), task);
+        runAfter(new Runnable() {
+            @Override
+            public void run() {
+                if (!future.isCancelled()) {
+                    enqueue(future);
+                }
+            }
+        }, delayMillis);
+        return future;
+    }
+
+    private void enqueue(FeedFuture<?> future) {
+        future.mQueuedAt = System.nanoTime();
+        mQueueDepth[future.mPriority.ordinal()].incrementAndGet();
+        mExecutor.execute(future);
+    }
+
+    /**
+     * Run the short runnable on the timer thread of the executor after the delay, e.g. to cancel
+     * the tasks still running at a deadline. It must not block, the timer has one thread.
+     */
+    synchronized ScheduledFuture<?> runAfter(Runnable runnable, long delayMillis) {
+        if (mTimer == null) {
+            mTimer = new ScheduledThreadPoolExecutor(1, new FeedThreadFactory("feed-timer-"));
+            mTimer.setKeepAliveTime(30, TimeUnit.SECONDS);
+            mTimer.allowCoreThreadTimeOut(true);
+        }
+        return mTimer.schedule(runnable, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Number of tasks of the priority waiting for a thread.
+     */
+    public int getQueueDepth(Priority priority) {
+        return mQueueDepth[priority.ordinal()].get();
+    }
+
+    /**
+     * Number of tasks of the priority that were started.
+     */
+    public synchronized long getStartedCount(Priority priority) {
+        return mWaitCount[priority.ordinal()];
+    }
+
+    /**
+     * Average time the started tasks of the priority waited for a thread, in milliseconds.
+     */
+    public synchronized long getAverageWaitMillis(Priority priority) {
+        int lane = priority.ordinal();
+        return mWaitCount[lane] == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(mWaitTotalNanos[lane] / mWaitCount[lane]);
+    }
+
+    /**
+     * Longest time a started task of the priority waited for a thread, in milliseconds.
+     */
+    public synchronized long getMaxWaitMillis(Priority priority) {
+        return TimeUnit.NANOSECONDS.toMillis(mWaitMaxNanos[priority.ordinal()]);
+    }
+
+    /**
+     * Cancel the running tasks and drop the waiting ones.
+     */
+    public void shutdownNow() {
+        mExecutor.shutdownNow();
+        synchronized (this) {
+            if (mTimer != null) {
+                mTimer.shutdownNow();
+            }
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder text = new StringBuilder("FeedExecutor[");
+        for (Priority priority : Priority.values()) {
+            int lane = priority.ordinal();
+            text.append(priority).append(": queued=").append(mQueueDepth[lane].get())
+                    .append(", started=").append(mWaitCount[lane])
+                    .append(", avgWait=").append(getAverageWaitMillis(priority))
+                    .append("ms, maxWait=").append(getMaxWaitMillis(priority)).append("ms; ");
+        }
+        return text.append("]").toString();
+    }
+
+    private synchronized void recordWait(Priority priority, long waitNanos) {
+        int lane = priority.ordinal();
+        mWaitCount[lane]++;
+        mWaitTotalNanos[lane] += waitNanos;
+        mWaitMaxNanos[lane] = Math.max(mWaitMaxNanos[lane], waitNanos);
+    }
+
+    /**
+     * A queued task. Cancelling it cancels its token, interrupts its thread when it is running
+     * and takes it out of the queue when it is still waiting.
+     */
+    public final class FeedFuture<V> extends FutureTask<V> implements Comparable<FeedFuture<?>> {
+        private final Priority mPriority;
+        private final long mSequence;
+        private volatile long mQueuedAt;
+        private final CancellationToken mToken;
+        private final AtomicBoolean mDequeued = new AtomicBoolean();
+
+        private FeedFuture(Priority priority, long sequence, final Task<V> task) {
+            this(priority, sequence, task, new CancellationToken(priority));
+        }
+
+        private FeedFuture(Priority priority, long sequence, final Task<V> task, final CancellationToken token) {
+            super(new Callable<V>() {
+                @Override
+                public V call() throws Exception {
+                    return task.run(token);
+                }
+            });
+            mPriority = priority;
+            mSequence = sequence;
+            mToken = token;
+        }
+
+        public Priority getPriority() {
+            return mPriority;
+        }
+
+        public CancellationToken getToken() {
+            return mToken;
+        }
+
+        @Override
+        public void run() {
+            if (mDequeued.compareAndSet(false, true)) {
+                mQueueDepth[mPriority.ordinal()].decrementAndGet();
+                if (!isCancelled()) {
+                    recordWait(mPriority, System.nanoTime() - mQueuedAt);
+                }
+            }
+            super.run();
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            mToken.cancel();
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            // A task that did not start yet leaves the queue right away
+            if (cancelled && mExecutor.remove(this) && mDequeued.compareAndSet(false, true)) {
+                mQueueDepth[mPriority.ordinal()].decrementAndGet();
+            }
+            return cancelled;
+        }
+
+        @Override
+        public int compareTo(FeedFuture<?> other) {
+            if (mPriority != other.mPriority) {
+                return mPriority.ordinal() - other.mPriority.ordinal();
+            }
+            return mSequence < other.mSequence ? -1 : (mSequence == other.mSequence ? 0 : 1);
+        }
+    }
+
+    /**
+     * Names the threads and keeps them below the priority of the main thread.
+     */
+    private static class FeedThreadFactory implements ThreadFactory {
+        private final String mPrefix;
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        FeedThreadFactory(String prefix) {
+            mPrefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, mPrefix + mCount.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.android.yournews;
+
+/**
+ * Logging of the core classes, which can not use android.util.Log. The app hands its logger in
+ * with {@link #setLogger}, until then (and on a plain JVM) nothing is logged.
+ */
+public final class FeedLog {
+
+    /**
+     * Writes the log messages, e.g. to android.util.Log.
+     */
+    public interface Logger {
+        void debug(String tag, String message);
+
+        /**
+         * @param error the cause, may be null
+         */
+        void error(String tag, String message, Throwable error);
+    }
+
+    private static volatile Logger sLogger;
+
+    private FeedLog() {
+    }
+
+    /**
+     * Set where the messages go, null stops logging.
+     */
+    public static void setLogger(Logger logger) {
+        sLogger = logger;
+    }
+
+    static void d(String tag, String message) {
+        Logger logger = sLogger;
+        if (logger != null) {
+            logger.debug(tag, message);
+        }
+    }
+
+    static void e(String tag, String message) {
+        e(tag, message, null);
+    }
+
+    static void e(String tag, String message, Throwable error) {
+        Logger logger = sLogger;
+        if (logger != null) {
+            logger.error(tag, message, error);
+        }
+    }
+}
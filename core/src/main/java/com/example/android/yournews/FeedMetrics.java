@@ -0,0 +1,279 @@
+package com.example.android.yournews;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timings and sizes of every stage of the fetch pipeline, from sending the request to binding
+ * the rows. Each {@link Stage} keeps a {@link Histogram} (p50/p95/p99 of the recent values) and
+ * each {@link Counter} a running total. The debug view of the app shows {@link #report()}, and
+ * {@link #exportJson()} gives the same numbers to keep track of over time.
+ */
+public final class FeedMetrics {
+
+    /**
+     * What the values of a {@link Stage} are measured in.
+     */
+    public enum Unit {
+        MICROSECONDS("us"), BYTES("bytes"), STORIES("stories");
+
+        private final String mSymbol;
+
+        Unit(String symbol) {
+            mSymbol = symbol;
+        }
+
+        public String getSymbol() {
+            return mSymbol;
+        }
+    }
+
+    /**
+     * The recorded stages, in the order a load goes through them.
+     */
+    public enum Stage {
+        /** From sending a request to having its status and headers */
+        TIME_TO_FIRST_BYTE(Unit.MICROSECONDS),
+        /** Time spent reading the body: network, gunzip and the disk cache copy */
+        DOWNLOAD(Unit.MICROSECONDS),
+        /** Time spent parsing the body, without the time waiting for it */
+        PARSE(Unit.MICROSECONDS),
+        /** Memory allocated by the thread while parsing, only when an AllocationCounter is set */
+        PARSE_ALLOCATED(Unit.BYTES),
+        /** Size of a response body on the wire, compressed */
+        RESPONSE_BYTES(Unit.BYTES),
+        /** Number of stories in a response */
+        RESPONSE_STORIES(Unit.STORIES),
+        /** One fetchStoryData call, with all its attempts and retry waits */
+        FETCH(Unit.MICROSECONDS),
+        /** Reading the stored stories of a page */
+        STORE_QUERY(Unit.MICROSECONDS),
+        /** Saving the fetched stories of a section */
+        STORE_SAVE(Unit.MICROSECONDS),
+        /** From the start of a load to posting its first stories to the list */
+        FIRST_PUBLISH(Unit.MICROSECONDS),
+        /** A whole load, up to its result */
+        LOAD(Unit.MICROSECONDS),
+        /** Binding one row of the list */
+        BIND(Unit.MICROSECONDS),
+        /** Reading the snapshot of the last feed at startup */
+        SNAPSHOT_READ(Unit.MICROSECONDS),
+        /** Memory of a decoded thumbnail, one that was not in the memory cache */
+        THUMBNAIL_DECODED(Unit.BYTES),
+        /** Time an attempt waited for a token of the RequestGovernor */
+        THROTTLE_WAIT(Unit.MICROSECONDS);
+
+        private final Unit mUnit;
+
+        Stage(Unit unit) {
+            mUnit = unit;
+        }
+
+        public Unit getUnit() {
+            return mUnit;
+        }
+    }
+
+    /**
+     * The counted events.
+     */
+    public enum Counter {
+        /** Attempts sent, including the retries */
+        REQUESTS,
+        RETRIES,
+        /** 304 responses answered from the disk cache */
+        NOT_MODIFIED,
+        /** Responses that could not be parsed as a Guardian search response */
+        PARSE_FAILURES,
+        /** Fetches that gave up after their last attempt */
+        FAILED_FETCHES,
+        CANCELLED_FETCHES,
+        /** Attempts that waited for a token of the RequestGovernor */
+        THROTTLED_REQUESTS,
+        /** Requests dropped by the RequestGovernor to keep within the quota */
+        SHED_REQUESTS,
+        /** Requests rejected while the circuit was open */
+        REJECTED_REQUESTS,
+        CIRCUIT_OPENS,
+        /** Shed or rejected fetches answered from the response cache */
+        CACHED_FALLBACKS,
+        /** Thumbnails found decoded in the memory cache */
+        THUMBNAIL_MEMORY_HITS,
+        /** Thumbnails decoded from the disk cache */
+        THUMBNAIL_DISK_HITS,
+        /** Thumbnails downloaded and decoded */
+        THUMBNAIL_DOWNLOADS,
+        THUMBNAIL_FAILURES,
+        /** Live searches sent to the API, once the typing paused */
+        SEARCH_REQUESTS,
+        /** Live searches cancelled because the query changed before they finished */
+        SEARCH_CANCELLED,
+        /** Queries answered from the results of an earlier search */
+        SEARCH_CACHE_HITS
+    }
+
+    /**
+     * Tells how much memory the current thread has allocated so far.
+     */
+    public interface AllocationCounter {
+        /**
+         * @return the bytes allocated by the current thread, or -1 when it is not known
+         */
+        long getThreadAllocatedBytes();
+    }
+
+    private static final FeedMetrics sInstance = new FeedMetrics();
+
+    private final Map<Stage, Histogram> mHistograms = new EnumMap<>(Stage.class);
+    private final Map<Counter, AtomicLong> mCounters = new EnumMap<>(Counter.class);
+    private volatile AllocationCounter mAllocationCounter;
+
+    FeedMetrics() {
+        for (Stage stage : Stage.values()) {
+            mHistograms.put(stage, new Histogram());
+        }
+        for (Counter counter : Counter.values()) {
+            mCounters.put(counter, new AtomicLong());
+        }
+    }
+
+    /**
+     * Return the metrics of the app.
+     */
+    public static FeedMetrics get() {
+        return sInstance;
+    }
+
+    /**
+     * Set what measures the parse allocations, null (the default) stops measuring them.
+     */
+    public void setAllocationCounter(AllocationCounter allocationCounter) {
+        mAllocationCounter = allocationCounter;
+    }
+
+    public boolean isCountingAllocations() {
+        return mAllocationCounter != null;
+    }
+
+    /**
+     * Return the bytes allocated by the current thread so far, or -1 when they are not measured.
+     */
+    long getThreadAllocatedBytes() {
+        AllocationCounter allocationCounter = mAllocationCounter;
+        return allocationCounter == null ? -1 : allocationCounter.getThreadAllocatedBytes();
+    }
+
+    /**
+     * Record a value, in the unit of the stage.
+     */
+    public void record(Stage stage, long value) {
+        mHistograms.get(stage).record(value);
+    }
+
+    /**
+     * Record a duration measured with {@link System#nanoTime()}.
+     */
+    public void recordNanos(Stage stage, long nanos) {
+        record(stage, TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    public void increment(Counter counter) {
+        mCounters.get(counter).incrementAndGet();
+    }
+
+    public Histogram.Snapshot snapshot(Stage stage) {
+        return mHistograms.get(stage).snapshot();
+    }
+
+    public long getCount(Counter counter) {
+        return mCounters.get(counter).get();
+    }
+
+    /**
+     * Forget every recorded value.
+     */
+    public void reset() {
+        for (Histogram histogram : mHistograms.values()) {
+            histogram.reset();
+        }
+        for (AtomicLong count : mCounters.values()) {
+            count.set(0);
+        }
+    }
+
+    /**
+     * Return a table of the stages and counters for the debug view, durations in milliseconds.
+     */
+    public String report() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format(Locale.US, "%-18s %6s %9s %9s %9s %9s%n",
+                "stage", "count", "p50", "p95", "p99", "max"));
+        for (Stage stage : Stage.values()) {
+            Histogram.Snapshot snapshot = snapshot(stage);
+            if (snapshot.getCount() == 0) {
+                continue;
+            }
+            text.append(String.format(Locale.US, "%-18s %6d %9s %9s %9s %9s%n",
+                    stage.name().toLowerCase(Locale.US), snapshot.getCount(),
+                    format(stage, snapshot.getPercentile(50)), format(stage, snapshot.getPercentile(95)),
+                    format(stage, snapshot.getPercentile(99)), format(stage, snapshot.getMax())));
+        }
+        text.append(String.format(Locale.US, "%n"));
+        for (Counter counter : Counter.values()) {
+            text.append(String.format(Locale.US, "%-18s %6d%n",
+                    counter.name().toLowerCase(Locale.US), getCount(counter)));
+        }
+        return text.toString();
+    }
+
+    private static String format(Stage stage, long value) {
+        switch (stage.getUnit()) {
+            case MICROSECONDS:
+                return String.format(Locale.US, "%.1fms", value / 1000.0);
+            case BYTES:
+                return value >= 10 * 1024 ? (value / 1024) + "K" : String.valueOf(value);
+            default:
+                return String.valueOf(value);
+        }
+    }
+
+    /**
+     * Return every stage and counter as a JSON object, in the units of the stages, e.g.
+     * {"capturedAt":1539000000000,"stages":{"parse":{"unit":"us","count":3,"mean":...,"p50":...,
+     * "p95":...,"p99":...,"max":...},...},"counters":{"requests":4,...}}
+     */
+    public String exportJson() {
+        StringBuilder json = new StringBuilder("{\"capturedAt\":").append(System.currentTimeMillis());
+        json.append(",\"stages\":{");
+        boolean first = true;
+        for (Stage stage : Stage.values()) {
+            Histogram.Snapshot snapshot = snapshot(stage);
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append('"').append(stage.name().toLowerCase(Locale.US)).append("\":{")
+                    .append("\"unit\":\"").append(stage.getUnit().getSymbol()).append('"')
+                    .append(",\"count\":").append(snapshot.getCount())
+                    .append(",\"mean\":").append(snapshot.getMean())
+                    .append(",\"p50\":").append(snapshot.getPercentile(50))
+                    .append(",\"p95\":").append(snapshot.getPercentile(95))
+                    .append(",\"p99\":").append(snapshot.getPercentile(99))
+                    .append(",\"max\":").append(snapshot.getMax())
+                    .append('}');
+        }
+        json.append("},\"counters\":{");
+        first = true;
+        for (Counter counter : Counter.values()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append('"').append(counter.name().toLowerCase(Locale.US)).append("\":").append(getCount(counter));
+        }
+        return json.append("}}").toString();
+    }
+}
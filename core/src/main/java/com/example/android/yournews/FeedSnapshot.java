@@ -0,0 +1,176 @@
+package com.example.android.yournews;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * The last shown stories of a feed in a small binary file, read at startup before the first
+ * frame so the list shows right away, whatever the network does.
+ * <p>
+ * Layout, big-endian: the magic "YNSS", the format version and the number of stories; then for
+ * every story its section color and its seven text fields (section name, date, author, headline,
+ * trail text, short URL, thumbnail URL), each as a byte count (-1 for null) followed by the UTF-8
+ * bytes; and last the CRC32 of everything before it. A file of another version, or one that is
+ * cut off or damaged, is ignored.
+ */
+public final class FeedSnapshot {
+
+    /** "YNSS" */
+    static final int MAGIC = 0x594E5353;
+    /** Change it with the layout, older files are then ignored */
+    static final int VERSION = 1;
+    /** A snapshot is a page or two of stories, anything bigger is not one of ours */
+    private static final int MAX_FILE_BYTES = 1024 * 1024;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private FeedSnapshot() {
+    }
+
+    /**
+     * Replace the snapshot in the file with these stories. The stories are written to a
+     * temporary file that is then renamed, so a reader never sees half a snapshot.
+     */
+    public static void write(File file, List<Story> stories) throws IOException {
+        byte[] snapshot = encode(stories);
+        File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can not create " + directory);
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            out.write(snapshot);
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Can not rename " + temp + " to " + file);
+        }
+    }
+
+    /**
+     * Read the snapshot in the file with a single read.
+     *
+     * @return the stories, or null when there is no usable snapshot
+     */
+    public static List<Story> read(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            RandomAccessFile in = new RandomAccessFile(file, "r");
+            try {
+                long length = in.length();
+                if (length > MAX_FILE_BYTES) {
+                    return null;
+                }
+                byte[] snapshot = new byte[(int) length];
+                in.readFully(snapshot);
+                return decode(snapshot);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    static byte[] encode(List<Story> stories) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 * (stories.size() + 1));
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(stories.size());
+            for (Story story : stories) {
+                out.writeInt(story.getSectionColor());
+                writeString(out, story.getSectionName());
+                writeString(out, story.getDate());
+                writeString(out, story.getAuthor());
+                writeString(out, story.getHeadline());
+                writeString(out, story.getTrailText());
+                writeString(out, story.getShortUrl());
+                writeString(out, story.getThumbnailUrl());
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes.toByteArray());
+            out.writeInt((int) crc.getValue());
+        } catch (IOException e) {
+            // Writing to a ByteArrayOutputStream does not fail
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return the stories, or null when the bytes are not a snapshot of this version
+     */
+    static List<Story> decode(byte[] snapshot) {
+        if (snapshot.length < 16) {
+            return null;
+        }
+        ByteBuffer in = ByteBuffer.wrap(snapshot);
+        CRC32 crc = new CRC32();
+        crc.update(snapshot, 0, snapshot.length - 4);
+        if (in.getInt(snapshot.length - 4) != (int) crc.getValue()
+                || in.getInt() != MAGIC || in.getInt() != VERSION) {
+            return null;
+        }
+        try {
+            int count = in.getInt();
+            // Every story takes at least 32 bytes, a bigger count is a damaged file
+            if (count < 0 || count > in.remaining() / 32) {
+                return null;
+            }
+            List<Story> stories = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int sectionColor = in.getInt();
+                Story story = new Story(readString(in), readString(in), readString(in), readString(in),
+                        readString(in), readString(in), readString(in));
+                story.setSectionColor(sectionColor);
+                stories.add(story);
+            }
+            return in.remaining() == 4 ? stories : null;
+        } catch (BufferUnderflowException e) {
+            return null;
+        } catch (IllegalArgumentException e) {
+            // A byte count that runs past the end
+            return null;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > in.remaining()) {
+            throw new IllegalArgumentException("Bad length " + length);
+        }
+        String value = new String(in.array(), in.position(), length, UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.android.yournews;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the URL of a Guardian "search" request, e.g.
+ * https://content.guardianapis.com/search?q=debate&tag=politics/politics&order-by=newest&page=1&page-size=20&show-tags=contributor&show-fields=trailText,headline,thumbnail,shortUrl&api-key=test
+ * The parameters are added in the order they are set.
+ */
+public final class GuardianQuery {
+
+    /** The Guardian search endpoint */
+    public static final String SEARCH_URL = "https://content.guardianapis.com/search";
+
+    private final String mBaseUrl;
+    private final List<String[]> mParameters = new ArrayList<>();
+
+    /**
+     * A query of the Guardian search endpoint.
+     */
+    public GuardianQuery() {
+        this(SEARCH_URL);
+    }
+
+    /**
+     * A query of another search endpoint, e.g. a local stand-in.
+     */
+    public GuardianQuery(String baseUrl) {
+        mBaseUrl = baseUrl;
+    }
+
+    /**
+     * Only the stories matching these search terms.
+     */
+    public GuardianQuery query(String terms) {
+        return parameter("q", terms);
+    }
+
+    /**
+     * Only the stories of this tag, e.g. politics/politics.
+     */
+    public GuardianQuery tag(String tag) {
+        return parameter("tag", tag);
+    }
+
+    /**
+     * Order of the results: newest, oldest or relevance.
+     */
+    public GuardianQuery orderBy(String order) {
+        return parameter("order-by", order);
+    }
+
+    /**
+     * Only the stories published since then, a day (yyyy-MM-dd) or a time (yyyy-MM-ddTHH:mm:ssZ).
+     */
+    public GuardianQuery fromDate(String fromDate) {
+        return parameter("from-date", fromDate);
+    }
+
+    /**
+     * @param page starting at 1
+     */
+    public GuardianQuery page(int page) {
+        return parameter("page", String.valueOf(page));
+    }
+
+    public GuardianQuery pageSize(int pageSize) {
+        return parameter("page-size", String.valueOf(pageSize));
+    }
+
+    /**
+     * Add the tags of these types to every story, e.g. contributor.
+     */
+    public GuardianQuery showTags(String tagTypes) {
+        return parameter("show-tags", tagTypes);
+    }
+
+    /**
+     * Add these fields to every story, e.g. trailText,headline.
+     */
+    public GuardianQuery showFields(String fields) {
+        return parameter("show-fields", fields);
+    }
+
+    public GuardianQuery apiKey(String apiKey) {
+        return parameter("api-key", apiKey);
+    }
+
+    /**
+     * Add any other parameter, a null value is left out.
+     */
+    public GuardianQuery parameter(String name, String value) {
+        if (value != null) {
+            mParameters.add(new String[]{name, value});
+        }
+        return this;
+    }
+
+    /**
+     * Return the URL with every parameter percent-encoded.
+     */
+    public String build() {
+        StringBuilder url = new StringBuilder(mBaseUrl);
+        char separator = mBaseUrl.indexOf('?') < 0 ? '?' : '&';
+        for (String[] parameter : mParameters) {
+            url.append(separator).append(encode(parameter[0])).append('=').append(encode(parameter[1]));
+            separator = '&';
+        }
+        return url.toString();
+    }
+
+    @Override
+    public String toString() {
+        return build();
+    }
+
+    /**
+     * Percent-encode the way android.net.Uri does: spaces as %20 and only letters, digits and
+     * -_.!~*'() left as they are.
+     */
+    static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8")
+                    .replace("+", "%20")
+                    .replace("%21", "!")
+                    .replace("%7E", "~")
+                    .replace("%27", "'")
+                    .replace("%28", "(")
+                    .replace("%29", ")");
+        } catch (UnsupportedEncodingException e) {
+            // Every Java platform has UTF-8
+            throw new AssertionError(e);
+        }
+    }
+}
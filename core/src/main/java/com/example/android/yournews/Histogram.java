@@ -0,0 +1,107 @@
+package com.example.android.yournews;
+
+import java.util.Arrays;
+
+/**
+ * Distribution of the values recorded for one metric. The count, sum and maximum cover every
+ * value since the last reset, the percentiles are worked out from the most recent values only
+ * (a fixed size ring), so they follow how the app behaves now and use a bounded amount of memory.
+ */
+public final class Histogram {
+    /** Number of recent values kept for the percentiles */
+    static final int DEFAULT_CAPACITY = 1024;
+
+    private final long[] mRecent;
+    private int mNext;
+    private int mRecentCount;
+    private long mCount;
+    private long mSum;
+    private long mMax;
+
+    public Histogram() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    Histogram(int capacity) {
+        mRecent = new long[capacity];
+    }
+
+    /**
+     * Record one value, negative values are recorded as 0.
+     */
+    public synchronized void record(long value) {
+        value = Math.max(0, value);
+        mRecent[mNext] = value;
+        mNext = (mNext + 1) % mRecent.length;
+        mRecentCount = Math.min(mRecentCount + 1, mRecent.length);
+        mCount++;
+        mSum += value;
+        mMax = Math.max(mMax, value);
+    }
+
+    public synchronized void reset() {
+        mNext = 0;
+        mRecentCount = 0;
+        mCount = 0;
+        mSum = 0;
+        mMax = 0;
+    }
+
+    /**
+     * Return a copy of the current values, it does not change while more values are recorded.
+     */
+    public synchronized Snapshot snapshot() {
+        long[] sorted = Arrays.copyOf(mRecent, mRecentCount);
+        Arrays.sort(sorted);
+        return new Snapshot(mCount, mSum, mMax, sorted);
+    }
+
+    /**
+     * The values of a {@link Histogram} at one point in time.
+     */
+    public static final class Snapshot {
+        private final long mCount;
+        private final long mSum;
+        private final long mMax;
+        private final long[] mSortedRecent;
+
+        Snapshot(long count, long sum, long max, long[] sortedRecent) {
+            mCount = count;
+            mSum = sum;
+            mMax = max;
+            mSortedRecent = sortedRecent;
+        }
+
+        /**
+         * Return the number of values recorded since the last reset.
+         */
+        public long getCount() {
+            return mCount;
+        }
+
+        public long getMax() {
+            return mMax;
+        }
+
+        /**
+         * Return the mean of all the values, or 0 when there are none.
+         */
+        public long getMean() {
+            return mCount == 0 ? 0 : mSum / mCount;
+        }
+
+        /**
+         * Return the value below which the given percentage of the recent values fall (nearest
+         * rank), or 0 when there are none.
+         *
+         * @param percentile between 0 and 100, e.g. 95 for p95
+         */
+        public long getPercentile(double percentile) {
+            if (mSortedRecent.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(percentile / 100.0 * mSortedRecent.length);
+            return mSortedRecent[Math.min(mSortedRecent.length, Math.max(1, rank)) - 1];
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.android.yournews;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A GET request sent by an {@link HttpTransport}: the URL, the extra headers and the timeouts.
+ */
+public final class HttpRequest {
+
+    private final String mUrl;
+    private final int mConnectTimeout;
+    private final int mReadTimeout;
+    private final List<String[]> mHeaders = new ArrayList<>();
+    private FeedExecutor.CancellationToken mCancellationToken;
+
+    /**
+     * @param url            the full request URL
+     * @param connectTimeout connect timeout in milliseconds
+     * @param readTimeout    read timeout in milliseconds
+     */
+    public HttpRequest(String url, int connectTimeout, int readTimeout) {
+        mUrl = url;
+        mConnectTimeout = connectTimeout;
+        mReadTimeout = readTimeout;
+    }
+
+    /**
+     * Add a request header and return this request.
+     */
+    public HttpRequest header(String name, String value) {
+        mHeaders.add(new String[]{name, value});
+        return this;
+    }
+
+    /**
+     * Abort the request, while it connects or while its body is read, when the token is
+     * cancelled. Returns this request.
+     */
+    public HttpRequest cancellation(FeedExecutor.CancellationToken token) {
+        mCancellationToken = token;
+        return this;
+    }
+
+    /**
+     * Return the token set with {@link #cancellation}, or null.
+     */
+    public FeedExecutor.CancellationToken getCancellationToken() {
+        return mCancellationToken;
+    }
+
+    public String getUrl() {
+        return mUrl;
+    }
+
+    public int getConnectTimeout() {
+        return mConnectTimeout;
+    }
+
+    public int getReadTimeout() {
+        return mReadTimeout;
+    }
+
+    /**
+     * Return the headers as {name, value} pairs, in the order they were added.
+     */
+    public List<String[]> getHeaders() {
+        return mHeaders;
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.android.yournews;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The response of an {@link HttpTransport}: status code, headers and body. A gzip body is
+ * decompressed while it is read, and the number of bytes received on the wire (before
+ * decompression) is counted. A body that ends before its Content-Length ends with an
+ * {@link EOFException}, a connection closed halfway is not taken for the end of the body.
+ */
+public final class HttpResponse implements Closeable {
+
+    private final int mCode;
+    // Header names are case insensitive, only the first value of every header is kept
+    private final Map<String, String> mHeaders = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final CountingInputStream mRawBody;
+    private final Closeable mConnection;
+    private InputStream mBody;
+
+    /**
+     * @param code       the HTTP status code
+     * @param headers    the response headers, may contain null names (the status line)
+     * @param rawBody    the body as received, may be null when there is none
+     * @param connection released when the response is closed, may be null
+     */
+    HttpResponse(int code, Map<String, String> headers, InputStream rawBody, Closeable connection) {
+        mCode = code;
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (header.getKey() != null && !mHeaders.containsKey(header.getKey())) {
+                mHeaders.put(header.getKey(), header.getValue());
+            }
+        }
+        mRawBody = rawBody == null ? null : new CountingInputStream(rawBody, getContentLength());
+        mConnection = connection;
+    }
+
+    public int getCode() {
+        return mCode;
+    }
+
+    /**
+     * Return the first value of the header, or null when the response does not have it.
+     */
+    public String getHeader(String name) {
+        return mHeaders.get(name);
+    }
+
+    /**
+     * Return the length of the body on the wire, or -1 when it is not known. A 304 may give the
+     * length of the stored body, it has none itself.
+     */
+    private long getContentLength() {
+        String contentLength = getHeader("Content-Length");
+        if (contentLength == null || mCode == 304 || mCode == 204) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentLength.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Return the decompressed body, an empty stream when the response has none.
+     */
+    public InputStream getBody() throws IOException {
+        if (mBody == null) {
+            if (mRawBody == null) {
+                mBody = new ByteArrayInputStream(new byte[0]);
+            } else if ("gzip".equalsIgnoreCase(getHeader("Content-Encoding"))) {
+                mBody = new GZIPInputStream(mRawBody);
+            } else {
+                mBody = mRawBody;
+            }
+        }
+        return mBody;
+    }
+
+    /**
+     * Return the number of body bytes read from the network so far, compressed size for gzip.
+     */
+    public long getBytesReceived() {
+        return mRawBody == null ? 0 : mRawBody.mCount;
+    }
+
+    /**
+     * Close the body and release the connection. A body that was read to the end lets the
+     * transport use the connection again for the next request.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (mRawBody != null) {
+                mRawBody.close();
+            }
+        } finally {
+            if (mConnection != null) {
+                mConnection.close();
+            }
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+
+        long mCount;
+        // Length the body should have, -1 when it is not known
+        private final long mLength;
+
+        CountingInputStream(InputStream in, long length) {
+            super(in);
+            mLength = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                mCount++;
+            } else {
+                checkLength();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                mCount += read;
+            } else if (read == -1) {
+                checkLength();
+            }
+            return read;
+        }
+
+        private void checkLength() throws EOFException {
+            if (mLength >= 0 && mCount < mLength) {
+                throw new EOFException("The body ended after " + mCount + " of " + mLength + " bytes");
+            }
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            mCount += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package com.example.android.yournews;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Size bounded disk cache of HTTP response bodies keyed by the request URL.
+ * Every entry keeps the ETag and Last-Modified validators of the response so the next request for
+ * the same URL can be sent as a conditional GET, and the stored body can be used on a 304.
+ * When the cache grows past its maximum size the least recently used entries are deleted.
+ */
+public final class HttpResponseDiskCache {
+
+    // Written at the start of every entry file, change it when the entry format changes
+    private static final int ENTRY_MAGIC = 0x59524331;
+    // Suffix of the files that are still being written
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+    // Entry file name -> file size, in least recently used first order. Loaded on first use.
+    private LinkedHashMap<String, Long> mEntries;
+    private long mTotalBytes;
+
+    /**
+     * Creates the cache, nothing is read from the disk until the first call that needs it.
+     *
+     * @param directory folder that holds only this cache's files
+     * @param maxBytes  maximum total size of the stored entries
+     */
+    public HttpResponseDiskCache(File directory, long maxBytes) {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Return the stored response for the URL, or null when there is none.
+     */
+    public synchronized Entry get(String url) {
+        loadEntries();
+        String key = keyFor(url);
+        if (!mEntries.containsKey(key)) {
+            return null;
+        }
+        File file = new File(mDirectory, key);
+        Entry entry = null;
+        try {
+            entry = Entry.read(file, url);
+        } catch (IOException e) {
+            // Unreadable entry, drop it below
+        }
+        if (entry == null) {
+            remove(key);
+            return null;
+        }
+        // Reading the map moves the key to the most recently used end
+        mEntries.get(key);
+        file.setLastModified(System.currentTimeMillis());
+        return entry;
+    }
+
+    /**
+     * Start writing a new response body for the URL. The entry only replaces the stored one when
+     * {@link Editor#commit()} is called.
+     */
+    public Editor edit(String url, String etag, String lastModified) throws IOException {
+        synchronized (this) {
+            loadEntries();
+        }
+        String key = keyFor(url);
+        File temp = File.createTempFile(key, TEMP_SUFFIX, mDirectory);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            out.writeInt(ENTRY_MAGIC);
+            out.writeUTF(url);
+            out.writeUTF(etag == null ? "" : etag);
+            out.writeUTF(lastModified == null ? "" : lastModified);
+        } catch (IOException e) {
+            out.close();
+            temp.delete();
+            throw e;
+        }
+        return new Editor(key, temp, out);
+    }
+
+    /**
+     * Total size in bytes of the stored entries.
+     */
+    public synchronized long size() {
+        loadEntries();
+        return mTotalBytes;
+    }
+
+    private synchronized void commit(String key, File temp) {
+        File file = new File(mDirectory, key);
+        remove(key);
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            return;
+        }
+        long length = file.length();
+        mEntries.put(key, length);
+        mTotalBytes += length;
+        trimToSize();
+    }
+
+    private void remove(String key) {
+        Long length = mEntries.remove(key);
+        if (length != null) {
+            mTotalBytes -= length;
+        }
+        new File(mDirectory, key).delete();
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Long>> iterator = mEntries.entrySet().iterator();
+        while (mTotalBytes > mMaxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            mTotalBytes -= eldest.getValue();
+            new File(mDirectory, eldest.getKey()).delete();
+        }
+    }
+
+    /**
+     * Build the in-memory LRU order from the files on the disk, oldest use first.
+     */
+    private void loadEntries() {
+        if (mEntries != null) {
+            return;
+        }
+        mEntries = new LinkedHashMap<>(16, 0.75f, true);
+        mTotalBytes = 0;
+        mDirectory.mkdirs();
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        List<File> entries = new ArrayList<>();
+        for (File file : files) {
+            if (file.getName().endsWith(TEMP_SUFFIX)) {
+                // Left over from a write that never finished
+                file.delete();
+            } else {
+                entries.add(file);
+            }
+        }
+        File[] sorted = entries.toArray(new File[entries.size()]);
+        Arrays.sort(sorted, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long difference = a.lastModified() - b.lastModified();
+                return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+            }
+        });
+        for (File file : sorted) {
+            mEntries.put(file.getName(), file.length());
+            mTotalBytes += file.length();
+        }
+        trimToSize();
+    }
+
+    private static String keyFor(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(url.getBytes(Charset.forName("UTF-8")));
+            StringBuilder key = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                key.append(Character.forDigit((b >> 4) & 0xf, 16));
+                key.append(Character.forDigit(b & 0xf, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * A stored response: its validators and its body.
+     */
+    public static final class Entry {
+        private final File mFile;
+        private final String mEtag;
+        private final String mLastModified;
+        private final long mBodyOffset;
+
+        private Entry(File file, String etag, String lastModified, long bodyOffset) {
+            mFile = file;
+            mEtag = etag;
+            mLastModified = lastModified;
+            mBodyOffset = bodyOffset;
+        }
+
+        /**
+         * Read the header of an entry file, null if it belongs to another URL or another format.
+         */
+        private static Entry read(File file, String url) throws IOException {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (in.readInt() != ENTRY_MAGIC || !url.equals(in.readUTF())) {
+                    return null;
+                }
+                String etag = in.readUTF();
+                String lastModified = in.readUTF();
+                // int magic + three modified UTF-8 strings, each with a 2 byte length prefix
+                long bodyOffset = 4 + utfLength(url) + utfLength(etag) + utfLength(lastModified);
+                return new Entry(file, etag.isEmpty() ? null : etag,
+                        lastModified.isEmpty() ? null : lastModified, bodyOffset);
+            } finally {
+                in.close();
+            }
+        }
+
+        private static long utfLength(String value) {
+            long length = 2;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c >= 0x0001 && c <= 0x007F) {
+                    length += 1;
+                } else if (c > 0x07FF) {
+                    length += 3;
+                } else {
+                    length += 2;
+                }
+            }
+            return length;
+        }
+
+        public String getEtag() {
+            return mEtag;
+        }
+
+        public String getLastModified() {
+            return mLastModified;
+        }
+
+        /**
+         * Open the stored response body, the caller has to close it.
+         */
+        public InputStream openBody() throws IOException {
+            InputStream in = new FileInputStream(mFile);
+            long skipped = 0;
+            while (skipped < mBodyOffset) {
+                long count = in.skip(mBodyOffset - skipped);
+                if (count <= 0) {
+                    in.close();
+                    throw new IOException("Truncated cache entry " + mFile);
+                }
+                skipped += count;
+            }
+            return new BufferedInputStream(in);
+        }
+    }
+
+    /**
+     * Writes the body of a new entry, it must end with {@link #commit()} or {@link #abort()}.
+     */
+    public final class Editor {
+        private final String mKey;
+        private final File mTemp;
+        private final OutputStream mOut;
+        private boolean mDone;
+
+        private Editor(String key, File temp, OutputStream out) {
+            mKey = key;
+            mTemp = temp;
+            mOut = out;
+        }
+
+        public void write(byte[] buffer, int offset, int count) throws IOException {
+            mOut.write(buffer, offset, count);
+        }
+
+        /**
+         * Store the written body as the entry for the URL.
+         */
+        public void commit() throws IOException {
+            if (mDone) {
+                return;
+            }
+            mDone = true;
+            try {
+                mOut.close();
+            } catch (IOException e) {
+                mTemp.delete();
+                throw e;
+            }
+            HttpResponseDiskCache.this.commit(mKey, mTemp);
+        }
+
+        /**
+         * Throw away the written body, the stored entry (if any) is kept.
+         */
+        public void abort() {
+            if (mDone) {
+                return;
+            }
+            mDone = true;
+            try {
+                mOut.close();
+            } catch (IOException e) {
+                // Nothing to do, the file is deleted anyway
+            }
+            mTemp.delete();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.android.yournews;
+
+import java.io.IOException;
+
+/**
+ * Sends the HTTP requests of {@link QueryUtils}. The implementations ask for gzip content and
+ * keep their connections open between requests, so a feed refresh does not pay a new TCP (and
+ * TLS) handshake every time.
+ *
+ * @see UrlConnectionTransport
+ * @see OkHttpTransport
+ */
+public interface HttpTransport {
+
+    /**
+     * Send the request and return the response once its headers are received. The caller has
+     * to close the response, after reading its body to the end when the connection should be
+     * used again. When the request has a cancellation token, cancelling it aborts the
+     * connection and the blocked call (or the next read of the body) throws an IOException.
+     */
+    HttpResponse execute(HttpRequest request) throws IOException;
+}
@@ -0,0 +1,321 @@
+package com.example.android.yournews;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search as you type. Every change of the query text shows results right away from what is
+ * already in memory, and only asks the network once the typing pauses:
+ * <ul>
+ * <li>the results of the query, when it was searched a short time ago,</li>
+ * <li>or else the results of the longest cached query it starts with ("brex" while typing
+ * "brexit"), keeping the stories that match the longer query,</li>
+ * <li>then the stored stories that match it, from the {@link Searcher} on a thread of the
+ * executor,</li>
+ * <li>and once no change came for the debounce time, the network results.</li>
+ * </ul>
+ * A new query cancels the request of the previous one, so a query typed over is not downloaded.
+ * <p>
+ * All the methods and the listener calls are on the thread of the {@link Scheduler}, the main
+ * thread in the app. Only the searches run on the executor.
+ */
+public final class LiveSearch {
+
+    /**
+     * Runs the delayed work on the thread of the search, a Handler of the main thread in the app.
+     */
+    public interface Scheduler {
+        void postDelayed(Runnable runnable, long delayMillis);
+
+        void removeCallbacks(Runnable runnable);
+    }
+
+    /**
+     * The two sources of results, both called on a thread of the executor.
+     */
+    public interface Searcher {
+        /**
+         * Return the stories matching the query without the network, or an empty list.
+         */
+        List<Story> searchStored(String query, int limit);
+
+        /**
+         * Return the stories found by the API, or null when the request failed or was cancelled.
+         * A query is soon typed past, so the request should be a single attempt that stays out
+         * of the response cache, see {@link QueryUtils#fetchUncachedStoryData}.
+         */
+        List<Story> searchNetwork(String query, int limit, FeedExecutor.CancellationToken token);
+    }
+
+    public interface Listener {
+        /**
+         * The results to show for the query.
+         *
+         * @param stories  the results, or null when the network search failed, the results shown
+         *                 before are the best there are
+         * @param complete true for the network results, false for the ones found in memory
+         *                 while the request is on its way
+         */
+        void onSearchResults(String query, List<Story> stories, boolean complete);
+    }
+
+    /** Queries whose network results are kept */
+    private static final int MAX_CACHED_QUERIES = 32;
+
+    private final FeedExecutor mExecutor;
+    private final Scheduler mScheduler;
+    private final Searcher mSearcher;
+    private final Listener mListener;
+    private final long mDebounceMillis;
+    private final long mTtlNanos;
+    private final int mLimit;
+    private final StoryMemoryCache.Ticker mTicker;
+
+    /** Network results by query, access ordered so the first one is the least recently used */
+    private final LinkedHashMap<String, CachedResults> mCache = new LinkedHashMap<>(16, 0.75f, true);
+    /** The query being searched, "" when there is none */
+    private String mQuery = "";
+    /** The results shown for mQuery, from the memory cache or the stored stories */
+    private List<Story> mShown = new ArrayList<>();
+    /** True once the network (or the cache of its results) answered mQuery */
+    private boolean mComplete;
+    private FeedExecutor.FeedFuture<Void> mStoredTask;
+    private FeedExecutor.FeedFuture<Void> mNetworkTask;
+    private final Runnable mSendRequest = new Runnable() {
+        @Override
+        public void run() {
+            searchNetwork(mQuery);
+        }
+    };
+
+    private static final class CachedResults {
+        final List<Story> mStories;
+        final long mFetchedAt;
+
+        CachedResults(List<Story> stories, long fetchedAt) {
+            mStories = stories;
+            mFetchedAt = fetchedAt;
+        }
+    }
+
+    /**
+     * @param debounceMillis time the typing has to pause before the network is asked
+     * @param ttlMillis      time the network results of a query are used again
+     * @param limit          most results of a query
+     */
+    public LiveSearch(FeedExecutor executor, Scheduler scheduler, Searcher searcher, Listener listener,
+                      long debounceMillis, long ttlMillis, int limit) {
+        this(executor, scheduler, searcher, listener, debounceMillis, ttlMillis, limit,
+                new StoryMemoryCache.Ticker() {
+                    @Override
+                    public long nanoTime() {
+                        return System.nanoTime();
+                    }
+                });
+    }
+
+    LiveSearch(FeedExecutor executor, Scheduler scheduler, Searcher searcher, Listener listener,
+               long debounceMillis, long ttlMillis, int limit, StoryMemoryCache.Ticker ticker) {
+        mExecutor = executor;
+        mScheduler = scheduler;
+        mSearcher = searcher;
+        mListener = listener;
+        mDebounceMillis = debounceMillis;
+        mTtlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        mLimit = limit;
+        mTicker = ticker;
+    }
+
+    /**
+     * Search the text typed so far.
+     */
+    public void setQuery(String text) {
+        String query = normalize(text);
+        if (query.equals(mQuery)) {
+            return;
+        }
+        // Whatever was on its way for the previous query is not wanted anymore
+        cancelPending();
+        mQuery = query;
+        mShown = new ArrayList<>();
+        mComplete = false;
+        if (query.isEmpty()) {
+            mComplete = true;
+            mListener.onSearchResults(query, mShown, true);
+            return;
+        }
+
+        CachedResults cached = getCached(query);
+        if (cached != null) {
+            // Searched a short time ago, no need for the network
+            FeedMetrics.get().increment(FeedMetrics.Counter.SEARCH_CACHE_HITS);
+            mComplete = true;
+            mListener.onSearchResults(query, cached.mStories, true);
+            return;
+        }
+        List<Story> prefixResults = findPrefixResults(query);
+        if (!prefixResults.isEmpty()) {
+            mShown = prefixResults;
+            mListener.onSearchResults(query, prefixResults, false);
+        }
+        searchStored(query);
+        mScheduler.postDelayed(mSendRequest, mDebounceMillis);
+    }
+
+    /**
+     * Return the query being searched, lower case without extra spaces.
+     */
+    public String getQuery() {
+        return mQuery;
+    }
+
+    /**
+     * Stop the searches on their way, e.g. when the search is closed. The cached results stay.
+     */
+    public void cancel() {
+        cancelPending();
+        mQuery = "";
+        mShown = new ArrayList<>();
+    }
+
+    private void cancelPending() {
+        mScheduler.removeCallbacks(mSendRequest);
+        if (mStoredTask != null) {
+            mStoredTask.cancel(true);
+            mStoredTask = null;
+        }
+        if (mNetworkTask != null) {
+            if (mNetworkTask.cancel(true)) {
+                FeedMetrics.get().increment(FeedMetrics.Counter.SEARCH_CANCELLED);
+            }
+            mNetworkTask = null;
+        }
+    }
+
+    /**
+     * Add the stored stories matching the query to the shown results.
+     */
+    private void searchStored(final String query) {
+        mStoredTask = mExecutor.submit(FeedExecutor.Priority.VISIBLE, new FeedExecutor.Task<Void>() {
+            @Override
+            public Void run(FeedExecutor.CancellationToken token) {
+                final List<Story> stored = mSearcher.searchStored(query, mLimit);
+                if (token.isCancelled() || stored.isEmpty()) {
+                    return null;
+                }
+                mScheduler.postDelayed(new Runnable() {
+                    @Override
+                    public void run() {
+                        // The network results may have come first, they are the better ones
+                        if (!query.equals(mQuery) || mComplete) {
+                            return;
+                        }
+                        mShown = merge(mShown, stored, mLimit);
+                        mListener.onSearchResults(query, mShown, false);
+                    }
+                }, 0);
+                return null;
+            }
+        });
+    }
+
+    private void searchNetwork(final String query) {
+        FeedMetrics.get().increment(FeedMetrics.Counter.SEARCH_REQUESTS);
+        mNetworkTask = mExecutor.submit(FeedExecutor.Priority.VISIBLE, new FeedExecutor.Task<Void>() {
+            @Override
+            public Void run(FeedExecutor.CancellationToken token) {
+                final List<Story> stories = mSearcher.searchNetwork(query, mLimit, token);
+                if (token.isCancelled()) {
+                    return null;
+                }
+                mScheduler.postDelayed(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (stories != null) {
+                            putCached(query, stories);
+                        }
+                        if (!query.equals(mQuery)) {
+                            return;
+                        }
+                        mNetworkTask = null;
+                        mComplete = true;
+                        mListener.onSearchResults(query, stories, true);
+                    }
+                }, 0);
+                return null;
+            }
+        });
+    }
+
+    private CachedResults getCached(String query) {
+        CachedResults cached = mCache.get(query);
+        if (cached != null && mTicker.nanoTime() - cached.mFetchedAt >= mTtlNanos) {
+            mCache.remove(query);
+            return null;
+        }
+        return cached;
+    }
+
+    private void putCached(String query, List<Story> stories) {
+        mCache.put(query, new CachedResults(new ArrayList<>(stories), mTicker.nanoTime()));
+        Iterator<Map.Entry<String, CachedResults>> eldest = mCache.entrySet().iterator();
+        while (mCache.size() > MAX_CACHED_QUERIES) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Return the cached results of the longest query the query starts with, that also match
+     * the query, best match first.
+     */
+    private List<Story> findPrefixResults(String query) {
+        for (int end = query.length() - 1; end > 0; end--) {
+            CachedResults cached = getCached(query.substring(0, end).trim());
+            if (cached != null) {
+                // A handful of stories, indexing them is quicker than the typing
+                StoryIndex index = new StoryIndex();
+                index.addAll(cached.mStories);
+                return index.search(query, mLimit);
+            }
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Return the shown results followed by the new ones that are not shown yet.
+     */
+    private static List<Story> merge(List<Story> shown, List<Story> found, int limit) {
+        List<Story> merged = new ArrayList<>(shown);
+        Set<String> shortUrls = new LinkedHashSet<>();
+        for (Story story : shown) {
+            shortUrls.add(story.getShortUrl());
+        }
+        for (Story story : found) {
+            if (merged.size() >= limit) {
+                break;
+            }
+            if (shortUrls.add(story.getShortUrl())) {
+                merged.add(story);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Return the text in lower case, with single spaces between the words.
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
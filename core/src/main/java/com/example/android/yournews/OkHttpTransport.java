@@ -0,0 +1,105 @@
+package com.example.android.yournews;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.Headers;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * {@link HttpTransport} on top of OkHttp. All the instances share one client, so they share its
+ * connection pool: HTTP/2 (negotiated over TLS) sends the requests of several sections over a
+ * single connection, and HTTP/1.1 connections are kept alive between requests.
+ */
+public final class OkHttpTransport implements HttpTransport {
+
+    // Idle connections kept open, and for how long
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+
+    private static OkHttpClient sClient;
+
+    private final OkHttpClient mClient;
+
+    public OkHttpTransport() {
+        mClient = sharedClient();
+    }
+
+    /**
+     * Return the client shared by all the transports of the app.
+     */
+    static synchronized OkHttpClient sharedClient() {
+        if (sClient == null) {
+            sClient = new OkHttpClient.Builder()
+                    .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                    .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                    .build();
+        }
+        return sClient;
+    }
+
+    @Override
+    public HttpResponse execute(HttpRequest request) throws IOException {
+        // newBuilder() shares the connection pool and the dispatcher of the shared client
+        OkHttpClient client = mClient.newBuilder()
+                .connectTimeout(request.getConnectTimeout(), TimeUnit.MILLISECONDS)
+                .readTimeout(request.getReadTimeout(), TimeUnit.MILLISECONDS)
+                .build();
+        Request.Builder builder = new Request.Builder().url(request.getUrl())
+                // Asked for explicitly, so OkHttp hands over the gzip body as it is and
+                // HttpResponse decompresses it like for the other transport
+                .header("Accept-Encoding", "gzip");
+        for (String[] header : request.getHeaders()) {
+            builder.header(header[0], header[1]);
+        }
+        final Call call = client.newCall(builder.build());
+        // Cancelling the call ends a blocked connect or read with an IOException
+        final FeedExecutor.CancellationToken token = request.getCancellationToken();
+        final Runnable abort = new Runnable() {
+            @Override
+            public void run() {
+                call.cancel();
+            }
+        };
+        if (token != null) {
+            token.addOnCancelListener(abort);
+        }
+        final Response response;
+        try {
+            response = call.execute();
+        } catch (IOException e) {
+            if (token != null) {
+                token.removeOnCancelListener(abort);
+            }
+            throw e;
+        }
+
+        Map<String, String> headers = new HashMap<>();
+        Headers responseHeaders = response.headers();
+        for (int i = 0; i < responseHeaders.size(); i++) {
+            if (!headers.containsKey(responseHeaders.name(i))) {
+                headers.put(responseHeaders.name(i), responseHeaders.value(i));
+            }
+        }
+        Closeable release = new Closeable() {
+            @Override
+            public void close() {
+                if (token != null) {
+                    token.removeOnCancelListener(abort);
+                }
+                response.close();
+            }
+        };
+        return new HttpResponse(response.code(), headers,
+                response.body() == null ? null : response.body().byteStream(), release);
+    }
+}
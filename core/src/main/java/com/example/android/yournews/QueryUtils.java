@@ -0,0 +1,641 @@
+package com.example.android.yournews;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Helper methods related to requesting and receiving story data from Guardian.
+ */
+public final class QueryUtils {
+
+    // Tag for the log messages
+    public static final String LOG_TAG = QueryUtils.class.getSimpleName();
+    // ConnectTimeout & ReadTimeout of one attempt in milliseconds static variables
+    private static final int CONNECT_TIMEOUT = 15000;
+    private static final int READ_TIMEOUT = 10000;
+    // Time limits of one attempt, and of all the attempts of a request, in milliseconds
+    private static final long ATTEMPT_TIMEOUT = 20000;
+    private static final long TOTAL_TIMEOUT = 30000;
+    // Default retry policy: 3 attempts, retry delays up to 1 s then 2 s, never more than 10 s
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_BASE_DELAY = 1000;
+    private static final long RETRY_MAX_DELAY = 10000;
+    // Time limits and retry policy used by fetchStoryData
+    private static RequestBudget sRequestBudget =
+            new RequestBudget(CONNECT_TIMEOUT, READ_TIMEOUT, ATTEMPT_TIMEOUT, TOTAL_TIMEOUT);
+    private static RetryPolicy sRetryPolicy =
+            new ExponentialBackoffRetryPolicy(MAX_ATTEMPTS, RETRY_BASE_DELAY, RETRY_MAX_DELAY);
+    // Disk cache of the responses used for conditional requests, null until it is set
+    private static HttpResponseDiskCache sResponseCache;
+    // Sends the requests, HttpURLConnection until another transport is set
+    private static HttpTransport sTransport = new UrlConnectionTransport();
+    // Rate limit and circuit breaker in front of the requests, null until it is set
+    private static RequestGovernor sRequestGovernor;
+
+    /**
+     * A {@link StoryJsonParser.Listener} that is told when an attempt of the request starts.
+     * A failed attempt may have passed some stories on already, the stories after the next
+     * call replace them instead of following them.
+     */
+    public interface AttemptListener extends StoryJsonParser.Listener {
+        void onAttemptStarted();
+    }
+
+    /**
+     * A {@link StoryJsonParser.Listener} that is told the bytes every attempt of the request
+     * received on the wire, failed attempts included. Unlike the traffic counters of the app
+     * these are the bytes of this request only.
+     */
+    public interface FetchListener extends StoryJsonParser.Listener {
+        void onBytesReceived(long bytes);
+
+        /**
+         * The {@link RequestGovernor} shed or rejected the request, it was not sent. The stories
+         * returned, if any, are the ones of the cached response.
+         */
+        void onNotSent();
+    }
+
+    /**
+     * Create a private constructor because no one should ever create a {@link QueryUtils} object.
+     * This class is only meant to hold static variables and methods, which can be accessed
+     * directly from the class name QueryUtils (and an object instance of QueryUtils is not needed).
+     */
+    private QueryUtils() {
+    }
+
+    /**
+     * Set the disk cache used to store responses and send conditional requests, null disables it.
+     */
+    public static synchronized void setResponseCache(HttpResponseDiskCache responseCache) {
+        sResponseCache = responseCache;
+    }
+
+    /**
+     * Return the disk cache set with {@link #setResponseCache}, or null.
+     */
+    public static synchronized HttpResponseDiskCache getResponseCache() {
+        return sResponseCache;
+    }
+
+    /**
+     * Set the {@link HttpTransport} that sends the requests.
+     */
+    public static synchronized void setTransport(HttpTransport transport) {
+        sTransport = transport;
+    }
+
+    /**
+     * Return the transport set with {@link #setTransport}, or the HttpURLConnection one.
+     */
+    public static synchronized HttpTransport getTransport() {
+        return sTransport;
+    }
+
+    /**
+     * Set the policy that decides which failed requests are sent again, null disables retries.
+     */
+    public static synchronized void setRetryPolicy(RetryPolicy retryPolicy) {
+        sRetryPolicy = retryPolicy;
+    }
+
+    /**
+     * Return the policy set with {@link #setRetryPolicy}, or the default one.
+     */
+    public static synchronized RetryPolicy getRetryPolicy() {
+        return sRetryPolicy;
+    }
+
+    /**
+     * Set the per attempt and total time limits of the requests.
+     */
+    public static synchronized void setRequestBudget(RequestBudget requestBudget) {
+        sRequestBudget = requestBudget;
+    }
+
+    /**
+     * Return the time limits set with {@link #setRequestBudget}, or the default ones.
+     */
+    public static synchronized RequestBudget getRequestBudget() {
+        return sRequestBudget;
+    }
+
+    /**
+     * Set the token bucket and circuit breaker every attempt has to pass, null disables them.
+     */
+    public static synchronized void setRequestGovernor(RequestGovernor requestGovernor) {
+        sRequestGovernor = requestGovernor;
+    }
+
+    /**
+     * Return the governor set with {@link #setRequestGovernor}, or null.
+     */
+    public static synchronized RequestGovernor getRequestGovernor() {
+        return sRequestGovernor;
+    }
+
+    /**
+     * Query the Guardian data set and return an {@link Story} object to represent a single story.
+     */
+    public static List<Story> fetchStoryData(String requestUrl) {
+        return fetchStoryData(requestUrl, null);
+    }
+
+    /**
+     * Query the Guardian data set and return the list of {@link Story}s, the listener (which may be
+     * null) gets every story as soon as it is parsed from the response stream.
+     * A failed attempt is sent again as long as the {@link RetryPolicy} allows it and the
+     * {@link RequestBudget} has time left. Returns null when every attempt failed.
+     * When a {@link RequestGovernor} is set every attempt waits for its token first, and a
+     * request it sheds or rejects gets the stories of the cached response instead, or null.
+     * An {@link AttemptListener} is told before the stories of every attempt, a
+     * {@link FetchListener} after every response with the bytes it received.
+     */
+    public static List<Story> fetchStoryData(String requestUrl, StoryJsonParser.Listener listener) {
+        return fetchStoryData(requestUrl, listener, null);
+    }
+
+    /**
+     * Same as {@link #fetchStoryData(String, StoryJsonParser.Listener)}, and gives up as soon as
+     * the token (which may be null) is cancelled: the open connection is aborted, the parser
+     * stops before the next story and no retry is made. Returns null when it was cancelled.
+     */
+    public static List<Story> fetchStoryData(String requestUrl, StoryJsonParser.Listener listener,
+                                             FeedExecutor.CancellationToken token) {
+
+        FeedLog.d(LOG_TAG,"This is the fetchStoryData QueryUtils Method");
+
+        // Create URL object
+        URL url = createUrl(requestUrl);
+
+        // If the URL is null, then return early.
+        if (url == null) {
+            return null;
+        }
+
+        FeedMetrics metrics = FeedMetrics.get();
+        long start = System.nanoTime();
+        try {
+            return fetchWithRetries(url, listener, token, metrics, getResponseCache(), getRetryPolicy());
+        } finally {
+            metrics.recordNanos(FeedMetrics.Stage.FETCH, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Send a single attempt of a one-off request, a search for example: the response is not
+     * stored in the response cache, so it does not push out the pages of the feed, and a failed
+     * attempt is not sent again, the next query will be along soon. A request the
+     * {@link RequestGovernor} sheds or rejects gets null. Returns null when the attempt failed
+     * or the token was cancelled.
+     */
+    public static List<Story> fetchUncachedStoryData(String requestUrl, FeedExecutor.CancellationToken token) {
+        URL url = createUrl(requestUrl);
+        if (url == null) {
+            return null;
+        }
+
+        FeedMetrics metrics = FeedMetrics.get();
+        long start = System.nanoTime();
+        try {
+            return fetchWithRetries(url, null, token, metrics, null, null);
+        } finally {
+            metrics.recordNanos(FeedMetrics.Stage.FETCH, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Send the attempts of one request until one succeeds or the {@link RetryPolicy} gives up.
+     *
+     * @param responseCache the cache to revalidate and store the response in, or null for none
+     * @param retryPolicy   the retries of a failed attempt, or null for a single attempt
+     */
+    private static List<Story> fetchWithRetries(URL url, StoryJsonParser.Listener listener,
+                                                FeedExecutor.CancellationToken token, FeedMetrics metrics,
+                                                HttpResponseDiskCache responseCache, RetryPolicy retryPolicy) {
+        RequestBudget budget = getRequestBudget();
+        RequestGovernor governor = getRequestGovernor();
+        long totalDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budget.getTotalTimeout());
+        for (int attempts = 1; ; attempts++) {
+            if (governor != null) {
+                long delay = governor.acquire(token != null ? token.getPriority() : FeedExecutor.Priority.VISIBLE,
+                        TimeUnit.NANOSECONDS.toMillis(totalDeadline - System.nanoTime()));
+                if (delay == RequestGovernor.SHED || delay == RequestGovernor.REJECTED) {
+                    FeedLog.d(LOG_TAG, delay == RequestGovernor.SHED
+                            ? "Request shed to keep within the quota" : "Request rejected, the circuit is open");
+                    metrics.increment(delay == RequestGovernor.SHED
+                            ? FeedMetrics.Counter.SHED_REQUESTS : FeedMetrics.Counter.REJECTED_REQUESTS);
+                    if (listener instanceof FetchListener) {
+                        ((FetchListener) listener).onNotSent();
+                    }
+                    startAttempt(listener);
+                    return fetchFromResponseCache(url, listener, token, metrics, responseCache);
+                }
+                if (delay > 0) {
+                    metrics.increment(FeedMetrics.Counter.THROTTLED_REQUESTS);
+                    metrics.record(FeedMetrics.Stage.THROTTLE_WAIT, TimeUnit.MILLISECONDS.toMicros(delay));
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException e) {
+                        // The load was cancelled, keep the interrupt for the caller
+                        Thread.currentThread().interrupt();
+                        governor.onCancelled();
+                        metrics.increment(FeedMetrics.Counter.CANCELLED_FETCHES);
+                        return null;
+                    }
+                }
+            }
+
+            // Perform HTTP request to the URL and parse the JSON response while it is being read
+            startAttempt(listener);
+            Attempt attempt = makeHttpRequest(url, listener, token, budget, totalDeadline, responseCache);
+            if (governor != null) {
+                if (token != null && token.isCancelled()) {
+                    governor.onCancelled();
+                } else if (governor.onAttempt(attempt.responseCode, attempt.retryAfterMillis)) {
+                    FeedLog.e(LOG_TAG, "Circuit opened after attempt " + attempts);
+                    metrics.increment(FeedMetrics.Counter.CIRCUIT_OPENS);
+                }
+            }
+            if (attempt.stories != null) {
+                // Return the list of {@link Story}s
+                return attempt.stories;
+            }
+            if (token != null && token.isCancelled()) {
+                FeedLog.d(LOG_TAG, "Request cancelled after " + attempts + " attempt(s)");
+                metrics.increment(FeedMetrics.Counter.CANCELLED_FETCHES);
+                return null;
+            }
+
+            long delay = retryPolicy == null ? RetryPolicy.NO_RETRY : retryPolicy.getRetryDelay(
+                    attempts, attempt.responseCode, attempt.exception, attempt.retryAfterMillis);
+            long remaining = TimeUnit.NANOSECONDS.toMillis(totalDeadline - System.nanoTime());
+            if (delay == RetryPolicy.NO_RETRY || delay >= remaining) {
+                FeedLog.e(LOG_TAG, "Giving up after " + attempts + " attempt(s)");
+                metrics.increment(FeedMetrics.Counter.FAILED_FETCHES);
+                return null;
+            }
+            FeedLog.d(LOG_TAG, "Attempt " + attempts + " failed, retrying in " + delay + " ms");
+            metrics.increment(FeedMetrics.Counter.RETRIES);
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                // The load was cancelled, keep the interrupt for the caller
+                Thread.currentThread().interrupt();
+                metrics.increment(FeedMetrics.Counter.CANCELLED_FETCHES);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Tell an {@link AttemptListener} that the stories it got so far are not the result.
+     */
+    private static void startAttempt(StoryJsonParser.Listener listener) {
+        if (listener instanceof AttemptListener) {
+            ((AttemptListener) listener).onAttemptStarted();
+        }
+    }
+
+    /**
+     * Return the stories of the stored response of the url, for a request that could not be
+     * sent, or null when there is none.
+     */
+    private static List<Story> fetchFromResponseCache(URL url, StoryJsonParser.Listener listener,
+                                                      FeedExecutor.CancellationToken token, FeedMetrics metrics,
+                                                      HttpResponseDiskCache responseCache) {
+        HttpResponseDiskCache.Entry cachedResponse = responseCache != null ? responseCache.get(url.toString()) : null;
+        if (cachedResponse == null) {
+            return null;
+        }
+        TimingInputStream inputStream = null;
+        try {
+            inputStream = new TimingInputStream(cachedResponse.openBody());
+            List<Story> stories = parse(inputStream, listener, token, metrics);
+            metrics.increment(FeedMetrics.Counter.CACHED_FALLBACKS);
+            return stories;
+        } catch (IOException e) {
+            FeedLog.e(LOG_TAG, "Problem reading the cached response", e);
+            return null;
+        } finally {
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (IOException e) {
+                    FeedLog.e(LOG_TAG, "Error closing input stream", e);
+                }
+            }
+        }
+    }
+
+    /**
+            * Returns new URL object from the given string URL.
+     */
+    private static URL createUrl(String stringUrl) {
+        URL url = null;
+        try {
+            url = new URL(stringUrl);
+        } catch (MalformedURLException e) {
+            FeedLog.e(LOG_TAG, "Error with creating URL ", e);
+        }
+        return url;
+    }
+
+    /**
+     * Outcome of one attempt of a request: the stories, or what went wrong.
+     */
+    private static final class Attempt {
+        List<Story> stories;
+        int responseCode = -1;
+        IOException exception;
+        long retryAfterMillis = -1;
+    }
+
+    /**
+     * Make one HTTP request to the given URL and return the list of {@link Story}s in the response.
+     * The request is sent by the {@link HttpTransport} and the response body is parsed by
+     * {@link StoryJsonParser} directly from the connection stream. The time to the first byte,
+     * the download and parse times and the response size go into {@link FeedMetrics}.
+     */
+    private static Attempt makeHttpRequest(URL url, StoryJsonParser.Listener listener,
+                                           FeedExecutor.CancellationToken token,
+                                           RequestBudget budget, long totalDeadline,
+                                           HttpResponseDiskCache responseCache) {
+        Attempt attempt = new Attempt();
+
+        // This attempt has to end within its own timeout and within what is left of the total
+        long attemptDeadline = Math.min(totalDeadline,
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budget.getAttemptTimeout()));
+        int remaining = (int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(attemptDeadline - System.nanoTime()));
+
+        // Look for a stored response, its validators make this a conditional request
+        HttpResponseDiskCache.Entry cachedResponse = null;
+        if (responseCache != null) {
+            cachedResponse = responseCache.get(url.toString());
+        }
+
+        HttpRequest request = new HttpRequest(url.toString(),
+                Math.min(budget.getConnectTimeout(), remaining) /* milliseconds */,
+                Math.min(budget.getReadTimeout(), remaining) /* milliseconds */)
+                .cancellation(token);
+        if (cachedResponse != null) {
+            if (cachedResponse.getEtag() != null) {
+                request.header("If-None-Match", cachedResponse.getEtag());
+            }
+            if (cachedResponse.getLastModified() != null) {
+                request.header("If-Modified-Since", cachedResponse.getLastModified());
+            }
+        }
+
+        FeedMetrics metrics = FeedMetrics.get();
+        metrics.increment(FeedMetrics.Counter.REQUESTS);
+        HttpResponse response = null;
+        TimingInputStream inputStream = null;
+        try {
+            long start = System.nanoTime();
+            response = getTransport().execute(request);
+            metrics.recordNanos(FeedMetrics.Stage.TIME_TO_FIRST_BYTE, System.nanoTime() - start);
+            attempt.responseCode = response.getCode();
+
+            // If the request was successful (response code 200),
+            // then read the input stream and parse the response.
+            if (attempt.responseCode == HttpURLConnection.HTTP_OK) {
+                inputStream = new TimingInputStream(cacheResponse(responseCache, url, response,
+                        new DeadlineInputStream(response.getBody(), attemptDeadline)));
+                attempt.stories = parse(inputStream, listener, token, metrics);
+                metrics.recordNanos(FeedMetrics.Stage.DOWNLOAD, inputStream.getReadNanos());
+                metrics.record(FeedMetrics.Stage.RESPONSE_BYTES, response.getBytesReceived());
+                FeedLog.d(LOG_TAG, "Received " + response.getBytesReceived() + " bytes");
+            } else if (attempt.responseCode == HttpURLConnection.HTTP_NOT_MODIFIED
+                    && cachedResponse != null) {
+                // The feed did not change, use the stored body instead of downloading it again
+                FeedLog.d(LOG_TAG, "Response not modified, using the cached response");
+                metrics.increment(FeedMetrics.Counter.NOT_MODIFIED);
+                inputStream = new TimingInputStream(cachedResponse.openBody());
+                attempt.stories = parse(inputStream, listener, token, metrics);
+            } else {
+                FeedLog.e(LOG_TAG, "Error response code: " + attempt.responseCode);
+                attempt.retryAfterMillis = parseRetryAfter(response.getHeader("Retry-After"));
+            }
+        } catch (IOException e) {
+            FeedLog.e(LOG_TAG, "Problem retrieving the earthquake JSON results.", e);
+            attempt.exception = e;
+        } finally {
+            // The body is closed first so a complete response is committed to the cache,
+            // the connection itself stays open for the next request
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (IOException e) {
+                    FeedLog.e(LOG_TAG, "Error closing input stream", e);
+                }
+            }
+            if (response != null) {
+                try {
+                    response.close();
+                } catch (IOException e) {
+                    FeedLog.e(LOG_TAG, "Error closing the response", e);
+                }
+                if (listener instanceof FetchListener) {
+                    ((FetchListener) listener).onBytesReceived(response.getBytesReceived());
+                }
+            }
+        }
+        return attempt;
+    }
+
+    /**
+     * Parse the body with {@link StoryJsonParser} and record the parse time (the time not spent
+     * waiting for the stream), the parse allocations, the number of stories and the failures.
+     */
+    private static List<Story> parse(TimingInputStream inputStream, StoryJsonParser.Listener listener,
+                                     FeedExecutor.CancellationToken token, FeedMetrics metrics)
+            throws IOException {
+        long allocatedBefore = metrics.getThreadAllocatedBytes();
+        long start = System.nanoTime();
+        List<Story> stories;
+        try {
+            stories = StoryJsonParser.parse(inputStream, listener, token);
+        } catch (StoryJsonParser.MalformedResponseException e) {
+            metrics.increment(FeedMetrics.Counter.PARSE_FAILURES);
+            throw e;
+        }
+        metrics.recordNanos(FeedMetrics.Stage.PARSE, System.nanoTime() - start - inputStream.getReadNanos());
+        if (allocatedBefore >= 0) {
+            metrics.record(FeedMetrics.Stage.PARSE_ALLOCATED, metrics.getThreadAllocatedBytes() - allocatedBefore);
+        }
+        metrics.record(FeedMetrics.Stage.RESPONSE_STORIES, stories.size());
+        return stories;
+    }
+
+    /**
+     * Return the delay asked for by a Retry-After header, given in seconds or as an HTTP date,
+     * or -1 when there is no valid value.
+     */
+    static long parseRetryAfter(String retryAfter) {
+        if (retryAfter == null) {
+            return -1;
+        }
+        retryAfter = retryAfter.trim();
+        try {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter)));
+        } catch (NumberFormatException e) {
+            // Not a number of seconds, try an HTTP date below
+        }
+        SimpleDateFormat httpDate = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        httpDate.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            return Math.max(0, httpDate.parse(retryAfter).getTime() - System.currentTimeMillis());
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Return a stream that also writes the response body into the disk cache, or the given stream
+     * when the response can not be stored (no cache, no validators or "no-store").
+     */
+    private static InputStream cacheResponse(HttpResponseDiskCache responseCache, URL url,
+                                             HttpResponse response, InputStream inputStream) {
+        if (responseCache == null) {
+            return inputStream;
+        }
+        String etag = response.getHeader("ETag");
+        String lastModified = response.getHeader("Last-Modified");
+        String cacheControl = response.getHeader("Cache-Control");
+        if ((etag == null && lastModified == null)
+                || (cacheControl != null && cacheControl.contains("no-store"))) {
+            return inputStream;
+        }
+        try {
+            return new CachingInputStream(inputStream, responseCache.edit(url.toString(), etag, lastModified));
+        } catch (IOException e) {
+            FeedLog.e(LOG_TAG, "Problem writing the response cache", e);
+            return inputStream;
+        }
+    }
+
+    /**
+     * Convert the {@link InputStream} into a String which contains the
+     * whole JSON response from the server.
+     * The fetch path uses {@link StoryJsonParser} instead, this String + JSONObject path is kept
+     * as the reference implementation for tests and comparisons.
+     */
+    static String readFromStream(InputStream inputStream) throws IOException {
+        StringBuilder output = new StringBuilder();
+        if (inputStream != null) {
+            InputStreamReader inputStreamReader = new InputStreamReader(inputStream, Charset.forName("UTF-8"));
+            BufferedReader reader = new BufferedReader(inputStreamReader);
+            String line = reader.readLine();
+            while (line != null) {
+                output.append(line);
+                line = reader.readLine();
+            }
+        }
+        return output.toString();
+    }
+
+    /**
+     * Return a list of {@link Story} objects that has been built up from
+     * parsing the given JSON response.
+     */
+    static List<Story> extractFeatureFromJson(String storyJSON) {
+        // If the JSON string is empty or null, then return early.
+        if (storyJSON == null || storyJSON.isEmpty()) {
+            return null;
+        }
+
+        // Create an empty ArrayList that we can start adding stories to
+        List<Story> stories = new ArrayList<>();
+
+        // Try to parse the JSON response string. If there's a problem with the way the JSON
+        // is formatted, a JSONException exception object will be thrown.
+        // Catch the exception so the app doesn't crash, and print the error message to the logs.
+        try {
+
+            // Create a JSONObject from the JSON response string
+            JSONObject baseJsonResponse = new JSONObject(storyJSON);
+            // Create a JSONObject from the base JSON response string
+            JSONObject rootJson = baseJsonResponse.getJSONObject("response");
+
+            // Extract the JSONArray associated with the key called "results",
+            // which represents a list of features (or stories).
+            JSONArray storyArray = rootJson.getJSONArray("results");
+
+            // For each earthquake in the storyArray, create an {@link Earthquake} object
+            for (int i = 0; i < storyArray.length(); i++) {
+
+                // Get a single story at position i within the list of stories
+                JSONObject currentStory = storyArray.getJSONObject(i);
+
+                // Extract the value for the key called "sectionName"
+                String sectionName = currentStory.getString("sectionName");
+
+                // Extract the value for the key called "webPublicationDate"
+                String date = currentStory.getString("webPublicationDate");
+
+                // For a given earthquake, extract the JSONObject associated with the
+                // key called "properties", which represents a list of all properties
+                // for that earthquake.
+                JSONObject properties = currentStory.getJSONObject("fields");
+
+                // Extract the value for the key called "headline"
+                String headline = properties.getString("headline");
+
+                // Extract the value for the key called "trailText"
+                String trailText = properties.getString("trailText");
+
+                // Extract the value for the key called "shortUrl"
+                String shortUrl = properties.getString("shortUrl");
+
+                // TODO retrieve the thumbnail image using Glid support library in the StoryAdapter
+                // Extract the value for the key called "thumbnail"
+                String thumbnailUrl = properties.getString("thumbnail");
+
+                // Required by the project reviewer from Udacity.
+                // For a given earthquake, extract the JSONObject associated with the
+                // key called "properties", which represents a list of all properties
+                // for that earthquake.
+                JSONArray tagsArray = currentStory.getJSONArray("tags");
+                String author = "Author name not found";
+                if (tagsArray != null && tagsArray.length() > 0)
+                    //if the author found ,parse it
+                    author = "By: " + tagsArray.getJSONObject(0).getString("webTitle");
+
+                // Create a new {@link Story} object with the: Section name, Date, Time, Headline, Trial text, Short URL
+                // and url from the JSON response.
+                Story story = new Story(sectionName, date, author, headline, trailText, shortUrl, thumbnailUrl);
+
+                // Add the new {@link Story} to the list of stories.
+                stories.add(story);
+            }
+
+        } catch (JSONException e) {
+            // If an error is thrown when executing any of the above statements in the "try" block,
+            // catch the exception here, so the app doesn't crash. Print a log message
+            // with the message from the exception.
+            FeedLog.e("QueryUtils", "Problem parsing the story JSON results", e);
+        }
+
+        // Return the list of stories
+        return stories;
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.example.android.yournews;
+
+/**
+ * Time limits of a request to the Guardian API, all of them in milliseconds.
+ * Every attempt has its own connect, read and attempt timeouts, and all the attempts of a request
+ * together, including the delays between them, have to finish within the total timeout.
+ */
+public final class RequestBudget {
+    private final int mConnectTimeout;
+    private final int mReadTimeout;
+    private final long mAttemptTimeout;
+    private final long mTotalTimeout;
+
+    /**
+     * @param connectTimeout maximum time to open the connection of one attempt
+     * @param readTimeout    maximum time to wait for the next bytes of the response
+     * @param attemptTimeout maximum time for one attempt, from connecting to the end of the body
+     * @param totalTimeout   maximum time for all the attempts and the delays between them
+     */
+    public RequestBudget(int connectTimeout, int readTimeout, long attemptTimeout, long totalTimeout) {
+        mConnectTimeout = connectTimeout;
+        mReadTimeout = readTimeout;
+        mAttemptTimeout = attemptTimeout;
+        mTotalTimeout = totalTimeout;
+    }
+
+    public int getConnectTimeout() {
+        return mConnectTimeout;
+    }
+
+    public int getReadTimeout() {
+        return mReadTimeout;
+    }
+
+    public long getAttemptTimeout() {
+        return mAttemptTimeout;
+    }
+
+    public long getTotalTimeout() {
+        return mTotalTimeout;
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.android.yournews;
+
+import java.net.HttpURLConnection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client-side limits in front of the fetch path, set with
+ * {@link QueryUtils#setRequestGovernor(RequestGovernor)}. Every attempt asks it first.
+ * <p>
+ * A token bucket keeps the requests within the API quota: it holds up to {@code burst} tokens,
+ * gets {@code requestsPerSecond} new ones every second and every attempt takes one. Pages loaded
+ * before they are scrolled to back off first: they are only sent while more than half of the
+ * bucket is left, and are shed otherwise. The visible feed and a refresh wait for their token
+ * instead, as long as their {@link RequestBudget} allows it. A 429 empties the bucket and nothing
+ * is sent until its Retry-After has passed.
+ * <p>
+ * A circuit breaker stops the requests during an outage: after {@code failureThreshold} failed
+ * attempts in a row (no response or a 5xx) every request is rejected for {@code openMillis}.
+ * Then a single trial request is let through, and its outcome closes the circuit again or keeps
+ * it open for another period. A shed or rejected fetch is answered from the response cache.
+ */
+public final class RequestGovernor {
+
+    /** Returned by {@link #acquire} when the request is dropped to keep within the quota */
+    public static final long SHED = -1;
+    /** Returned by {@link #acquire} when the circuit is open */
+    public static final long REJECTED = -2;
+    /** Pause after a 429 that has no Retry-After */
+    private static final long DEFAULT_THROTTLE_MILLIS = 1000;
+
+    private enum State {
+        /** Requests are sent */
+        CLOSED,
+        /** Requests are rejected until the open period is over */
+        OPEN,
+        /** One trial request is sent to find out if the API is back */
+        HALF_OPEN
+    }
+
+    private static final StoryMemoryCache.Ticker SYSTEM_TICKER = new StoryMemoryCache.Ticker() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    private final double mTokensPerNano;
+    private final int mBurst;
+    private final int mFailureThreshold;
+    private final long mOpenNanos;
+    private final StoryMemoryCache.Ticker mTicker;
+
+    private double mTokens;
+    private long mRefilledAt;
+    private long mThrottledUntil;
+    private State mState = State.CLOSED;
+    private int mFailures;
+    private long mOpenUntil;
+    private boolean mTrialInFlight;
+
+    /**
+     * @param requestsPerSecond the long-term rate of the API quota
+     * @param burst             requests that can be sent at once after a quiet period
+     * @param failureThreshold  failed attempts in a row that open the circuit
+     * @param openMillis        how long the circuit stays open before a trial request
+     */
+    public RequestGovernor(double requestsPerSecond, int burst, int failureThreshold, long openMillis) {
+        this(requestsPerSecond, burst, failureThreshold, openMillis, SYSTEM_TICKER);
+    }
+
+    RequestGovernor(double requestsPerSecond, int burst, int failureThreshold, long openMillis,
+                    StoryMemoryCache.Ticker ticker) {
+        if (requestsPerSecond <= 0 || burst < 1 || failureThreshold < 1) {
+            throw new IllegalArgumentException("Invalid limits");
+        }
+        mTokensPerNano = requestsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        mBurst = burst;
+        mFailureThreshold = failureThreshold;
+        mOpenNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        mTicker = ticker;
+        mTokens = burst;
+        mRefilledAt = ticker.nanoTime();
+    }
+
+    /**
+     * Take a token for the next attempt of a request.
+     *
+     * @param priority      lane of the load the request belongs to
+     * @param maxWaitMillis the longest the caller can wait for the token
+     * @return the delay in milliseconds to wait before sending the attempt (the token is already
+     * taken), {@link #SHED} or {@link #REJECTED}
+     */
+    public synchronized long acquire(FeedExecutor.Priority priority, long maxWaitMillis) {
+        long now = mTicker.nanoTime();
+        if (mState == State.OPEN) {
+            if (now - mOpenUntil < 0) {
+                return REJECTED;
+            }
+            mState = State.HALF_OPEN;
+            mTrialInFlight = false;
+        }
+        if (mState == State.HALF_OPEN && mTrialInFlight) {
+            return REJECTED;
+        }
+
+        refill(now);
+        long throttledNanos = Math.max(0, mThrottledUntil - now);
+        if (priority == FeedExecutor.Priority.PREFETCH
+                && (throttledNanos > 0 || mTokens - 1 < mBurst / 2.0)) {
+            // Keep the rest of the quota for what is on the screen
+            return SHED;
+        }
+        long tokenNanos = mTokens >= 1 ? 0 : (long) Math.ceil((1 - mTokens) / mTokensPerNano);
+        long waitMillis = toMillisRoundingUp(Math.max(throttledNanos, tokenNanos));
+        if (waitMillis > maxWaitMillis) {
+            return SHED;
+        }
+        // A waiting request takes its token now, so the ones after it wait longer
+        mTokens -= 1;
+        if (mState == State.HALF_OPEN) {
+            mTrialInFlight = true;
+        }
+        return waitMillis;
+    }
+
+    /**
+     * Tell the outcome of an attempt that was let through.
+     *
+     * @param responseCode     HTTP response code, or -1 when there was no response
+     * @param retryAfterMillis delay asked for by a Retry-After header, or -1 when there was none
+     * @return true when this failure opened the circuit
+     */
+    public synchronized boolean onAttempt(int responseCode, long retryAfterMillis) {
+        long now = mTicker.nanoTime();
+        if (responseCode == 429) {
+            // Over the quota after all, stop until the server wants to hear from us again
+            refill(now);
+            mTokens = Math.min(mTokens, 0);
+            mThrottledUntil = now + TimeUnit.MILLISECONDS.toNanos(
+                    retryAfterMillis >= 0 ? retryAfterMillis : DEFAULT_THROTTLE_MILLIS);
+        }
+        if (responseCode != -1 && responseCode < HttpURLConnection.HTTP_INTERNAL_ERROR) {
+            // The API answered, so it is up
+            mFailures = 0;
+            mState = State.CLOSED;
+            mTrialInFlight = false;
+            return false;
+        }
+        mFailures++;
+        if (mState == State.HALF_OPEN || (mState == State.CLOSED && mFailures >= mFailureThreshold)) {
+            mState = State.OPEN;
+            mOpenUntil = now + mOpenNanos;
+            mTrialInFlight = false;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Tell that an attempt that was let through was cancelled, it says nothing about the API.
+     */
+    public synchronized void onCancelled() {
+        mTrialInFlight = false;
+    }
+
+    /**
+     * Return true while requests are rejected or only a trial request is let through.
+     */
+    public synchronized boolean isCircuitOpen() {
+        return mState != State.CLOSED;
+    }
+
+    /**
+     * Return the tokens left in the bucket, below 0 when waiting requests took them in advance.
+     */
+    synchronized double getTokens() {
+        refill(mTicker.nanoTime());
+        return mTokens;
+    }
+
+    private void refill(long now) {
+        mTokens = Math.min(mBurst, mTokens + (now - mRefilledAt) * mTokensPerNano);
+        mRefilledAt = now;
+    }
+
+    private static long toMillisRoundingUp(long nanos) {
+        return (nanos + TimeUnit.MILLISECONDS.toNanos(1) - 1) / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.android.yournews;
+
+import java.io.IOException;
+
+/**
+ * Decides if, and after how long, a failed request to the Guardian API is sent again.
+ * Set the policy used by the fetch path with {@link QueryUtils#setRetryPolicy(RetryPolicy)}.
+ */
+public interface RetryPolicy {
+
+    /** Returned by {@link #getRetryDelay} when the request must not be sent again */
+    long NO_RETRY = -1;
+
+    /**
+     * Return the delay in milliseconds before the next attempt, or {@link #NO_RETRY}.
+     *
+     * @param failedAttempts   number of attempts made so far, 1 after the first failure
+     * @param responseCode     HTTP response code of the failed attempt, or -1 when there was none
+     * @param exception        the error of the failed attempt, or null when it got a response
+     * @param retryAfterMillis delay asked for by a Retry-After header, or -1 when there was none
+     */
+    long getRetryDelay(int failedAttempts, int responseCode, IOException exception, long retryAfterMillis);
+}
@@ -0,0 +1,150 @@
+package com.example.android.yournews;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Loads several sections at the same time and merges them into one feed, newest first and
+ * without the stories that are in more than one section. A section that fails, or is still
+ * loading when the deadline passes, is left out so it can not hold up the others.
+ * <p>
+ * The sections run on the {@link FeedExecutor} in the lane of the load that asks for them, each
+ * with a token of its own: at the deadline the tokens of the sections still loading are
+ * cancelled, which aborts their connections. The calling thread, usually a thread of the same
+ * executor, runs the sections no other thread started yet instead of only waiting for them.
+ */
+public final class SectionFanOut {
+
+    /**
+     * Loads the stories of one section, on a thread of the executor.
+     */
+    public interface SectionFetcher {
+        /**
+         * Return the stories of the section, or null when they could not be loaded.
+         *
+         * @param token the token of this section, cancelled at the deadline or with the load
+         */
+        List<Story> fetch(String sectionTag, FeedExecutor.CancellationToken token);
+    }
+
+    private final FeedExecutor mExecutor;
+    private final long mDeadlineMillis;
+
+    /**
+     * @param executor       runs the requests of the sections
+     * @param deadlineMillis time after which the sections that are not loaded yet are left out
+     */
+    public SectionFanOut(FeedExecutor executor, long deadlineMillis) {
+        mExecutor = executor;
+        mDeadlineMillis = deadlineMillis;
+    }
+
+    /**
+     * Load all the sections and return the merged stories, or null when no section could be
+     * loaded or the load was cancelled.
+     *
+     * @param token the token of the load, its priority is the lane of the sections, may be null
+     */
+    public List<Story> fetchAll(List<String> sectionTags, final SectionFetcher fetcher,
+                                final FeedExecutor.CancellationToken token) {
+        FeedExecutor.Priority priority = token != null ? token.getPriority() : FeedExecutor.Priority.VISIBLE;
+        final List<FeedExecutor.FeedFuture<List<Story>>> futures = new ArrayList<>(sectionTags.size());
+        for (final String sectionTag : sectionTags) {
+            futures.add(mExecutor.submit(priority, new FeedExecutor.Task<List<Story>>() {
+                @Override
+                public List<Story> run(FeedExecutor.CancellationToken sectionToken) {
+                    return fetcher.fetch(sectionTag, sectionToken);
+                }
+            }));
+        }
+        // Cancelling a section cancels its token, so its connection is aborted
+        Runnable cancelSections = new Runnable() {
+            @Override
+            public void run() {
+                for (FeedExecutor.FeedFuture<List<Story>> future : futures) {
+                    future.cancel(true);
+                }
+            }
+        };
+        ScheduledFuture<?> deadline = mExecutor.runAfter(cancelSections, mDeadlineMillis);
+        if (token != null) {
+            token.addOnCancelListener(cancelSections);
+        }
+
+        List<List<Story>> sections = new ArrayList<>(futures.size());
+        try {
+            for (FeedExecutor.FeedFuture<List<Story>> future : futures) {
+                // Does nothing when another thread started it
+                future.run();
+                if (future.isCancelled() && (token == null || !token.isCancelled())) {
+                    // Cancelled at the deadline while this thread ran it, the load goes on
+                    Thread.interrupted();
+                }
+            }
+            for (FeedExecutor.FeedFuture<List<Story>> future : futures) {
+                try {
+                    List<Story> stories = future.get();
+                    if (stories != null) {
+                        sections.add(stories);
+                    }
+                } catch (CancellationException e) {
+                    // Too slow, go on without this section
+                } catch (ExecutionException e) {
+                    // This section failed, the others are still used
+                }
+            }
+        } catch (InterruptedException e) {
+            // The load itself was cancelled, stop all the sections
+            cancelSections.run();
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            deadline.cancel(false);
+            if (token != null) {
+                token.removeOnCancelListener(cancelSections);
+            }
+        }
+        if (token != null && token.isCancelled()) {
+            return null;
+        }
+        return sections.isEmpty() ? null : merge(sections);
+    }
+
+    /**
+     * Merge the stories of several sections, newest first, keeping the first story of every
+     * short URL.
+     */
+    public static List<Story> merge(List<List<Story>> sections) {
+        List<Story> merged = new ArrayList<>();
+        Set<String> shortUrls = new HashSet<>();
+        for (List<Story> stories : sections) {
+            for (Story story : stories) {
+                if (story.getShortUrl() == null || shortUrls.add(story.getShortUrl())) {
+                    merged.add(story);
+                }
+            }
+        }
+        Collections.sort(merged, NEWEST_FIRST);
+        return merged;
+    }
+
+    /**
+     * Orders stories by webPublicationDate, newest first and stories without a date last.
+     */
+    static final Comparator<Story> NEWEST_FIRST = new Comparator<Story>() {
+        @Override
+        public int compare(Story a, Story b) {
+            // -1 when there is no date, so those stories come last
+            long first = a.getPublishedMillis();
+            long second = b.getPublishedMillis();
+            return first < second ? 1 : (first == second ? 0 : -1);
+        }
+    };
+}
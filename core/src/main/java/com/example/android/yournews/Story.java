@@ -0,0 +1,320 @@
+package com.example.android.yournews;
+
+import java.nio.charset.Charset;
+
+/**
+ * This Class is the main for Story data retrieved from the Guardian web site using this Query link:
+ * https://content.guardianapis.com/search?q=debate%20AND%20(economy%20OR%20immigration%20education)&tag=politics/politics&from-date=2018-01-01&to-date=2018-06-01&page-size=100&show-fields=trailText,headline,thumbnail,shortUrl&api-key=test
+ * Which will retrieve data :-
+ * size=100 story
+ * from-date=2018-01-01 to-date=2018-06-01
+ * with these fields:
+ * Section name
+ * publishing date "with exact time"
+ * author
+ * story headline
+ * trail text for the story
+ * short URL for the story on the guardian website
+ * thumbnail URL
+ * <p>
+ * A feed of several pages and sections keeps thousands of stories, so a story is kept small:
+ * <ul>
+ * <li>the section name, the author and the display date and time are shared with the other
+ * stories through the {@link StoryDictionary},</li>
+ * <li>the publication date is kept as epoch milliseconds, and only written back as text when
+ * it is asked for,</li>
+ * <li>the headline, the trail texts and the URLs without their common prefix are kept as UTF-8
+ * in a {@link TextBlock} shared with the stories created after it on the same thread, and
+ * decoded when they are asked for.</li>
+ * </ul>
+ */
+
+public class Story {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    /** Length of a missing value */
+    private static final int NULL_LENGTH = -1;
+    /** Length of the display trail text when it is the same as the trail text */
+    private static final int SAME_AS_TRAIL_TEXT = -2;
+
+    // Shared with the other stories
+    private final String mSectionName;
+    private final String mAuthor;
+    private final String mDisplayDate;
+    private final String mDisplayTime;
+    private final long mPublishedMillis;
+    // The date as it was given, only when formatting mPublishedMillis does not give it back
+    private final String mDate;
+    // The UTF-8 text of the story in its block: the headline, the trail text, the display trail
+    // text, and the short URL and thumbnail URL after their prefix, one after the other
+    private final byte[] mText;
+    private final int mTextOffset;
+    private final int mHeadlineLength;
+    private final int mTrailTextLength;
+    private final int mDisplayTrailTextLength;
+    private final int mShortUrlLength;
+    private final int mThumbnailUrlLength;
+    // Index of the URL prefixes in the StoryDictionary, -1 for none
+    private final byte mShortUrlPrefix;
+    private final byte mThumbnailUrlPrefix;
+    private final int mHashCode;
+    // Color of the section name, 0 until the loader resolves it with SectionColors
+    private int mSectionColor;
+
+    public Story(String sectionName, String date, String author, String headline, String trailText, String shortUrl, String thumbnailUrl) {
+        mSectionName = StoryDictionary.share(sectionName);
+        mAuthor = StoryDictionary.share(author);
+        mPublishedMillis = StoryFormatter.parseDate(date);
+        mDate = mPublishedMillis >= 0 && StoryFormatter.formatIsoDate(mPublishedMillis).equals(date) ? null : date;
+        mDisplayDate = StoryDictionary.shareDate(StoryFormatter.formatDate(date));
+        mDisplayTime = StoryDictionary.shareDate(StoryFormatter.formatTime(date));
+        mHashCode = shortUrl != null ? shortUrl.hashCode() : 0;
+
+        String displayTrailText = StoryFormatter.stripHtml(trailText);
+        int shortUrlPrefix = StoryDictionary.findUrlPrefix(shortUrl);
+        int thumbnailUrlPrefix = StoryDictionary.findUrlPrefix(thumbnailUrl);
+        mShortUrlPrefix = (byte) shortUrlPrefix;
+        mThumbnailUrlPrefix = (byte) thumbnailUrlPrefix;
+
+        byte[] headlineBytes = encode(headline);
+        byte[] trailTextBytes = encode(trailText);
+        // Most trail texts have no HTML, their display text is the same
+        byte[] displayTrailTextBytes = displayTrailText == null || displayTrailText.equals(trailText)
+                ? null : encode(displayTrailText);
+        byte[] shortUrlBytes = encode(removePrefix(shortUrl, shortUrlPrefix));
+        byte[] thumbnailUrlBytes = encode(removePrefix(thumbnailUrl, thumbnailUrlPrefix));
+        mHeadlineLength = length(headlineBytes);
+        mTrailTextLength = length(trailTextBytes);
+        mDisplayTrailTextLength = displayTrailTextBytes != null ? displayTrailTextBytes.length
+                : (trailText != null ? SAME_AS_TRAIL_TEXT : NULL_LENGTH);
+        mShortUrlLength = length(shortUrlBytes);
+        mThumbnailUrlLength = length(thumbnailUrlBytes);
+
+        TextBlock block = TextBlock.reserve(Math.max(mHeadlineLength, 0) + Math.max(mTrailTextLength, 0)
+                + Math.max(mDisplayTrailTextLength, 0) + Math.max(mShortUrlLength, 0)
+                + Math.max(mThumbnailUrlLength, 0));
+        mText = block.mBytes;
+        mTextOffset = block.mUsed;
+        block.append(headlineBytes);
+        block.append(trailTextBytes);
+        block.append(displayTrailTextBytes);
+        block.append(shortUrlBytes);
+        block.append(thumbnailUrlBytes);
+    }
+
+    public String getSectionName() {
+        return mSectionName;
+    }
+
+    public String getDate() {
+        if (mDate != null || mPublishedMillis < 0) {
+            return mDate;
+        }
+        return StoryFormatter.formatIsoDate(mPublishedMillis);
+    }
+
+    public String getAuthor() {
+        return mAuthor;
+    }
+
+    public String getHeadline() {
+        return decode(mTextOffset, mHeadlineLength);
+    }
+
+    public String getTrailText() {
+        return decode(getTrailTextOffset(), mTrailTextLength);
+    }
+
+    public String getShortUrl() {
+        return decodeUrl(mShortUrlPrefix, getShortUrlOffset(), mShortUrlLength);
+    }
+
+    public String getThumbnailUrl() {
+        return decodeUrl(mThumbnailUrlPrefix, getShortUrlOffset() + Math.max(mShortUrlLength, 0), mThumbnailUrlLength);
+    }
+
+    /**
+     * Return the publication time in epoch milliseconds, or -1 when the date could not be read.
+     */
+    public long getPublishedMillis() {
+        return mPublishedMillis;
+    }
+
+    /**
+     * Return the publication date shown in the list ("2018-05-31").
+     */
+    public String getDisplayDate() {
+        return mDisplayDate;
+    }
+
+    /**
+     * Return the publication time shown in the list ("18:00"), or null when the date has no time.
+     */
+    public String getDisplayTime() {
+        return mDisplayTime;
+    }
+
+    /**
+     * Return the trail text without its HTML.
+     */
+    public String getDisplayTrailText() {
+        if (mDisplayTrailTextLength == SAME_AS_TRAIL_TEXT) {
+            return getTrailText();
+        }
+        return decode(getTrailTextOffset() + Math.max(mTrailTextLength, 0), mDisplayTrailTextLength);
+    }
+
+    /**
+     * Return the resolved color of the section name, 0 when it was not resolved.
+     */
+    public int getSectionColor() {
+        return mSectionColor;
+    }
+
+    void setSectionColor(int sectionColor) {
+        mSectionColor = sectionColor;
+    }
+
+    /**
+     * Return a rough size in bytes of the story on its own: the object and its UTF-8 text. The
+     * shared values are not counted.
+     */
+    int estimateBytes() {
+        return 80 + getTextLength();
+    }
+
+    /**
+     * Return true when both stories have the same short URL, or are the same story when they
+     * have none.
+     */
+    boolean hasSameShortUrl(Story story) {
+        if (mShortUrlLength == NULL_LENGTH || story.mShortUrlLength == NULL_LENGTH) {
+            return this == story;
+        }
+        if (mHashCode != story.mHashCode || mShortUrlLength != story.mShortUrlLength
+                || mShortUrlPrefix != story.mShortUrlPrefix) {
+            return false;
+        }
+        return sameBytes(mText, getShortUrlOffset(), story.mText, story.getShortUrlOffset(), mShortUrlLength);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Story)) {
+            return false;
+        }
+        Story story = (Story) o;
+        if (mHashCode != story.mHashCode
+                || mPublishedMillis != story.mPublishedMillis
+                || mHeadlineLength != story.mHeadlineLength
+                || mTrailTextLength != story.mTrailTextLength
+                || mDisplayTrailTextLength != story.mDisplayTrailTextLength
+                || mShortUrlLength != story.mShortUrlLength
+                || mThumbnailUrlLength != story.mThumbnailUrlLength
+                || mShortUrlPrefix != story.mShortUrlPrefix
+                || mThumbnailUrlPrefix != story.mThumbnailUrlPrefix
+                || !equal(mSectionName, story.mSectionName)
+                || !equal(mDate, story.mDate)
+                || !equal(mAuthor, story.mAuthor)) {
+            return false;
+        }
+        // The same values are always encoded the same way, so the bytes tell
+        return sameBytes(mText, mTextOffset, story.mText, story.mTextOffset, getTextLength());
+    }
+
+    @Override
+    public int hashCode() {
+        return mHashCode;
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static boolean sameBytes(byte[] a, int offsetA, byte[] b, int offsetB, int length) {
+        for (int i = 0; i < length; i++) {
+            if (a[offsetA + i] != b[offsetB + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int getTrailTextOffset() {
+        return mTextOffset + Math.max(mHeadlineLength, 0);
+    }
+
+    private int getShortUrlOffset() {
+        return getTrailTextOffset() + Math.max(mTrailTextLength, 0) + Math.max(mDisplayTrailTextLength, 0);
+    }
+
+    private int getTextLength() {
+        return getShortUrlOffset() + Math.max(mShortUrlLength, 0) + Math.max(mThumbnailUrlLength, 0) - mTextOffset;
+    }
+
+    private String decode(int offset, int length) {
+        return length == NULL_LENGTH ? null : new String(mText, offset, length, UTF_8);
+    }
+
+    private String decodeUrl(int prefix, int offset, int length) {
+        String url = decode(offset, length);
+        return url == null || prefix < 0 ? url : StoryDictionary.getUrlPrefix(prefix).concat(url);
+    }
+
+    private static String removePrefix(String url, int prefix) {
+        return prefix < 0 ? url : url.substring(StoryDictionary.getUrlPrefix(prefix).length());
+    }
+
+    private static byte[] encode(String value) {
+        return value == null ? null : value.getBytes(UTF_8);
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? NULL_LENGTH : bytes.length;
+    }
+
+    /**
+     * A block of text shared by the stories created one after the other on a thread, instead of
+     * an array (and its header) per value. A block stays in memory as long as one of its stories
+     * does, so the blocks are kept small.
+     */
+    static final class TextBlock {
+        static final int BLOCK_BYTES = 16 * 1024;
+        /** A story with more text than this gets a block of its own */
+        private static final int MAX_SHARED_BYTES = BLOCK_BYTES / 4;
+
+        private static final ThreadLocal<TextBlock> sCurrent = new ThreadLocal<>();
+
+        final byte[] mBytes;
+        int mUsed;
+
+        private TextBlock(int size) {
+            mBytes = new byte[size];
+        }
+
+        /**
+         * Return a block of the current thread with room for the bytes.
+         */
+        static TextBlock reserve(int bytes) {
+            if (bytes > MAX_SHARED_BYTES) {
+                return new TextBlock(bytes);
+            }
+            TextBlock block = sCurrent.get();
+            if (block == null || block.mBytes.length - block.mUsed < bytes) {
+                block = new TextBlock(BLOCK_BYTES);
+                sCurrent.set(block);
+            }
+            return block;
+        }
+
+        void append(byte[] bytes) {
+            if (bytes != null) {
+                System.arraycopy(bytes, 0, mBytes, mUsed, bytes.length);
+                mUsed += bytes.length;
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.android.yournews;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The values many stories have in common, kept once for all of them: section names, authors
+ * ("By: " and the contributor), the display dates and times, and the start of the URLs.
+ * <p>
+ * The table of shared values is bounded, past {@link #MAX_VALUES} a new value is simply not
+ * shared. The display dates and times have a table of their own that keeps the most recently
+ * used ones: a feed that runs for long keeps meeting new dates, they would fill the table and
+ * the sections and authors seen after them would not be shared anymore.
+ */
+final class StoryDictionary {
+
+    /** Most values shared, a few dozen sections and a few thousand authors are expected */
+    static final int MAX_VALUES = 8192;
+    /** Most display dates and times shared, a day has 1440 times and a feed spans a few weeks */
+    static final int MAX_DATE_VALUES = 2048;
+
+    /**
+     * Common starts of the short URLs and thumbnail URLs, a story keeps the index of its prefix
+     * and only the rest of the URL. Longest first, the first one that matches is used.
+     */
+    private static final String[] URL_PREFIXES = {
+            "https://media.guim.co.uk/",
+            "https://i.guim.co.uk/img/media/",
+            "https://www.theguardian.com/",
+            "https://gu.com/p/",
+            "https://",
+            "http://"
+    };
+
+    private static final ConcurrentHashMap<String, String> sValues = new ConcurrentHashMap<>();
+    /** Access ordered, the first one is the least recently used */
+    private static final LinkedHashMap<String, String> sDateValues =
+            new LinkedHashMap<String, String>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                    return size() > MAX_DATE_VALUES;
+                }
+            };
+
+    private StoryDictionary() {
+    }
+
+    /**
+     * Return the shared copy of the value, or the value itself when it is the first one or the
+     * table is full.
+     */
+    static String share(String value) {
+        if (value == null) {
+            return null;
+        }
+        String shared = sValues.get(value);
+        if (shared != null) {
+            return shared;
+        }
+        if (sValues.size() >= MAX_VALUES) {
+            return value;
+        }
+        shared = sValues.putIfAbsent(value, value);
+        return shared != null ? shared : value;
+    }
+
+    /**
+     * Return the shared copy of a display date or time, or the value itself when it is the
+     * first one. The least recently used values make room for the new ones.
+     */
+    static String shareDate(String value) {
+        if (value == null) {
+            return null;
+        }
+        synchronized (sDateValues) {
+            String shared = sDateValues.get(value);
+            if (shared != null) {
+                return shared;
+            }
+            sDateValues.put(value, value);
+            return value;
+        }
+    }
+
+    /**
+     * Return the index of the prefix the url starts with, or -1.
+     */
+    static int findUrlPrefix(String url) {
+        if (url == null) {
+            return -1;
+        }
+        for (int i = 0; i < URL_PREFIXES.length; i++) {
+            if (url.startsWith(URL_PREFIXES[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static String getUrlPrefix(int index) {
+        return URL_PREFIXES[index];
+    }
+
+    /**
+     * Return the number of shared values.
+     */
+    static int size() {
+        return sValues.size();
+    }
+
+    /**
+     * Return the number of shared display dates and times.
+     */
+    static int dateSize() {
+        synchronized (sDateValues) {
+            return sDateValues.size();
+        }
+    }
+}
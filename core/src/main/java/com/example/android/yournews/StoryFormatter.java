@@ -0,0 +1,235 @@
+package com.example.android.yournews;
+
+/**
+ * Turns the raw Guardian values into the text shown in the list: the publication time as epoch
+ * milliseconds, the date and time strings, and the trail text without its HTML. It runs when a
+ * {@link Story} is created, on the loader thread, so binding a row does not parse anything.
+ */
+public final class StoryFormatter {
+
+    /** Separator between the date and the time of webPublicationDate */
+    private static final char DATE_SEPARATOR = 'T';
+    /** Length of "yyyy-MM-ddTHH:mm:ss" */
+    private static final int DATE_TIME_LENGTH = 19;
+    private static final char NO_BREAK_SPACE = '\u00a0';
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private StoryFormatter() {
+    }
+
+    /**
+     * Return the epoch milliseconds of an ISO 8601 UTC date ("2018-05-31T18:00:11Z"), or -1 when
+     * it can not be read.
+     */
+    public static long parseDate(String isoDate) {
+        if (isoDate == null || isoDate.length() < DATE_TIME_LENGTH || isoDate.charAt(4) != '-'
+                || isoDate.charAt(7) != '-' || isoDate.charAt(10) != DATE_SEPARATOR
+                || isoDate.charAt(13) != ':' || isoDate.charAt(16) != ':') {
+            return -1;
+        }
+        int year = digits(isoDate, 0, 4);
+        int month = digits(isoDate, 5, 7);
+        int day = digits(isoDate, 8, 10);
+        int hour = digits(isoDate, 11, 13);
+        int minute = digits(isoDate, 14, 16);
+        int second = digits(isoDate, 17, 19);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 60) {
+            return -1;
+        }
+        long days = daysFromEpoch(year, month, day);
+        return ((days * 24 + hour) * 60 + minute) * 60000L + second * 1000L;
+    }
+
+    /**
+     * Return the ISO 8601 UTC date of epoch milliseconds ("2018-05-31T18:00:11Z"), the way the
+     * Guardian writes webPublicationDate. The milliseconds of the second are left out.
+     */
+    public static String formatIsoDate(long millis) {
+        long days = millis >= 0 ? millis / DAY_MILLIS : (millis - DAY_MILLIS + 1) / DAY_MILLIS;
+        int secondOfDay = (int) ((millis - days * DAY_MILLIS) / 1000);
+        // Days from epoch to the civil date, the inverse of daysFromEpoch
+        long z = days + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        int dayOfEra = (int) (z - era * 146097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int monthIndex = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * monthIndex + 2) / 5 + 1;
+        int month = monthIndex < 10 ? monthIndex + 3 : monthIndex - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        char[] date = new char[DATE_TIME_LENGTH + 1];
+        putDigits(date, 0, (int) year, 4);
+        date[4] = '-';
+        putDigits(date, 5, month, 2);
+        date[7] = '-';
+        putDigits(date, 8, day, 2);
+        date[10] = DATE_SEPARATOR;
+        putDigits(date, 11, secondOfDay / 3600, 2);
+        date[13] = ':';
+        putDigits(date, 14, secondOfDay / 60 % 60, 2);
+        date[16] = ':';
+        putDigits(date, 17, secondOfDay % 60, 2);
+        date[19] = 'Z';
+        return new String(date);
+    }
+
+    /**
+     * Return the date part of webPublicationDate ("2018-05-31"), or the whole value when it has
+     * no time part.
+     */
+    public static String formatDate(String isoDate) {
+        if (isoDate == null) {
+            return null;
+        }
+        int separator = isoDate.indexOf(DATE_SEPARATOR);
+        return separator < 0 ? isoDate : isoDate.substring(0, separator);
+    }
+
+    /**
+     * Return the hours and minutes of webPublicationDate ("18:00"), or null when it has no time.
+     */
+    public static String formatTime(String isoDate) {
+        if (isoDate == null) {
+            return null;
+        }
+        int separator = isoDate.indexOf(DATE_SEPARATOR);
+        if (separator < 0 || isoDate.length() < separator + 6) {
+            return null;
+        }
+        return isoDate.substring(separator + 1, separator + 6);
+    }
+
+    /**
+     * Return the text of an HTML fragment: the tags are removed, the entities decoded and the
+     * white space collapsed, so "<strong>Letters: </strong>A &amp; B" becomes "Letters: A & B".
+     */
+    public static String stripHtml(String html) {
+        if (html == null) {
+            return null;
+        }
+        StringBuilder text = new StringBuilder(html.length());
+        boolean space = false;
+        int length = html.length();
+        for (int i = 0; i < length; i++) {
+            char c = html.charAt(i);
+            if (c == '<') {
+                int end = html.indexOf('>', i);
+                if (end >= 0) {
+                    // A tag separates words like a space would, "<br>" or "</p><p>"
+                    space = true;
+                    i = end;
+                    continue;
+                }
+                // No closing '>', so it is not a tag and is kept as text
+            }
+            if (c == '&') {
+                int end = html.indexOf(';', i);
+                if (end > i + 1 && end - i <= 10) {
+                    int decoded = decodeEntity(html.substring(i + 1, end));
+                    if (decoded >= 0) {
+                        c = (char) decoded;
+                        i = end;
+                    }
+                }
+            }
+            if (Character.isWhitespace(c) || c == NO_BREAK_SPACE) {
+                space = true;
+                continue;
+            }
+            if (space && text.length() > 0) {
+                text.append(' ');
+            }
+            space = false;
+            text.append(c);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Return the character of an entity name without '&' and ';', or -1 when it is unknown.
+     */
+    private static int decodeEntity(String entity) {
+        if (entity.charAt(0) == '#') {
+            try {
+                int codePoint = entity.length() > 1 && (entity.charAt(1) == 'x' || entity.charAt(1) == 'X')
+                        ? Integer.parseInt(entity.substring(2), 16)
+                        : Integer.parseInt(entity.substring(1));
+                return codePoint <= Character.MAX_VALUE ? codePoint : -1;
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        switch (entity) {
+            case "amp":
+                return '&';
+            case "lt":
+                return '<';
+            case "gt":
+                return '>';
+            case "quot":
+                return '"';
+            case "apos":
+                return '\'';
+            case "nbsp":
+                return NO_BREAK_SPACE;
+            case "ndash":
+                return '\u2013';
+            case "mdash":
+                return '\u2014';
+            case "lsquo":
+                return '\u2018';
+            case "rsquo":
+                return '\u2019';
+            case "ldquo":
+                return '\u201c';
+            case "rdquo":
+                return '\u201d';
+            case "hellip":
+                return '\u2026';
+            case "pound":
+                return '\u00a3';
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Write the last count digits of the value at start.
+     */
+    private static void putDigits(char[] text, int start, int value, int count) {
+        for (int i = start + count - 1; i >= start; i--) {
+            text[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    /**
+     * Return the number read from the digits between start and end, or -1 when one is not a digit.
+     */
+    private static int digits(String text, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Return the number of days between 1970-01-01 and the date of the proleptic Gregorian
+     * calendar (the civil-from-days algorithm run backwards).
+     */
+    private static long daysFromEpoch(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+}
@@ -0,0 +1,329 @@
+package com.example.android.yournews;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * In-memory inverted index of the headline, trail text, author and section name of the stored
+ * stories, for searching them without the network.
+ * <p>
+ * The text is split into lower case words without accents. Every word points to the stories it
+ * is in, with a weight that grows with the field: a word of the headline counts more than one of
+ * the trail text. The words are kept sorted, so every word of a query matches all the words it
+ * is the start of: "immig" finds "immigration". A story has to match every word of the query,
+ * and the stories are ranked by the sum of the weights of their matches, rarer words counting
+ * more, then newest first.
+ * <p>
+ * Stories are added one by one as they arrive. A story added again with the same short URL
+ * replaces the old one, which is only marked as deleted until enough of them pile up.
+ */
+public final class StoryIndex {
+
+    /** Weight of a word in each field */
+    static final int HEADLINE_WEIGHT = 4;
+    static final int SECTION_WEIGHT = 2;
+    static final int AUTHOR_WEIGHT = 2;
+    static final int TRAIL_TEXT_WEIGHT = 1;
+    /** A query word that is a whole word of the story counts this much more than a prefix */
+    private static final float EXACT_MATCH_BOOST = 1.5f;
+    /** Shorter words, like the "s" of "Labour's", are not indexed */
+    private static final int MIN_WORD_LENGTH = 2;
+    /** Deleted stories kept before the index is rebuilt without them */
+    private static final int MIN_DELETED_TO_COMPACT = 64;
+
+    /**
+     * The stories a word is in, by increasing story id, and its weight in each of them.
+     */
+    private static final class Postings {
+        int[] mDocs = new int[2];
+        int[] mWeights = new int[2];
+        int mSize;
+
+        void add(int doc, int weight) {
+            if (mSize > 0 && mDocs[mSize - 1] == doc) {
+                // The same word again in the same story
+                mWeights[mSize - 1] += weight;
+                return;
+            }
+            if (mSize == mDocs.length) {
+                int[] docs = new int[mSize * 2];
+                int[] weights = new int[mSize * 2];
+                System.arraycopy(mDocs, 0, docs, 0, mSize);
+                System.arraycopy(mWeights, 0, weights, 0, mSize);
+                mDocs = docs;
+                mWeights = weights;
+            }
+            mDocs[mSize] = doc;
+            mWeights[mSize] = weight;
+            mSize++;
+        }
+    }
+
+    /** Stories by id, a deleted one stays until the next compaction */
+    private final List<Story> mStories = new ArrayList<>();
+    private final BitSet mDeleted = new BitSet();
+    private int mDeletedCount;
+    /** Id of the current story of every short URL */
+    private final Map<String, Integer> mDocIds = new HashMap<>();
+    private final TreeMap<String, Postings> mWords = new TreeMap<>();
+
+    /**
+     * Add the story, or replace the one with the same short URL.
+     */
+    public synchronized void add(Story story) {
+        if (story.getShortUrl() != null) {
+            Integer previous = mDocIds.get(story.getShortUrl());
+            if (previous != null) {
+                if (mStories.get(previous).equals(story)) {
+                    return;
+                }
+                delete(previous);
+            }
+        }
+        int doc = mStories.size();
+        mStories.add(story);
+        if (story.getShortUrl() != null) {
+            mDocIds.put(story.getShortUrl(), doc);
+        }
+        addWords(doc, story.getHeadline(), HEADLINE_WEIGHT);
+        addWords(doc, story.getSectionName(), SECTION_WEIGHT);
+        addWords(doc, story.getAuthor(), AUTHOR_WEIGHT);
+        addWords(doc, story.getDisplayTrailText(), TRAIL_TEXT_WEIGHT);
+        compactIfNeeded();
+    }
+
+    public synchronized void addAll(Collection<Story> stories) {
+        for (Story story : stories) {
+            add(story);
+        }
+    }
+
+    /**
+     * Take the story with this short URL out of the results.
+     *
+     * @return true when it was in the index
+     */
+    public synchronized boolean remove(String shortUrl) {
+        Integer doc = mDocIds.remove(shortUrl);
+        if (doc == null) {
+            return false;
+        }
+        delete(doc);
+        compactIfNeeded();
+        return true;
+    }
+
+    public synchronized void clear() {
+        mStories.clear();
+        mDeleted.clear();
+        mDeletedCount = 0;
+        mDocIds.clear();
+        mWords.clear();
+    }
+
+    /**
+     * Return the stories matching every word of the query, best first.
+     *
+     * @param query words, each one matching the words it is the start of
+     * @param limit most stories returned
+     */
+    public synchronized List<Story> search(String query, int limit) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(tokenize(query, 1)));
+        if (terms.isEmpty() || limit <= 0 || mStories.isEmpty()) {
+            return new ArrayList<>();
+        }
+        int docCount = mStories.size();
+        int liveCount = docCount - mDeletedCount;
+        float[] scores = new float[docCount];
+        // Number of query words matched so far, a story that missed one is left behind
+        int[] matched = new int[docCount];
+        float[] termScores = new float[docCount];
+
+        for (int t = 0; t < terms.size(); t++) {
+            String term = terms.get(t);
+            for (Map.Entry<String, Postings> entry : prefixRange(term).entrySet()) {
+                Postings postings = entry.getValue();
+                // Rarer words count more
+                float idf = (float) Math.log(1 + (double) liveCount / postings.mSize);
+                if (entry.getKey().length() == term.length()) {
+                    idf *= EXACT_MATCH_BOOST;
+                }
+                for (int i = 0; i < postings.mSize; i++) {
+                    int doc = postings.mDocs[i];
+                    float score = postings.mWeights[i] * idf;
+                    if (matched[doc] == t) {
+                        // First match of this query word in the story
+                        matched[doc] = t + 1;
+                        termScores[doc] = score;
+                        scores[doc] += score;
+                    } else if (matched[doc] == t + 1 && score > termScores[doc]) {
+                        // A better word for the same query word, only the best one counts
+                        scores[doc] += score - termScores[doc];
+                        termScores[doc] = score;
+                    }
+                }
+            }
+        }
+
+        return top(scores, matched, terms.size(), limit);
+    }
+
+    /**
+     * Return the number of stories in the index, without the deleted ones.
+     */
+    public synchronized int size() {
+        return mStories.size() - mDeletedCount;
+    }
+
+    /**
+     * Return the number of different words.
+     */
+    public synchronized int getWordCount() {
+        return mWords.size();
+    }
+
+    /**
+     * Return a rough size in bytes of the index itself on a 64-bit VM, without the stories: the
+     * word tree, the posting arrays and the table of short URLs.
+     */
+    public synchronized long estimateBytes() {
+        long bytes = 0;
+        for (Map.Entry<String, Postings> entry : mWords.entrySet()) {
+            // Tree entry, String and its char array, Postings and its two arrays
+            bytes += 40 + 24 + 16 + 2 * entry.getKey().length() + 24 + 2 * (16 + 4 * entry.getValue().mDocs.length);
+        }
+        // Hash map entries and table, the Integer ids, and the list of stories
+        bytes += mDocIds.size() * (32 + 16 + 8) + mStories.size() * 8;
+        return bytes;
+    }
+
+    /**
+     * Split the text into lower case words without accents.
+     *
+     * @param minLength shorter words are left out
+     */
+    static List<String> tokenize(String text, int minLength) {
+        List<String> words = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return words;
+        }
+        // Split the accented letters into a letter and its accent, the accent is then dropped.
+        // Most of the text is plain ASCII, which has nothing to split.
+        String normalized = isAscii(text) ? text : Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= normalized.length(); i++) {
+            char c = i < normalized.length() ? normalized.charAt(i) : ' ';
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+            } else if (word.length() > 0) {
+                if (word.length() >= minLength) {
+                    words.add(word.toString());
+                }
+                word.setLength(0);
+            }
+        }
+        return words;
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 0x7F) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void addWords(int doc, String text, int weight) {
+        for (String word : tokenize(text, MIN_WORD_LENGTH)) {
+            Postings postings = mWords.get(word);
+            if (postings == null) {
+                postings = new Postings();
+                mWords.put(word, postings);
+            }
+            postings.add(doc, weight);
+        }
+    }
+
+    /**
+     * Return the words that start with the prefix.
+     */
+    private SortedMap<String, Postings> prefixRange(String prefix) {
+        return mWords.subMap(prefix, prefix + Character.MAX_VALUE);
+    }
+
+    private void delete(int doc) {
+        if (!mDeleted.get(doc)) {
+            mDeleted.set(doc);
+            mDeletedCount++;
+        }
+    }
+
+    /**
+     * Build the index again without the deleted stories once they are half of it.
+     */
+    private void compactIfNeeded() {
+        if (mDeletedCount < MIN_DELETED_TO_COMPACT || mDeletedCount * 2 < mStories.size()) {
+            return;
+        }
+        List<Story> live = new ArrayList<>(mStories.size() - mDeletedCount);
+        for (int doc = 0; doc < mStories.size(); doc++) {
+            if (!mDeleted.get(doc)) {
+                live.add(mStories.get(doc));
+            }
+        }
+        clear();
+        for (Story story : live) {
+            add(story);
+        }
+    }
+
+    /**
+     * Return the best stories that matched every query word, best first and then newest first.
+     */
+    private List<Story> top(final float[] scores, int[] matched, int termCount, int limit) {
+        // The worst of the best ones found so far on top
+        Comparator<Integer> ranking = new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                if (scores[a] != scores[b]) {
+                    return scores[a] < scores[b] ? -1 : 1;
+                }
+                long publishedA = mStories.get(a).getPublishedMillis();
+                long publishedB = mStories.get(b).getPublishedMillis();
+                return publishedA < publishedB ? -1 : (publishedA == publishedB ? 0 : 1);
+            }
+        };
+        PriorityQueue<Integer> best = new PriorityQueue<>(limit + 1, ranking);
+        for (int doc = 0; doc < matched.length; doc++) {
+            if (matched[doc] != termCount || mDeleted.get(doc)) {
+                continue;
+            }
+            best.add(doc);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        List<Integer> docs = new ArrayList<>(best);
+        Collections.sort(docs, Collections.reverseOrder(ranking));
+        List<Story> stories = new ArrayList<>(docs.size());
+        for (int doc : docs) {
+            stories.add(mStories.get(doc));
+        }
+        return stories;
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.android.yournews;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming parser for the Guardian "search" endpoint response.
+ * It reads the JSON tokens straight from the HTTP {@link InputStream}, keeps only the values a
+ * {@link Story} needs (sectionName, webPublicationDate, fields.* and tags[0].webTitle) and skips
+ * everything else, so the response is never held in memory as a String or a JSONObject tree.
+ */
+public final class StoryJsonParser {
+
+    // Author value used when the story has no contributor tag
+    static final String AUTHOR_NOT_FOUND = "Author name not found";
+    // Prefix added before the contributor name
+    static final String AUTHOR_PREFIX = "By: ";
+
+    /**
+     * Receives each {@link Story} as soon as its item of the "results" array has been read.
+     */
+    public interface Listener {
+        void onStory(Story story);
+    }
+
+    /**
+     * The response was read but it is not valid JSON or not shaped like a Guardian search
+     * response, sending it again will not help.
+     */
+    public static class MalformedResponseException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        MalformedResponseException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private StoryJsonParser() {
+    }
+
+    /**
+     * Parse the whole response and return the list of {@link Story} objects in it.
+     * The stream is closed when this method returns. A response that is not shaped like a
+     * Guardian search response is reported as a {@link MalformedResponseException}.
+     */
+    public static List<Story> parse(InputStream inputStream) throws IOException {
+        return parse(inputStream, null);
+    }
+
+    /**
+     * Same as {@link #parse(InputStream)}, and also hands every story to the given listener
+     * (which may be null) while the rest of the response is still being read.
+     */
+    public static List<Story> parse(InputStream inputStream, Listener listener) throws IOException {
+        return parse(inputStream, listener, null);
+    }
+
+    /**
+     * Same as {@link #parse(InputStream, Listener)}, and stops with an
+     * {@link InterruptedIOException} as soon as the token (which may be null) is cancelled:
+     * it is checked before every item of the "results" array.
+     */
+    public static List<Story> parse(InputStream inputStream, Listener listener,
+                                    FeedExecutor.CancellationToken token) throws IOException {
+        List<Story> stories = new ArrayList<>();
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("response".equals(reader.nextName())) {
+                    readResponse(reader, stories, listener, token);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            // Read up to the end of the stream, so nothing may follow the response object
+            // and a caching stream sees the whole body
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new MalformedResponseException("Unexpected data after the story JSON results", null);
+            }
+        } catch (IllegalStateException e) {
+            // JsonReader throws this when a token is not the type we asked for
+            throw new MalformedResponseException("Problem parsing the story JSON results", e);
+        } catch (MalformedJsonException e) {
+            throw new MalformedResponseException("The story JSON results are not valid JSON", e);
+        } finally {
+            reader.close();
+        }
+        return stories;
+    }
+
+    /**
+     * Read the "response" object, only the "results" array is used.
+     */
+    private static void readResponse(JsonReader reader, List<Story> stories, Listener listener,
+                                     FeedExecutor.CancellationToken token) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("results".equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    if (token != null && token.isCancelled()) {
+                        throw new InterruptedIOException("Parsing cancelled after " + stories.size() + " stories");
+                    }
+                    Story story = readStory(reader);
+                    stories.add(story);
+                    if (listener != null) {
+                        listener.onStory(story);
+                    }
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Read a single item of the "results" array into a {@link Story}.
+     */
+    private static Story readStory(JsonReader reader) throws IOException {
+        String sectionName = null;
+        String date = null;
+        String headline = null;
+        String trailText = null;
+        String shortUrl = null;
+        String thumbnailUrl = null;
+        String author = AUTHOR_NOT_FOUND;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("sectionName".equals(name)) {
+                sectionName = nextStringOrNull(reader);
+            } else if ("webPublicationDate".equals(name)) {
+                date = nextStringOrNull(reader);
+            } else if ("fields".equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String field = reader.nextName();
+                    if ("headline".equals(field)) {
+                        headline = nextStringOrNull(reader);
+                    } else if ("trailText".equals(field)) {
+                        trailText = nextStringOrNull(reader);
+                    } else if ("shortUrl".equals(field)) {
+                        shortUrl = nextStringOrNull(reader);
+                    } else if ("thumbnail".equals(field)) {
+                        thumbnailUrl = nextStringOrNull(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else if ("tags".equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                String contributor = readFirstTagTitle(reader);
+                if (contributor != null) {
+                    author = AUTHOR_PREFIX + contributor;
+                }
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new Story(sectionName, date, author, headline, trailText, shortUrl, thumbnailUrl);
+    }
+
+    /**
+     * Return the "webTitle" of the first tag and skip the rest of the array.
+     */
+    private static String readFirstTagTitle(JsonReader reader) throws IOException {
+        String title = null;
+        reader.beginArray();
+        if (reader.hasNext() && reader.peek() == JsonToken.BEGIN_OBJECT) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("webTitle".equals(reader.nextName())) {
+                    title = nextStringOrNull(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        while (reader.hasNext()) {
+            reader.skipValue();
+        }
+        reader.endArray();
+        return title;
+    }
+
+    private static String nextStringOrNull(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+}
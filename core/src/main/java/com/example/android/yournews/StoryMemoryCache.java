@@ -0,0 +1,261 @@
+package com.example.android.yournews;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In memory cache of the {@link Story}s of a request URL, shared by the whole process. Entries
+ * expire after a time to live, and the least recently used ones are dropped once the estimated
+ * size goes over the memory bound. Requests for a URL that is already being fetched wait for
+ * that fetch instead of sending their own (single flight). When the request that fetches is
+ * cancelled, one of the waiting requests fetches the URL again for the others.
+ */
+public final class StoryMemoryCache {
+
+    /**
+     * Fetches the stories of a URL on a cache miss.
+     */
+    public interface Fetcher {
+        /**
+         * Return the stories of the url, or null when they could not be loaded (not cached).
+         */
+        List<Story> fetch(String url);
+    }
+
+    /**
+     * Source of the current time, replaced in tests.
+     */
+    interface Ticker {
+        long nanoTime();
+    }
+
+    private static final Ticker SYSTEM_TICKER = new Ticker() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    private final long mTtlNanos;
+    private final long mMaxBytes;
+    private final Ticker mTicker;
+    // Access ordered, so the first entry is the least recently used one
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Flight> mInFlight = new HashMap<>();
+    private long mSize;
+    private long mHitCount;
+    private long mMissCount;
+    private long mCoalescedCount;
+    private long mEvictionCount;
+
+    /**
+     * @param ttlMillis time an entry is used after it was fetched
+     * @param maxBytes  estimated memory the entries may use
+     */
+    public StoryMemoryCache(long ttlMillis, long maxBytes) {
+        this(ttlMillis, maxBytes, SYSTEM_TICKER);
+    }
+
+    StoryMemoryCache(long ttlMillis, long maxBytes, Ticker ticker) {
+        mTtlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        mMaxBytes = maxBytes;
+        mTicker = ticker;
+    }
+
+    /**
+     * Return the cached stories of the url. On a miss they are fetched on this thread, or, when
+     * another thread is already fetching the url, this thread waits for its result.
+     *
+     * @return an unmodifiable list of the stories, or null when the fetch failed
+     */
+    public List<Story> get(String url, Fetcher fetcher) {
+        return get(url, fetcher, null);
+    }
+
+    /**
+     * Same as {@link #get(String, Fetcher)} for a request that can be cancelled. When it fetches
+     * and is cancelled, the requests waiting for it do not take its null for a failure, one of
+     * them fetches the url again.
+     *
+     * @param token the token of the request, its fetcher gives up when it is cancelled, may be null
+     */
+    public List<Story> get(String url, Fetcher fetcher, FeedExecutor.CancellationToken token) {
+        while (true) {
+            Flight flight;
+            synchronized (this) {
+                Entry entry = mEntries.get(url);
+                if (entry != null) {
+                    if (mTicker.nanoTime() - entry.mFetchedAt < mTtlNanos) {
+                        mHitCount++;
+                        return entry.mStories;
+                    }
+                    remove(url);
+                }
+                flight = mInFlight.get(url);
+                if (flight != null) {
+                    mCoalescedCount++;
+                } else {
+                    mMissCount++;
+                    mInFlight.put(url, new Flight());
+                }
+            }
+            if (flight == null) {
+                return fetch(url, fetcher, token);
+            }
+            List<Story> stories = flight.await();
+            if (!flight.mCancelled || Thread.currentThread().isInterrupted()
+                    || (token != null && token.isCancelled())) {
+                return stories;
+            }
+            // The request that fetched was cancelled, not this one
+        }
+    }
+
+    /**
+     * Fetch the stories of the url for this request and the ones waiting for it.
+     */
+    private List<Story> fetch(String url, Fetcher fetcher, FeedExecutor.CancellationToken token) {
+        List<Story> stories = null;
+        try {
+            stories = fetcher.fetch(url);
+            if (stories != null) {
+                stories = Collections.unmodifiableList(new ArrayList<>(stories));
+            }
+        } finally {
+            Flight flight;
+            synchronized (this) {
+                flight = mInFlight.remove(url);
+                if (stories != null) {
+                    put(url, stories);
+                }
+            }
+            flight.complete(stories, stories == null && token != null && token.isCancelled());
+        }
+        return stories;
+    }
+
+    /**
+     * Drop every entry, the next requests go to the network.
+     */
+    public synchronized void clear() {
+        mEntries.clear();
+        mSize = 0;
+    }
+
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * Number of requests that waited for the fetch of another thread instead of their own.
+     */
+    public synchronized long getCoalescedCount() {
+        return mCoalescedCount;
+    }
+
+    /**
+     * Number of entries dropped to stay under the memory bound.
+     */
+    public synchronized long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    /**
+     * Estimated memory used by the entries, in bytes.
+     */
+    public synchronized long size() {
+        return mSize;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "StoryMemoryCache[entries=" + mEntries.size() + ", bytes=" + mSize
+                + ", hits=" + mHitCount + ", misses=" + mMissCount
+                + ", coalesced=" + mCoalescedCount + ", evictions=" + mEvictionCount + "]";
+    }
+
+    private void put(String url, List<Story> stories) {
+        remove(url);
+        long weight = weigh(stories);
+        if (weight > mMaxBytes) {
+            // Bigger than the whole cache, keeping it would drop everything else
+            return;
+        }
+        mEntries.put(url, new Entry(stories, mTicker.nanoTime(), weight));
+        mSize += weight;
+        Iterator<Entry> iterator = mEntries.values().iterator();
+        while (mSize > mMaxBytes && iterator.hasNext()) {
+            mSize -= iterator.next().mWeight;
+            iterator.remove();
+            mEvictionCount++;
+        }
+    }
+
+    private void remove(String url) {
+        Entry entry = mEntries.remove(url);
+        if (entry != null) {
+            mSize -= entry.mWeight;
+        }
+    }
+
+    /**
+     * Estimate the memory used by the stories, see {@link Story#estimateBytes()}.
+     */
+    static long weigh(List<Story> stories) {
+        long weight = 0;
+        for (Story story : stories) {
+            weight += story.estimateBytes();
+        }
+        return weight;
+    }
+
+    private static final class Entry {
+        final List<Story> mStories;
+        final long mFetchedAt;
+        final long mWeight;
+
+        Entry(List<Story> stories, long fetchedAt, long weight) {
+            mStories = stories;
+            mFetchedAt = fetchedAt;
+            mWeight = weight;
+        }
+    }
+
+    /**
+     * A fetch in progress, the other requests for the same url wait for its result.
+     */
+    private static final class Flight {
+        private final CountDownLatch mDone = new CountDownLatch(1);
+        private volatile List<Story> mStories;
+        // True when the fetch gave up because its request was cancelled
+        private volatile boolean mCancelled;
+
+        void complete(List<Story> stories, boolean cancelled) {
+            mStories = stories;
+            mCancelled = cancelled;
+            mDone.countDown();
+        }
+
+        List<Story> await() {
+            try {
+                mDone.await();
+                return mStories;
+            } catch (InterruptedException e) {
+                // The waiting load was cancelled, keep the interrupt for the caller
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+}
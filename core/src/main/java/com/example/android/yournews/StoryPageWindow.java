@@ -0,0 +1,170 @@
+package com.example.android.yournews;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The pages of the feed that are kept in memory: a window of at most {@code maxPages} consecutive
+ * pages. Adding a page at one end drops the page at the other end once the window is full, so a
+ * long scroll never holds more than {@code maxPages * pageSize} stories. A dropped page is simply
+ * loaded again when the list scrolls back to it.
+ */
+public final class StoryPageWindow {
+
+    private final int mMaxPages;
+    private final LinkedList<List<Story>> mPages = new LinkedList<>();
+    // Page number (starting at 1) of the first page in the window, 0 when the window is empty
+    private int mFirstPage;
+    private boolean mLastPageReached;
+
+    /**
+     * @param maxPages maximum number of pages kept, at least 2
+     */
+    public StoryPageWindow(int maxPages) {
+        mMaxPages = Math.max(2, maxPages);
+    }
+
+    /**
+     * Start again from the first page.
+     *
+     * @param stories  the stories of page 1
+     * @param pageSize the requested page size, a shorter page is the last one
+     */
+    public void reset(List<Story> stories, int pageSize) {
+        mPages.clear();
+        mPages.add(new ArrayList<>(stories));
+        mFirstPage = 1;
+        mLastPageReached = stories.size() < pageSize;
+    }
+
+    /**
+     * Add the page that follows the last page of the window. Stories that are already in the
+     * window (the feed moved while paging) are left out.
+     *
+     * @return the number of stories dropped from the front of the window
+     */
+    public int appendPage(int page, List<Story> stories, int pageSize) {
+        if (mPages.isEmpty() || page != getLastPage() + 1) {
+            return 0;
+        }
+        mLastPageReached = stories.size() < pageSize;
+        mPages.addLast(withoutDuplicates(stories));
+        int dropped = 0;
+        if (mPages.size() > mMaxPages) {
+            dropped = mPages.removeFirst().size();
+            mFirstPage++;
+        }
+        return dropped;
+    }
+
+    /**
+     * Add the page that comes before the first page of the window, after it was dropped.
+     *
+     * @return the number of stories added at the front of the window
+     */
+    public int prependPage(int page, List<Story> stories) {
+        if (mPages.isEmpty() || page != mFirstPage - 1) {
+            return 0;
+        }
+        List<Story> kept = withoutDuplicates(stories);
+        mPages.addFirst(kept);
+        mFirstPage--;
+        if (mPages.size() > mMaxPages) {
+            mPages.removeLast();
+            // The dropped last page has to be loaded again
+            mLastPageReached = false;
+        }
+        return kept.size();
+    }
+
+    /**
+     * Add the stories published since the window was loaded at the top of the first page,
+     * newest first. A story that is already in the window is replaced by its new version.
+     *
+     * @param stories the newer stories, newest first
+     * @return the number of stories added
+     */
+    public int addNewest(List<Story> stories) {
+        if (mPages.isEmpty()) {
+            return 0;
+        }
+        Map<String, Story> updated = new HashMap<>();
+        List<Story> added = new ArrayList<>(stories.size());
+        Set<String> shown = shortUrls();
+        for (Story story : stories) {
+            if (story.getShortUrl() != null && shown.contains(story.getShortUrl())) {
+                updated.put(story.getShortUrl(), story);
+            } else if (story.getShortUrl() == null || shown.add(story.getShortUrl())) {
+                added.add(story);
+            }
+        }
+        for (List<Story> page : mPages) {
+            for (int i = 0; i < page.size(); i++) {
+                Story story = updated.get(page.get(i).getShortUrl());
+                if (story != null) {
+                    page.set(i, story);
+                }
+            }
+        }
+        mPages.getFirst().addAll(0, added);
+        return added.size();
+    }
+
+    /**
+     * Page number of the first page in the window, 0 when it is empty.
+     */
+    public int getFirstPage() {
+        return mFirstPage;
+    }
+
+    /**
+     * Page number of the last page in the window, 0 when it is empty.
+     */
+    public int getLastPage() {
+        return mPages.isEmpty() ? 0 : mFirstPage + mPages.size() - 1;
+    }
+
+    /**
+     * True when the last page of the window is the last page of the feed.
+     */
+    public boolean isLastPageReached() {
+        return mLastPageReached;
+    }
+
+    /**
+     * Return the stories of all the pages in the window, in order.
+     */
+    public List<Story> getStories() {
+        List<Story> stories = new ArrayList<>();
+        for (List<Story> page : mPages) {
+            stories.addAll(page);
+        }
+        return stories;
+    }
+
+    private Set<String> shortUrls() {
+        Set<String> shown = new HashSet<>();
+        for (List<Story> page : mPages) {
+            for (Story story : page) {
+                shown.add(story.getShortUrl());
+            }
+        }
+        return shown;
+    }
+
+    private List<Story> withoutDuplicates(List<Story> stories) {
+        Set<String> shown = shortUrls();
+        List<Story> kept = new ArrayList<>(stories.size());
+        for (Story story : stories) {
+            if (story.getShortUrl() == null || shown.add(story.getShortUrl())) {
+                kept.add(story);
+            }
+        }
+        return kept;
+    }
+}
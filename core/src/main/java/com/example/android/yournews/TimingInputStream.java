@@ -0,0 +1,54 @@
+package com.example.android.yournews;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Adds up the time spent waiting for the wrapped stream. The parser reads the response while it
+ * is downloaded, so this is how the download time is told apart from the parse time.
+ */
+final class TimingInputStream extends FilterInputStream {
+    private long mReadNanos;
+
+    TimingInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        long start = System.nanoTime();
+        try {
+            return in.read();
+        } finally {
+            mReadNanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int count) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return in.read(buffer, offset, count);
+        } finally {
+            mReadNanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public long skip(long count) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return in.skip(count);
+        } finally {
+            mReadNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Return the time spent in read and skip so far, in nanoseconds.
+     */
+    long getReadNanos() {
+        return mReadNanos;
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.android.yournews;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link HttpTransport} on top of {@link HttpURLConnection}. It asks for gzip content and never
+ * calls {@link HttpURLConnection#disconnect()}: once a body is read to the end and closed the
+ * platform keeps the socket in its keep-alive pool for the next request to the same host.
+ */
+public final class UrlConnectionTransport implements HttpTransport {
+
+    @Override
+    public HttpResponse execute(HttpRequest request) throws IOException {
+        final HttpURLConnection urlConnection = (HttpURLConnection) new URL(request.getUrl()).openConnection();
+        urlConnection.setConnectTimeout(request.getConnectTimeout() /* milliseconds */);
+        urlConnection.setReadTimeout(request.getReadTimeout() /* milliseconds */);
+        urlConnection.setRequestMethod("GET");
+        // Setting it ourselves turns off the transparent gzip of some platforms, HttpResponse
+        // decompresses the body so the transports behave (and count bytes) the same way
+        urlConnection.setRequestProperty("Accept-Encoding", "gzip");
+        for (String[] header : request.getHeaders()) {
+            urlConnection.setRequestProperty(header[0], header[1]);
+        }
+        // Cancelling closes the socket, which ends a blocked connect or read with an IOException
+        final FeedExecutor.CancellationToken token = request.getCancellationToken();
+        final Runnable abort = new Runnable() {
+            @Override
+            public void run() {
+                urlConnection.disconnect();
+            }
+        };
+        if (token != null) {
+            token.addOnCancelListener(abort);
+            if (token.isCancelled()) {
+                throw new InterruptedIOException("Request cancelled");
+            }
+        }
+        int code;
+        try {
+            code = urlConnection.getResponseCode();
+        } catch (IOException e) {
+            if (token != null) {
+                token.removeOnCancelListener(abort);
+            }
+            throw e;
+        }
+
+        Map<String, String> headers = new HashMap<>();
+        for (Map.Entry<String, List<String>> header : urlConnection.getHeaderFields().entrySet()) {
+            if (header.getValue() != null && !header.getValue().isEmpty()) {
+                headers.put(header.getKey(), header.getValue().get(0));
+            }
+        }
+        // Error bodies are read (and closed) too, otherwise the connection can not be reused
+        InputStream body = code >= HttpURLConnection.HTTP_BAD_REQUEST
+                ? urlConnection.getErrorStream() : urlConnection.getInputStream();
+        Closeable release = null;
+        if (token != null) {
+            // Once the response is closed, a late cancel must not close a reused connection
+            release = new Closeable() {
+                @Override
+                public void close() {
+                    token.removeOnCancelListener(abort);
+                }
+            };
+        }
+        return new HttpResponse(code, headers, body, release);
+    }
+}
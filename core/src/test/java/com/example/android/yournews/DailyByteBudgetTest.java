@@ -0,0 +1,50 @@
+package com.example.android.yournews;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class DailyByteBudgetTest {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final long MORNING = 17683 * DAY + TimeUnit.HOURS.toMillis(8);
+
+    @Test
+    public void spend_countsAgainstTheDay() {
+        DailyByteBudget budget = new DailyByteBudget(1000, 0, 0);
+
+        budget.spend(300, MORNING);
+        budget.spend(500, MORNING + TimeUnit.HOURS.toMillis(3));
+
+        assertEquals(200, budget.getRemaining(MORNING + TimeUnit.HOURS.toMillis(4)));
+        assertEquals(17683, budget.getDay());
+        assertEquals(800, budget.getUsedBytes());
+    }
+
+    @Test
+    public void getRemaining_neverBelowZero() {
+        DailyByteBudget budget = new DailyByteBudget(1000, 0, 0);
+
+        budget.spend(1500, MORNING);
+
+        assertEquals(0, budget.getRemaining(MORNING));
+    }
+
+    @Test
+    public void nextDay_startsAgain() {
+        // The count stored by the last run of the day before
+        DailyByteBudget budget = new DailyByteBudget(1000, 17682, 1000);
+
+        assertEquals(1000, budget.getRemaining(MORNING));
+        assertEquals(0, budget.getUsedBytes());
+    }
+
+    @Test
+    public void storedCount_ofTheSameDay_isKept() {
+        DailyByteBudget budget = new DailyByteBudget(1000, 17683, 900);
+
+        assertEquals(100, budget.getRemaining(MORNING));
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.android.yournews;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FeedExecutorTest {
+
+    private FeedExecutor executor;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Before
+    public void setUp() {
+        executor = new FeedExecutor(1);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void waitingTasks_startByPriorityThenInOrder() throws Exception {
+        blockTheThread();
+        final List<String> started = Collections.synchronizedList(new ArrayList<String>());
+        List<FeedExecutor.FeedFuture<Void>> futures = new ArrayList<>();
+        futures.add(executor.submit(FeedExecutor.Priority.PREFETCH, record(started, "prefetch")));
+        futures.add(executor.submit(FeedExecutor.Priority.REFRESH, record(started, "refresh")));
+        futures.add(executor.submit(FeedExecutor.Priority.VISIBLE, record(started, "visible 1")));
+        futures.add(executor.submit(FeedExecutor.Priority.VISIBLE, record(started, "visible 2")));
+
+        assertEquals(2, executor.getQueueDepth(FeedExecutor.Priority.VISIBLE));
+        assertEquals(1, executor.getQueueDepth(FeedExecutor.Priority.PREFETCH));
+
+        release.countDown();
+        for (FeedExecutor.FeedFuture<Void> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(Arrays.asList("visible 1", "visible 2", "refresh", "prefetch"), started);
+        assertEquals(0, executor.getQueueDepth(FeedExecutor.Priority.VISIBLE));
+        // The task that blocked the thread was a visible one too
+        assertEquals(3, executor.getStartedCount(FeedExecutor.Priority.VISIBLE));
+    }
+
+    @Test
+    public void cancel_stopsARunningTaskThroughItsToken() throws Exception {
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch stopped = new CountDownLatch(1);
+        FeedExecutor.FeedFuture<Void> future = executor.submit(FeedExecutor.Priority.VISIBLE,
+                new FeedExecutor.Task<Void>() {
+                    @Override
+                    public Void run(FeedExecutor.CancellationToken token) {
+                        running.countDown();
+                        // Busy work that never blocks, so only the token can stop it
+                        while (!token.isCancelled()) {
+                            Thread.yield();
+                        }
+                        stopped.countDown();
+                        return null;
+                    }
+                });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+
+        future.cancel(false);
+
+        assertTrue(stopped.await(5, TimeUnit.SECONDS));
+        try {
+            future.get();
+            fail();
+        } catch (CancellationException expected) {
+            // The result of a cancelled task is never used
+        }
+    }
+
+    @Test
+    public void cancel_removesAWaitingTaskFromTheQueue() {
+        blockTheThread();
+        FeedExecutor.FeedFuture<Void> future = executor.submit(FeedExecutor.Priority.PREFETCH,
+                record(new ArrayList<String>(), "prefetch"));
+        assertEquals(1, executor.getQueueDepth(FeedExecutor.Priority.PREFETCH));
+
+        assertTrue(future.cancel(true));
+
+        assertEquals(0, executor.getQueueDepth(FeedExecutor.Priority.PREFETCH));
+    }
+
+    @Test
+    public void scheduledTask_isQueuedAfterItsDelay() throws Exception {
+        final List<String> started = Collections.synchronizedList(new ArrayList<String>());
+        FeedExecutor.FeedFuture<Void> later = executor.schedule(FeedExecutor.Priority.PREFETCH,
+                record(started, "later"), 200);
+        FeedExecutor.FeedFuture<Void> cancelled = executor.schedule(FeedExecutor.Priority.PREFETCH,
+                record(started, "cancelled"), 100);
+        // The thread is free for other work meanwhile
+        executor.submit(FeedExecutor.Priority.VISIBLE, record(started, "now")).get(5, TimeUnit.SECONDS);
+        assertEquals(0, executor.getQueueDepth(FeedExecutor.Priority.PREFETCH));
+
+        cancelled.cancel(true);
+        later.get(5, TimeUnit.SECONDS);
+
+        assertEquals(Arrays.asList("now", "later"), started);
+    }
+
+    @Test
+    public void waitTime_isMeasuredPerPriority() throws Exception {
+        blockTheThread();
+        FeedExecutor.FeedFuture<Void> future = executor.submit(FeedExecutor.Priority.REFRESH,
+                record(new ArrayList<String>(), "refresh"));
+        Thread.sleep(100);
+        release.countDown();
+        future.get(5, TimeUnit.SECONDS);
+
+        assertTrue(executor.getMaxWaitMillis(FeedExecutor.Priority.REFRESH) >= 90);
+        assertTrue(executor.getAverageWaitMillis(FeedExecutor.Priority.REFRESH) >= 90);
+    }
+
+    /**
+     * Keep the only thread busy until {@link #release} is counted down.
+     */
+    private void blockTheThread() {
+        final CountDownLatch running = new CountDownLatch(1);
+        executor.submit(FeedExecutor.Priority.VISIBLE, new FeedExecutor.Task<Void>() {
+            @Override
+            public Void run(FeedExecutor.CancellationToken token) throws InterruptedException {
+                running.countDown();
+                release.await();
+                return null;
+            }
+        });
+        try {
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static FeedExecutor.Task<Void> record(final List<String> started, final String name) {
+        return new FeedExecutor.Task<Void>() {
+            @Override
+            public Void run(FeedExecutor.CancellationToken token) {
+                started.add(name);
+                return null;
+            }
+        };
+    }
+}
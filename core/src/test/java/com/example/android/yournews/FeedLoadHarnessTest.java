@@ -0,0 +1,155 @@
+package com.example.android.yournews;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the fetch path of the app (OkHttp transport, disk cache and retries) against
+ * {@link MockGuardianServer}: first the behaviour of the stand-in itself, then many load and
+ * refresh cycles with injected faults. FeedLoadBenchmark in the :benchmark module measures the
+ * same kinds of load. StoryLoaderLoadTest in androidTest drives the {@link StoryLoader} itself
+ * the same way.
+ */
+public class FeedLoadHarnessTest {
+
+    private static final String TAG = "politics/politics";
+    private static final int PAGE_SIZE = 10;
+    private static final int CYCLES = 40;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockGuardianServer server;
+    private HttpTransport previousTransport;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockGuardianServer(42);
+        server.addStories(TAG, MockGuardianServer.fixtureStories("fixtures/search_politics_100.json"));
+        previousTransport = QueryUtils.getTransport();
+        QueryUtils.setTransport(new OkHttpTransport());
+        QueryUtils.setResponseCache(new HttpResponseDiskCache(folder.newFolder("responses"), 4 * 1024 * 1024));
+        QueryUtils.setRetryPolicy(new ExponentialBackoffRetryPolicy(4, 10, 100, new Random(1)));
+        QueryUtils.setRequestBudget(new RequestBudget(1000, 1000, 2000, 5000));
+        FeedMetrics.get().reset();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+        QueryUtils.setTransport(previousTransport);
+        QueryUtils.setResponseCache(null);
+    }
+
+    @Test
+    public void pages_areNewestFirstAndFollowEachOther() {
+        List<Story> first = QueryUtils.fetchStoryData(server.url(TAG, 1, PAGE_SIZE, null));
+        List<Story> second = QueryUtils.fetchStoryData(server.url(TAG, 2, PAGE_SIZE, null));
+
+        assertEquals(PAGE_SIZE, first.size());
+        assertEquals(PAGE_SIZE, second.size());
+        String previous = null;
+        for (List<Story> page : java.util.Arrays.asList(first, second)) {
+            for (Story story : page) {
+                assertTrue(previous == null || story.getDate().compareTo(previous) <= 0);
+                previous = story.getDate();
+            }
+        }
+    }
+
+    @Test
+    public void pageBeyondTheLast_isAnError() {
+        assertNull(QueryUtils.fetchStoryData(server.url(TAG, 11, PAGE_SIZE, null)));
+        // A 400 is not retried
+        assertEquals(1, server.requestCount());
+    }
+
+    @Test
+    public void fromDate_onlyReturnsTheNewerStories() {
+        List<Story> first = QueryUtils.fetchStoryData(server.url(TAG, 1, PAGE_SIZE, null));
+        List<JSONObject> published = server.publish(TAG, 3);
+
+        List<Story> newer = QueryUtils.fetchStoryData(server.url(TAG, 1, PAGE_SIZE, first.get(0).getDate()));
+
+        // from-date includes the newest shown story itself
+        assertEquals(published.size() + 1, newer.size());
+        assertEquals(published.get(0).optJSONObject("fields").optString("shortUrl"), newer.get(0).getShortUrl());
+    }
+
+    @Test
+    public void unchangedPage_isNotModified() {
+        String url = server.url(TAG, 1, PAGE_SIZE, null);
+        List<Story> first = QueryUtils.fetchStoryData(url);
+        List<Story> again = QueryUtils.fetchStoryData(url);
+        server.publish(TAG, 1);
+        List<Story> changed = QueryUtils.fetchStoryData(url);
+
+        assertEquals(1, server.notModifiedCount());
+        assertEquals(first.size(), again.size());
+        assertEquals(first.get(0).getShortUrl(), again.get(0).getShortUrl());
+        assertTrue(changed.get(0).getHeadline().startsWith("Breaking"));
+    }
+
+    @Test
+    public void tooManyRequests_isRetriedAfterTheDelay() {
+        server.tooManyRequests(1, 0);
+        assertNull(QueryUtils.fetchStoryData(server.url(TAG, 1, PAGE_SIZE, null)));
+        assertEquals(4, server.tooManyRequestsCount());
+
+        server.tooManyRequests(0, 0);
+        assertNotNull(QueryUtils.fetchStoryData(server.url(TAG, 1, PAGE_SIZE, null)));
+    }
+
+    @Test
+    public void truncatedBody_isRetried() {
+        server.truncate(1);
+        assertNull(QueryUtils.fetchStoryData(server.url(TAG, 1, PAGE_SIZE, null)));
+        assertEquals(4, server.truncatedCount());
+    }
+
+    /**
+     * The first page, the next page and a refresh, over and over, while stories are published
+     * and some responses are slow, throttled or cut off. Every refresh must end with the
+     * published stories.
+     */
+    @Test
+    public void loadAndRefreshCycles_withFaults() {
+        server.latency(5).bandwidth(512 * 1024).tooManyRequests(0.1, 0).truncate(0.1);
+        Random random = new Random(7);
+
+        for (int cycle = 0; cycle < CYCLES; cycle++) {
+            List<Story> shown = QueryUtils.fetchStoryData(server.url(TAG, 1, PAGE_SIZE, null));
+            assertNotNull("cycle " + cycle, shown);
+
+            assertNotNull("cycle " + cycle, QueryUtils.fetchStoryData(server.url(TAG, 2, PAGE_SIZE, null)));
+
+            List<JSONObject> published = server.publish(TAG, random.nextInt(4));
+            List<Story> newer = QueryUtils.fetchStoryData(server.url(TAG, 1, PAGE_SIZE, shown.get(0).getDate()));
+            assertNotNull("cycle " + cycle, newer);
+            Set<String> shortUrls = new HashSet<>();
+            for (Story story : newer) {
+                shortUrls.add(story.getShortUrl());
+            }
+            for (JSONObject story : published) {
+                assertTrue(shortUrls.contains(story.optJSONObject("fields").optString("shortUrl")));
+            }
+        }
+
+        assertTrue(server.notModifiedCount() > 0);
+    }
+}
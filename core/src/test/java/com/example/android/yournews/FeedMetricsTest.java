@@ -0,0 +1,144 @@
+package com.example.android.yournews;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the {@link Histogram} percentiles and what the fetch path records in {@link FeedMetrics}.
+ */
+public class FeedMetricsTest {
+
+    private MockGuardianServer server;
+    private final FeedMetrics metrics = FeedMetrics.get();
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockGuardianServer();
+        QueryUtils.setResponseCache(null);
+        QueryUtils.setRetryPolicy(new ExponentialBackoffRetryPolicy(3, 20, 200, new Random(1)));
+        QueryUtils.setRequestBudget(new RequestBudget(1000, 300, 2000, 3000));
+        metrics.reset();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+        metrics.setAllocationCounter(null);
+    }
+
+    @Test
+    public void histogram_percentilesUseNearestRank() {
+        Histogram histogram = new Histogram();
+        for (int value = 100; value >= 1; value--) {
+            histogram.record(value);
+        }
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100, snapshot.getCount());
+        assertEquals(50, snapshot.getPercentile(50));
+        assertEquals(95, snapshot.getPercentile(95));
+        assertEquals(99, snapshot.getPercentile(99));
+        assertEquals(100, snapshot.getMax());
+        assertEquals(50, snapshot.getMean());
+    }
+
+    @Test
+    public void histogram_percentilesOnlyUseTheRecentValues() {
+        Histogram histogram = new Histogram(10);
+        for (int i = 0; i < 10; i++) {
+            histogram.record(1000);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(i);
+        }
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(20, snapshot.getCount());
+        assertEquals(9, snapshot.getPercentile(99));
+        // The maximum is kept for all the values
+        assertEquals(1000, snapshot.getMax());
+    }
+
+    @Test
+    public void fetch_recordsEveryNetworkStage() throws IOException {
+        byte[] page = StoryJsonParserTest.readFixture("fixtures/search_politics_100.json");
+        server.addStories("politics/politics", MockGuardianServer.fixtureStories("fixtures/search_politics_100.json"));
+        metrics.setAllocationCounter(new FeedMetrics.AllocationCounter() {
+            @Override
+            public long getThreadAllocatedBytes() {
+                return ((com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory
+                        .getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        });
+
+        List<Story> stories = QueryUtils.fetchStoryData(server.url("politics/politics", 1, 100, null));
+
+        assertNotNull(stories);
+        assertEquals(1, metrics.getCount(FeedMetrics.Counter.REQUESTS));
+        assertEquals(1, metrics.snapshot(FeedMetrics.Stage.TIME_TO_FIRST_BYTE).getCount());
+        assertEquals(1, metrics.snapshot(FeedMetrics.Stage.DOWNLOAD).getCount());
+        assertEquals(1, metrics.snapshot(FeedMetrics.Stage.PARSE).getCount());
+        assertEquals(1, metrics.snapshot(FeedMetrics.Stage.FETCH).getCount());
+        assertEquals(100, metrics.snapshot(FeedMetrics.Stage.RESPONSE_STORIES).getMax());
+        // Compressed on the wire
+        long bytes = metrics.snapshot(FeedMetrics.Stage.RESPONSE_BYTES).getMax();
+        assertTrue(bytes > 0 && bytes < page.length);
+        assertTrue(metrics.snapshot(FeedMetrics.Stage.PARSE_ALLOCATED).getMax() > 0);
+    }
+
+    @Test
+    public void malformedResponse_isCountedAsParseFailure() {
+        server.enqueue(MockGuardianServer.ok("{\"response\": [1, 2".getBytes(Charset.forName("UTF-8"))),
+                MockGuardianServer.ok("{\"response\": 3} 4".getBytes(Charset.forName("UTF-8"))));
+
+        assertNull(QueryUtils.fetchStoryData(server.url()));
+        assertNull(QueryUtils.fetchStoryData(server.url()));
+
+        // Not retried, sending it again would not help
+        assertEquals(2, metrics.getCount(FeedMetrics.Counter.REQUESTS));
+        assertEquals(2, metrics.getCount(FeedMetrics.Counter.PARSE_FAILURES));
+        assertEquals(2, metrics.getCount(FeedMetrics.Counter.FAILED_FETCHES));
+    }
+
+    @Test
+    public void retry_isCounted() throws IOException {
+        byte[] page = StoryJsonParserTest.readFixture("fixtures/search_politics_10.json");
+        server.enqueue(MockGuardianServer.status(503), MockGuardianServer.ok(page));
+
+        assertNotNull(QueryUtils.fetchStoryData(server.url()));
+
+        assertEquals(2, metrics.getCount(FeedMetrics.Counter.REQUESTS));
+        assertEquals(1, metrics.getCount(FeedMetrics.Counter.RETRIES));
+        assertEquals(1, metrics.snapshot(FeedMetrics.Stage.FETCH).getCount());
+    }
+
+    @Test
+    public void exportJson_hasEveryStageAndCounter() throws JSONException {
+        metrics.record(FeedMetrics.Stage.PARSE, 1500);
+        metrics.increment(FeedMetrics.Counter.REQUESTS);
+
+        JSONObject export = new JSONObject(metrics.exportJson());
+
+        JSONObject stages = export.getJSONObject("stages");
+        assertEquals(FeedMetrics.Stage.values().length, stages.length());
+        JSONObject parse = stages.getJSONObject("parse");
+        assertEquals("us", parse.getString("unit"));
+        assertEquals(1, parse.getLong("count"));
+        assertEquals(1500, parse.getLong("p99"));
+        assertEquals(1, export.getJSONObject("counters").getLong("requests"));
+        assertTrue(metrics.report().contains("parse"));
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.android.yournews;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class FeedSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void write_thenRead_givesTheSameStories() throws IOException {
+        Story politics = new Story("Politics", "2018-06-01T10:15:00Z", "Caf\u00e9 Writer",
+                "Debate \u2013 live", "<strong>Trail</strong>", "https://gu.com/p/1", "https://img/1.jpg");
+        politics.setSectionColor(0xFFAA0000);
+        Story noExtras = new Story("Business", "2018-06-01T09:00:00Z", null, "Markets", "", "https://gu.com/p/2", null);
+        File file = new File(folder.getRoot(), "snapshots/politics.bin");
+
+        FeedSnapshot.write(file, Arrays.asList(politics, noExtras));
+        List<Story> read = FeedSnapshot.read(file);
+
+        assertEquals(2, read.size());
+        assertSameStory(politics, read.get(0));
+        assertSameStory(noExtras, read.get(1));
+        assertEquals(0xFFAA0000, read.get(0).getSectionColor());
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void write_replacesTheLastSnapshot() throws IOException {
+        File file = folder.newFile("politics.bin");
+
+        FeedSnapshot.write(file, stories(20));
+        FeedSnapshot.write(file, stories(3));
+
+        assertEquals(3, FeedSnapshot.read(file).size());
+    }
+
+    @Test
+    public void read_emptyFeed() throws IOException {
+        File file = folder.newFile("politics.bin");
+
+        FeedSnapshot.write(file, Collections.<Story>emptyList());
+
+        assertEquals(0, FeedSnapshot.read(file).size());
+    }
+
+    @Test
+    public void read_missingOrEmptyFile_isNull() throws IOException {
+        assertNull(FeedSnapshot.read(new File(folder.getRoot(), "missing.bin")));
+        assertNull(FeedSnapshot.read(folder.newFile("empty.bin")));
+    }
+
+    @Test
+    public void read_otherVersion_isNull() throws IOException {
+        byte[] snapshot = FeedSnapshot.encode(stories(2));
+        // The version follows the magic
+        snapshot[7] = (byte) (FeedSnapshot.VERSION + 1);
+        File file = folder.newFile("politics.bin");
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(snapshot);
+        out.close();
+
+        assertNull(FeedSnapshot.read(file));
+    }
+
+    @Test
+    public void read_truncatedOrDamagedFile_isNull() throws IOException {
+        File file = folder.newFile("politics.bin");
+        FeedSnapshot.write(file, stories(5));
+        long length = file.length();
+
+        RandomAccessFile damaged = new RandomAccessFile(file, "rw");
+        damaged.seek(length / 2);
+        damaged.write(damaged.read() ^ 0xFF);
+        damaged.close();
+        assertNull(FeedSnapshot.read(file));
+
+        FeedSnapshot.write(file, stories(5));
+        RandomAccessFile truncated = new RandomAccessFile(file, "rw");
+        truncated.setLength(length - 10);
+        truncated.close();
+        assertNull(FeedSnapshot.read(file));
+    }
+
+    @Test
+    public void decode_badLengthWithValidChecksum_isNull() {
+        // Hand-made bytes whose checksum is right but whose byte count runs past the end
+        byte[] good = FeedSnapshot.encode(stories(1));
+        byte[] bad = Arrays.copyOf(good, good.length);
+        // The section name count follows the header and the section color
+        bad[16] = 0x7F;
+        byte[] body = Arrays.copyOf(bad, bad.length - 4);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        int value = (int) crc.getValue();
+        bad[bad.length - 4] = (byte) (value >>> 24);
+        bad[bad.length - 3] = (byte) (value >>> 16);
+        bad[bad.length - 2] = (byte) (value >>> 8);
+        bad[bad.length - 1] = (byte) value;
+
+        assertNull(FeedSnapshot.decode(bad));
+    }
+
+    private static List<Story> stories(int count) {
+        List<Story> stories = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            stories.add(new Story("Politics", "2018-06-01T10:" + (10 + i) + ":00Z", "Author " + i,
+                    "Headline " + i, "Trail " + i, "https://gu.com/p/" + i, "https://img/" + i + ".jpg"));
+        }
+        return stories;
+    }
+
+    private static void assertSameStory(Story expected, Story actual) {
+        assertEquals(expected.getSectionName(), actual.getSectionName());
+        assertEquals(expected.getDate(), actual.getDate());
+        assertEquals(expected.getAuthor(), actual.getAuthor());
+        assertEquals(expected.getHeadline(), actual.getHeadline());
+        assertEquals(expected.getTrailText(), actual.getTrailText());
+        assertEquals(expected.getShortUrl(), actual.getShortUrl());
+        assertEquals(expected.getThumbnailUrl(), actual.getThumbnailUrl());
+    }
+}
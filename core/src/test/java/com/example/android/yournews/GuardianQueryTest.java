@@ -0,0 +1,42 @@
+package com.example.android.yournews;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class GuardianQueryTest {
+
+    @Test
+    public void build_addsTheParametersInOrder() {
+        String url = new GuardianQuery()
+                .query("debate")
+                .tag("politics/politics")
+                .orderBy("newest")
+                .page(2)
+                .pageSize(20)
+                .showTags("contributor")
+                .showFields("trailText,headline,thumbnail,shortUrl")
+                .apiKey("test")
+                .build();
+
+        // The same URL android.net.Uri.Builder built
+        assertEquals("https://content.guardianapis.com/search?q=debate&tag=politics%2Fpolitics"
+                + "&order-by=newest&page=2&page-size=20&show-tags=contributor"
+                + "&show-fields=trailText%2Cheadline%2Cthumbnail%2CshortUrl&api-key=test", url);
+    }
+
+    @Test
+    public void build_leavesOutANullFromDate() {
+        assertEquals("http://127.0.0.1:8080/search?tag=uk",
+                new GuardianQuery("http://127.0.0.1:8080/search").tag("uk").fromDate(null).build());
+        assertEquals("http://127.0.0.1:8080/search?tag=uk&from-date=2018-05-31T23%3A00%3A00Z",
+                new GuardianQuery("http://127.0.0.1:8080/search").tag("uk").fromDate("2018-05-31T23:00:00Z").build());
+    }
+
+    @Test
+    public void encode_matchesUriEncoding() {
+        assertEquals("debate%20AND%20(economy%20OR%20immigration)", GuardianQuery.encode("debate AND (economy OR immigration)"));
+        assertEquals("a-b_c.d!e~f*g'h", GuardianQuery.encode("a-b_c.d!e~f*g'h"));
+        assertEquals("caf%C3%A9%26%3D%2B", GuardianQuery.encode("caf\u00e9&=+"));
+    }
+}
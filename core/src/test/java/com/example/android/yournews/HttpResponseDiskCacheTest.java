@@ -0,0 +1,121 @@
+package com.example.android.yournews;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HttpResponseDiskCacheTest {
+
+    private static final String URL_POLITICS = "https://content.guardianapis.com/search?tag=politics/politics";
+    private static final String URL_BUSINESS = "https://content.guardianapis.com/search?tag=business/business";
+    private static final String URL_MEDIA = "https://content.guardianapis.com/search?tag=media/media";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpResponseDiskCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new HttpResponseDiskCache(folder.getRoot(), 1024);
+    }
+
+    @Test
+    public void get_returnsStoredBodyAndValidators() throws IOException {
+        store(cache, URL_POLITICS, "\"v1\"", "Thu, 31 May 2018 18:00:11 GMT", "{\"response\":{}}");
+
+        HttpResponseDiskCache.Entry entry = cache.get(URL_POLITICS);
+
+        assertNotNull(entry);
+        assertEquals("\"v1\"", entry.getEtag());
+        assertEquals("Thu, 31 May 2018 18:00:11 GMT", entry.getLastModified());
+        assertEquals("{\"response\":{}}", readBody(entry));
+        assertNull(cache.get(URL_BUSINESS));
+    }
+
+    @Test
+    public void get_survivesNewCacheInstance() throws IOException {
+        store(cache, URL_POLITICS, null, "Thu, 31 May 2018 18:00:11 GMT", "body");
+
+        HttpResponseDiskCache.Entry entry = new HttpResponseDiskCache(folder.getRoot(), 1024).get(URL_POLITICS);
+
+        assertNotNull(entry);
+        assertNull(entry.getEtag());
+        assertEquals("body", readBody(entry));
+    }
+
+    @Test
+    public void abort_keepsPreviousEntry() throws IOException {
+        store(cache, URL_POLITICS, "\"v1\"", null, "old");
+
+        HttpResponseDiskCache.Editor editor = cache.edit(URL_POLITICS, "\"v2\"", null);
+        byte[] body = "new".getBytes("UTF-8");
+        editor.write(body, 0, body.length);
+        editor.abort();
+
+        assertEquals("old", readBody(cache.get(URL_POLITICS)));
+    }
+
+    @Test
+    public void commit_evictsLeastRecentlyUsed() throws IOException {
+        String body = new String(new char[400]).replace('\0', 'x');
+        store(cache, URL_POLITICS, "\"p\"", null, body);
+        store(cache, URL_BUSINESS, "\"b\"", null, body);
+        // Use politics, so business becomes the least recently used entry
+        assertNotNull(cache.get(URL_POLITICS));
+
+        store(cache, URL_MEDIA, "\"m\"", null, body);
+
+        assertNotNull(cache.get(URL_POLITICS));
+        assertNull(cache.get(URL_BUSINESS));
+        assertNotNull(cache.get(URL_MEDIA));
+        assertTrue(cache.size() <= 1024);
+    }
+
+    @Test
+    public void cachingInputStream_commitsOnlyWhenReadToTheEnd() throws IOException {
+        byte[] body = "{\"response\":{\"results\":[]}}".getBytes("UTF-8");
+
+        InputStream partial = new CachingInputStream(new ByteArrayInputStream(body),
+                cache.edit(URL_POLITICS, "\"v1\"", null));
+        partial.read(new byte[4], 0, 4);
+        partial.close();
+        assertNull(cache.get(URL_POLITICS));
+
+        InputStream complete = new CachingInputStream(new ByteArrayInputStream(body),
+                cache.edit(URL_POLITICS, "\"v1\"", null));
+        StoryJsonParser.parse(complete);
+        assertEquals(new String(body, "UTF-8"), readBody(cache.get(URL_POLITICS)));
+    }
+
+    private static void store(HttpResponseDiskCache cache, String url, String etag, String lastModified,
+                              String body) throws IOException {
+        HttpResponseDiskCache.Editor editor = cache.edit(url, etag, lastModified);
+        byte[] bytes = body.getBytes("UTF-8");
+        editor.write(bytes, 0, bytes.length);
+        editor.commit();
+    }
+
+    private static String readBody(HttpResponseDiskCache.Entry entry) throws IOException {
+        InputStream in = entry.openBody();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return out.toString("UTF-8");
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.android.yournews;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that both {@link HttpTransport}s receive the feed gzipped and keep their connection to
+ * {@link MockGuardianServer} between sequential requests. Their latency and bytes on the wire
+ * are measured by TransportBenchmark in the :benchmark module.
+ */
+public class HttpTransportTest {
+
+    private static final int WARM_UP_REQUESTS = 10;
+    private static final int REQUESTS = 50;
+    private static final String TAG = "politics/politics";
+
+    private MockGuardianServer server;
+    private byte[] page;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockGuardianServer();
+        page = StoryJsonParserTest.readFixture("fixtures/search_politics_100.json");
+        server.addStories(TAG, MockGuardianServer.fixtureStories("fixtures/search_politics_100.json"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void urlConnectionTransport_gzipsAndReusesTheConnection() throws IOException {
+        assertGzipAndReuse(new UrlConnectionTransport());
+    }
+
+    @Test
+    public void okHttpTransport_gzipsAndReusesTheConnection() throws IOException {
+        assertGzipAndReuse(new OkHttpTransport());
+    }
+
+    private void assertGzipAndReuse(HttpTransport transport) throws IOException {
+        for (int i = 0; i < WARM_UP_REQUESTS; i++) {
+            fetch(transport);
+        }
+        int connectionsBefore = server.connectionCount();
+        long bytesReceived = 0;
+        for (int i = 0; i < REQUESTS; i++) {
+            bytesReceived += fetch(transport);
+        }
+        int connections = server.connectionCount() - connectionsBefore;
+
+        assertTrue("received " + bytesReceived + " bytes", bytesReceived < (long) page.length * REQUESTS / 2);
+        // The warm-up requests opened the connection, the next ones reuse it
+        assertTrue("opened " + connections + " connections", connections <= 1);
+    }
+
+    /**
+     * Send one request, parse the stories and return the body bytes received.
+     */
+    private long fetch(HttpTransport transport) throws IOException {
+        HttpResponse response = transport.execute(new HttpRequest(server.url(TAG, 1, 100, null), 1000, 1000));
+        try {
+            assertEquals(200, response.getCode());
+            assertEquals(100, StoryJsonParser.parse(response.getBody()).size());
+            return response.getBytesReceived();
+        } finally {
+            response.close();
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.example.android.yournews;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LiveSearchTest {
+
+    private static final long DEBOUNCE_MILLIS = 300;
+    private static final long TTL_MILLIS = 60000;
+
+    private static final Story BREXIT = story("1", "Brexit vote delayed");
+    private static final Story BREXITEERS = story("2", "Brexiteers meet");
+    private static final Story BUDGET = story("3", "Budget day");
+
+    private FeedExecutor executor;
+    private final FakeScheduler scheduler = new FakeScheduler();
+    private final FakeSearcher searcher = new FakeSearcher();
+    private final List<String> shown = new ArrayList<>();
+    private final List<List<Story>> shownStories = new ArrayList<>();
+    private long now;
+    private LiveSearch search;
+
+    @Before
+    public void setUp() {
+        executor = new FeedExecutor(2);
+        search = new LiveSearch(executor, scheduler, searcher, new LiveSearch.Listener() {
+            @Override
+            public void onSearchResults(String query, List<Story> stories, boolean complete) {
+                shown.add(query + (complete ? " complete" : " partial"));
+                shownStories.add(stories);
+            }
+        }, DEBOUNCE_MILLIS, TTL_MILLIS, 20, new StoryMemoryCache.Ticker() {
+            @Override
+            public long nanoTime() {
+                return TimeUnit.MILLISECONDS.toNanos(now);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void typing_onlyTheLastQueryGoesToTheNetwork() throws Exception {
+        searcher.results.put("brexit", Arrays.asList(BREXIT));
+
+        search.setQuery("b");
+        scheduler.advance(100);
+        search.setQuery("bre");
+        scheduler.advance(100);
+        search.setQuery("  Brexit ");
+        scheduler.advance(DEBOUNCE_MILLIS);
+        scheduler.runPosted();
+
+        assertEquals(Arrays.asList("brexit"), searcher.networkQueries);
+        assertEquals(Arrays.asList("brexit complete"), shown);
+        assertEquals(Arrays.asList(BREXIT), shownStories.get(0));
+    }
+
+    @Test
+    public void newQuery_cancelsTheRequestOnItsWay() throws Exception {
+        searcher.gate = new CountDownLatch(1);
+        search.setQuery("brexit");
+        scheduler.advance(DEBOUNCE_MILLIS);
+        FeedExecutor.CancellationToken token = searcher.tokens.poll(5, TimeUnit.SECONDS);
+        assertNotNull(token);
+
+        search.setQuery("budget");
+
+        assertTrue(token.isCancelled());
+        // The cancelled request shows nothing
+        scheduler.advance(0);
+        assertTrue(shown.isEmpty());
+    }
+
+    @Test
+    public void searchedQuery_isAnsweredFromTheCache() throws Exception {
+        searcher.results.put("brexit", Arrays.asList(BREXIT));
+        search.setQuery("brexit");
+        scheduler.advance(DEBOUNCE_MILLIS);
+        scheduler.runPosted();
+        search.setQuery("budget");
+
+        search.setQuery("brexit");
+
+        assertEquals(Arrays.asList("brexit complete", "brexit complete"), shown);
+        assertEquals(1, searcher.networkQueries.size());
+    }
+
+    @Test
+    public void cachedResults_expire() throws Exception {
+        searcher.results.put("brexit", Arrays.asList(BREXIT));
+        search.setQuery("brexit");
+        scheduler.advance(DEBOUNCE_MILLIS);
+        scheduler.runPosted();
+        search.setQuery("");
+
+        now += TTL_MILLIS;
+        search.setQuery("brexit");
+        scheduler.advance(DEBOUNCE_MILLIS);
+        scheduler.runPosted();
+
+        assertEquals(Arrays.asList("brexit", "brexit"), searcher.networkQueries);
+    }
+
+    @Test
+    public void longerQuery_showsTheMatchingResultsOfItsPrefixAtOnce() throws Exception {
+        searcher.results.put("brex", Arrays.asList(BREXIT, BREXITEERS, BUDGET));
+        search.setQuery("brex");
+        scheduler.advance(DEBOUNCE_MILLIS);
+        scheduler.runPosted();
+
+        search.setQuery("brexit v");
+
+        assertEquals("brexit v partial", shown.get(1));
+        assertEquals(Arrays.asList(BREXIT), shownStories.get(1));
+    }
+
+    @Test
+    public void storedStories_areShownBeforeTheNetworkResults() throws Exception {
+        searcher.stored = Arrays.asList(BUDGET);
+        searcher.results.put("budget", Arrays.asList(BUDGET, story("4", "Budget reaction")));
+
+        search.setQuery("budget");
+        scheduler.runPosted();
+        scheduler.advance(DEBOUNCE_MILLIS);
+        scheduler.runPosted();
+
+        assertEquals(Arrays.asList("budget partial", "budget complete"), shown);
+        assertEquals(Arrays.asList(BUDGET), shownStories.get(0));
+        assertEquals(2, shownStories.get(1).size());
+    }
+
+    @Test
+    public void failedRequest_isNotCached() throws Exception {
+        search.setQuery("budget");
+        scheduler.advance(DEBOUNCE_MILLIS);
+        scheduler.runPosted();
+        search.setQuery("");
+
+        search.setQuery("budget");
+        scheduler.advance(DEBOUNCE_MILLIS);
+        scheduler.runPosted();
+
+        // null tells the screen to keep the results it shows
+        assertEquals("budget complete", shown.get(0));
+        assertNull(shownStories.get(0));
+        assertEquals(Arrays.asList("budget", "budget"), searcher.networkQueries);
+    }
+
+    private static Story story(String id, String headline) {
+        return new Story("Politics", "2018-06-01T10:00:00Z", null, headline, "", "https://gu.com/p/" + id, null);
+    }
+
+    /**
+     * The main thread of the test: runs the posted work when the test moves the clock.
+     */
+    private static final class FakeScheduler implements LiveSearch.Scheduler {
+        private long mNow;
+        private long mSequence;
+        // Time it is due, the runnable, and its sequence number
+        private final List<Object[]> mPosted = new ArrayList<>();
+
+        @Override
+        public synchronized void postDelayed(Runnable runnable, long delayMillis) {
+            mPosted.add(new Object[]{mNow + delayMillis, runnable, mSequence++});
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void removeCallbacks(Runnable runnable) {
+            Iterator<Object[]> posted = mPosted.iterator();
+            while (posted.hasNext()) {
+                if (posted.next()[1] == runnable) {
+                    posted.remove();
+                }
+            }
+        }
+
+        /**
+         * Move the clock, running the work that comes due on the way. The work the executor
+         * posts meanwhile is left for runPosted.
+         */
+        void advance(long millis) {
+            long end;
+            long before;
+            synchronized (this) {
+                end = mNow + millis;
+                before = mSequence;
+            }
+            Runnable due;
+            while ((due = takeDue(end, before)) != null) {
+                due.run();
+            }
+            synchronized (this) {
+                mNow = end;
+            }
+        }
+
+        /**
+         * Wait for work posted by a thread of the executor, and run it.
+         */
+        void runPosted() throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            Runnable due;
+            synchronized (this) {
+                while ((due = takeDue(mNow, Long.MAX_VALUE)) == null) {
+                    long left = deadline - System.currentTimeMillis();
+                    if (left <= 0) {
+                        fail("Nothing was posted");
+                    }
+                    wait(left);
+                }
+            }
+            due.run();
+        }
+
+        private synchronized Runnable takeDue(long end, long before) {
+            Object[] first = null;
+            for (Object[] posted : mPosted) {
+                if ((Long) posted[0] <= end && (Long) posted[2] < before
+                        && (first == null || (Long) posted[0] < (Long) first[0])) {
+                    first = posted;
+                }
+            }
+            if (first == null) {
+                return null;
+            }
+            mPosted.remove(first);
+            mNow = Math.max(mNow, (Long) first[0]);
+            return (Runnable) first[1];
+        }
+    }
+
+    private static final class FakeSearcher implements LiveSearch.Searcher {
+        final List<String> networkQueries = Collections.synchronizedList(new ArrayList<String>());
+        final Map<String, List<Story>> results = Collections.synchronizedMap(new HashMap<String, List<Story>>());
+        final BlockingQueue<FeedExecutor.CancellationToken> tokens = new LinkedBlockingQueue<>();
+        volatile List<Story> stored = new ArrayList<>();
+        volatile CountDownLatch gate;
+
+        @Override
+        public List<Story> searchStored(String query, int limit) {
+            return stored;
+        }
+
+        @Override
+        public List<Story> searchNetwork(String query, int limit, FeedExecutor.CancellationToken token) {
+            networkQueries.add(query);
+            tokens.add(token);
+            if (gate != null) {
+                try {
+                    gate.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    return null;
+                }
+            }
+            return results.get(query);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.example.android.yournews;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.SocketPolicy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the fetch path against {@link MockGuardianServer} with scripted failures and latency.
+ */
+public class QueryUtilsRetryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockGuardianServer server;
+    private byte[] page;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockGuardianServer();
+        page = StoryJsonParserTest.readFixture("fixtures/search_politics_10.json");
+        QueryUtils.setResponseCache(null);
+        QueryUtils.setRetryPolicy(new ExponentialBackoffRetryPolicy(3, 20, 200, new Random(1)));
+        QueryUtils.setRequestBudget(new RequestBudget(1000, 300, 2000, 3000));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+        QueryUtils.setResponseCache(null);
+        QueryUtils.setRequestGovernor(null);
+    }
+
+    @Test
+    public void serverError_isRetried() {
+        server.enqueue(MockGuardianServer.status(503), MockGuardianServer.ok(page));
+
+        List<Story> stories = QueryUtils.fetchStoryData(server.url());
+
+        assertNotNull(stories);
+        assertEquals(10, stories.size());
+        assertEquals(2, server.requestCount());
+    }
+
+    @Test
+    public void bodyCutOff_retryReplacesTheStoriesPassedOn() {
+        server.enqueue(MockGuardianServer.ok(page).setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY),
+                MockGuardianServer.ok(page));
+        final List<Story> shown = new ArrayList<>();
+        final List<Integer> shownPerAttempt = new ArrayList<>();
+        QueryUtils.AttemptListener listener = new QueryUtils.AttemptListener() {
+            @Override
+            public void onAttemptStarted() {
+                // The way the loader publishes them: a new attempt starts a new list
+                shownPerAttempt.add(shown.size());
+                shown.clear();
+            }
+
+            @Override
+            public void onStory(Story story) {
+                shown.add(story);
+            }
+        };
+
+        List<Story> stories = QueryUtils.fetchStoryData(server.url(), listener);
+
+        assertEquals(2, server.requestCount());
+        // The first attempt passed some stories on before it was cut off
+        assertEquals(2, shownPerAttempt.size());
+        assertTrue(shownPerAttempt.get(1) > 0);
+        assertEquals(stories, shown);
+        assertEquals(10, new HashSet<>(shown).size());
+    }
+
+    @Test
+    public void fetchListener_getsTheBytesOfEveryAttempt() {
+        server.enqueue(MockGuardianServer.status(503), MockGuardianServer.ok(page));
+        final List<Long> received = new ArrayList<>();
+        QueryUtils.FetchListener listener = new QueryUtils.FetchListener() {
+            @Override
+            public void onBytesReceived(long bytes) {
+                received.add(bytes);
+            }
+
+            @Override
+            public void onNotSent() {
+            }
+
+            @Override
+            public void onStory(Story story) {
+            }
+        };
+
+        assertNotNull(QueryUtils.fetchStoryData(server.url(), listener));
+
+        assertEquals(2, received.size());
+        assertEquals(page.length, (long) received.get(1));
+    }
+
+    @Test
+    public void fetchListener_isToldTheShedRequestWasNotSent() {
+        // Half of a burst of 1 is kept for the screen, a prefetch is always shed
+        QueryUtils.setRequestGovernor(new RequestGovernor(1, 1, 5, 1000));
+        final List<String> events = new ArrayList<>();
+        QueryUtils.FetchListener listener = new QueryUtils.FetchListener() {
+            @Override
+            public void onBytesReceived(long bytes) {
+                events.add("received");
+            }
+
+            @Override
+            public void onNotSent() {
+                events.add("not sent");
+            }
+
+            @Override
+            public void onStory(Story story) {
+            }
+        };
+
+        assertNull(QueryUtils.fetchStoryData(server.url(), listener,
+                new FeedExecutor.CancellationToken(FeedExecutor.Priority.PREFETCH)));
+
+        assertEquals(0, server.requestCount());
+        assertEquals(Arrays.asList("not sent"), events);
+    }
+
+    @Test
+    public void readTimeout_isRetried() {
+        server.enqueue(MockGuardianServer.ok(page).setHeadersDelay(600, TimeUnit.MILLISECONDS), MockGuardianServer.ok(page));
+
+        List<Story> stories = QueryUtils.fetchStoryData(server.url());
+
+        assertNotNull(stories);
+        assertEquals(2, server.requestCount());
+    }
+
+    @Test
+    public void tooManyRequests_waitsForRetryAfter() {
+        QueryUtils.setRetryPolicy(new ExponentialBackoffRetryPolicy(3, 20, 2000, new Random(1)));
+        server.enqueue(MockGuardianServer.status(429).addHeader("Retry-After", "1"),
+                MockGuardianServer.ok(page));
+
+        long start = System.nanoTime();
+        List<Story> stories = QueryUtils.fetchStoryData(server.url());
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        assertNotNull(stories);
+        assertTrue("waited only " + elapsedMillis + " ms", elapsedMillis >= 1000);
+    }
+
+    @Test
+    public void clientError_isNotRetried() {
+        server.enqueue(MockGuardianServer.status(404));
+
+        assertNull(QueryUtils.fetchStoryData(server.url()));
+        assertEquals(1, server.requestCount());
+    }
+
+    @Test
+    public void retries_stopAtMaxAttempts() {
+        server.enqueue(MockGuardianServer.status(500));
+
+        assertNull(QueryUtils.fetchStoryData(server.url()));
+        assertEquals(3, server.requestCount());
+    }
+
+    @Test
+    public void retries_stopAtTotalDeadline() {
+        QueryUtils.setRetryPolicy(new ExponentialBackoffRetryPolicy(100, 20, 50, new Random(1)));
+        QueryUtils.setRequestBudget(new RequestBudget(1000, 300, 2000, 1000));
+        server.enqueue(MockGuardianServer.status(502).setHeadersDelay(200, TimeUnit.MILLISECONDS));
+
+        long start = System.nanoTime();
+        assertNull(QueryUtils.fetchStoryData(server.url()));
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        assertTrue("took " + elapsedMillis + " ms", elapsedMillis < 1500);
+    }
+
+    @Test
+    public void notModified_usesCachedBody() throws IOException {
+        QueryUtils.setResponseCache(new HttpResponseDiskCache(folder.getRoot(), 1024 * 1024));
+        server.enqueue(MockGuardianServer.ok(page).addHeader("ETag", "\"v1\""),
+                MockGuardianServer.status(304));
+
+        List<Story> first = QueryUtils.fetchStoryData(server.url());
+        List<Story> second = QueryUtils.fetchStoryData(server.url());
+
+        assertEquals(first, second);
+        assertEquals("\"v1\"", server.request(1).getHeader("If-None-Match"));
+    }
+
+    @Test
+    public void uncachedFetch_isNotStoredNorRetried() throws IOException {
+        HttpResponseDiskCache responseCache = new HttpResponseDiskCache(folder.getRoot(), 1024 * 1024);
+        QueryUtils.setResponseCache(responseCache);
+        server.enqueue(MockGuardianServer.status(503), MockGuardianServer.ok(page).addHeader("ETag", "\"v1\""));
+
+        assertNull(QueryUtils.fetchUncachedStoryData(server.url(), null));
+        assertEquals(1, server.requestCount());
+
+        assertEquals(10, QueryUtils.fetchUncachedStoryData(server.url(), null).size());
+        assertNull(responseCache.get(server.url()));
+        assertNull(server.request(1).getHeader("If-None-Match"));
+    }
+
+    @Test
+    public void cancel_abortsTheOpenConnectionWithoutRetrying() {
+        assertCancelAborts(new UrlConnectionTransport());
+        assertCancelAborts(new OkHttpTransport());
+    }
+
+    private void assertCancelAborts(HttpTransport transport) {
+        QueryUtils.setTransport(transport);
+        QueryUtils.setRequestBudget(new RequestBudget(1000, 5000, 10000, 10000));
+        server.enqueue(MockGuardianServer.ok(page).setHeadersDelay(3000, TimeUnit.MILLISECONDS));
+        int requestsBefore = server.requestCount();
+        final FeedExecutor.CancellationToken token = new FeedExecutor.CancellationToken();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                token.cancel();
+            }
+        }).start();
+
+        long start = System.nanoTime();
+        try {
+            assertNull(QueryUtils.fetchStoryData(server.url(), null, token));
+        } finally {
+            QueryUtils.setTransport(new UrlConnectionTransport());
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        assertTrue("took " + elapsedMillis + " ms", elapsedMillis < 1000);
+        // The server may not have counted the aborted request yet, but there was no retry
+        assertTrue(server.requestCount() - requestsBefore <= 1);
+    }
+
+    @Test
+    public void policy_backoffGrowsAndHonoursRetryAfter() {
+        ExponentialBackoffRetryPolicy policy = new ExponentialBackoffRetryPolicy(5, 100, 1000, new Random(7));
+
+        assertTrue(policy.getRetryDelay(1, 503, null, -1) <= 100);
+        assertTrue(policy.getRetryDelay(3, -1, new SocketTimeoutException(), -1) <= 400);
+        assertEquals(700, policy.getRetryDelay(1, 429, null, 700));
+        assertEquals(1000, policy.getRetryDelay(1, 429, null, 5000));
+        assertEquals(RetryPolicy.NO_RETRY, policy.getRetryDelay(1, 404, null, -1));
+        assertEquals(RetryPolicy.NO_RETRY, policy.getRetryDelay(5, 503, null, -1));
+    }
+
+    @Test
+    public void parseRetryAfter_secondsAndHttpDate() {
+        assertEquals(120000, QueryUtils.parseRetryAfter("120"));
+        assertEquals(0, QueryUtils.parseRetryAfter("Thu, 01 Jan 1970 00:00:00 GMT"));
+        assertEquals(-1, QueryUtils.parseRetryAfter("soon"));
+        assertEquals(-1, QueryUtils.parseRetryAfter(null));
+    }
+}
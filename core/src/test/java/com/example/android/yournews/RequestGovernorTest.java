@@ -0,0 +1,230 @@
+package com.example.android.yournews;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The token bucket and circuit breaker on a fake clock, then the fetch path behind them against
+ * {@link MockGuardianServer} with a quota that answers 429s and an outage that answers 503s.
+ */
+public class RequestGovernorTest {
+
+    private static final String TAG = "politics/politics";
+    private static final int PAGE_SIZE = 10;
+    private static final FeedExecutor.Priority VISIBLE = FeedExecutor.Priority.VISIBLE;
+    private static final FeedExecutor.Priority PREFETCH = FeedExecutor.Priority.PREFETCH;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final FakeTicker ticker = new FakeTicker();
+    private MockGuardianServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockGuardianServer(42);
+        server.addStories(TAG, MockGuardianServer.fixtureStories("fixtures/search_politics_100.json"));
+        QueryUtils.setResponseCache(new HttpResponseDiskCache(folder.newFolder("responses"), 4 * 1024 * 1024));
+        // Every attempt is counted once, no retries
+        QueryUtils.setRetryPolicy(null);
+        QueryUtils.setRequestBudget(new RequestBudget(1000, 1000, 2000, 5000));
+        FeedMetrics.get().reset();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+        QueryUtils.setRequestGovernor(null);
+        QueryUtils.setResponseCache(null);
+    }
+
+    @Test
+    public void acquire_burstThenWaitsAtTheRate() {
+        RequestGovernor governor = new RequestGovernor(2, 3, 5, 10000, ticker);
+
+        assertEquals(0, governor.acquire(VISIBLE, 5000));
+        assertEquals(0, governor.acquire(VISIBLE, 5000));
+        assertEquals(0, governor.acquire(VISIBLE, 5000));
+        // The next tokens come every 500 ms, the waiting requests take them in turn
+        assertEquals(500, governor.acquire(VISIBLE, 5000));
+        assertEquals(1000, governor.acquire(VISIBLE, 5000));
+
+        ticker.advanceMillis(1000);
+        assertEquals(500, governor.acquire(VISIBLE, 5000));
+    }
+
+    @Test
+    public void acquire_prefetchBacksOffFirst() {
+        RequestGovernor governor = new RequestGovernor(1, 4, 5, 10000, ticker);
+
+        assertEquals(0, governor.acquire(PREFETCH, 5000));
+        assertEquals(0, governor.acquire(PREFETCH, 5000));
+        // Half of the bucket is kept for the visible feed
+        assertEquals(RequestGovernor.SHED, governor.acquire(PREFETCH, 5000));
+        assertEquals(0, governor.acquire(VISIBLE, 5000));
+        assertEquals(0, governor.acquire(VISIBLE, 5000));
+    }
+
+    @Test
+    public void acquire_waitBeyondTheBudget_isShed() {
+        RequestGovernor governor = new RequestGovernor(1, 1, 5, 10000, ticker);
+
+        assertEquals(0, governor.acquire(VISIBLE, 500));
+        assertEquals(RequestGovernor.SHED, governor.acquire(VISIBLE, 500));
+        assertEquals(1000, governor.acquire(VISIBLE, 1000));
+    }
+
+    @Test
+    public void tooManyRequests_pausesUntilRetryAfter() {
+        RequestGovernor governor = new RequestGovernor(10, 10, 5, 10000, ticker);
+
+        assertFalse(governor.onAttempt(429, 2000));
+
+        assertEquals(RequestGovernor.SHED, governor.acquire(PREFETCH, 5000));
+        assertEquals(2000, governor.acquire(VISIBLE, 5000));
+        assertFalse(governor.isCircuitOpen());
+    }
+
+    @Test
+    public void failures_openTheCircuitUntilATrialSucceeds() {
+        RequestGovernor governor = new RequestGovernor(100, 10, 3, 10000, ticker);
+
+        assertFalse(governor.onAttempt(503, -1));
+        assertFalse(governor.onAttempt(-1, -1));
+        assertTrue(governor.onAttempt(502, -1));
+
+        assertTrue(governor.isCircuitOpen());
+        assertEquals(RequestGovernor.REJECTED, governor.acquire(VISIBLE, 5000));
+        ticker.advanceMillis(10000);
+        // One trial request at a time
+        assertEquals(0, governor.acquire(VISIBLE, 5000));
+        assertEquals(RequestGovernor.REJECTED, governor.acquire(VISIBLE, 5000));
+
+        assertFalse(governor.onAttempt(200, -1));
+        assertFalse(governor.isCircuitOpen());
+        assertEquals(0, governor.acquire(VISIBLE, 5000));
+    }
+
+    @Test
+    public void failedTrial_opensTheCircuitAgain() {
+        RequestGovernor governor = new RequestGovernor(100, 10, 1, 10000, ticker);
+        assertTrue(governor.onAttempt(503, -1));
+        ticker.advanceMillis(10000);
+
+        assertEquals(0, governor.acquire(VISIBLE, 5000));
+        assertTrue(governor.onAttempt(503, -1));
+
+        assertEquals(RequestGovernor.REJECTED, governor.acquire(VISIBLE, 5000));
+    }
+
+    @Test
+    public void cancelledTrial_letsTheNextOneThrough() {
+        RequestGovernor governor = new RequestGovernor(100, 10, 1, 10000, ticker);
+        governor.onAttempt(-1, -1);
+        ticker.advanceMillis(10000);
+
+        assertEquals(0, governor.acquire(VISIBLE, 5000));
+        governor.onCancelled();
+
+        assertEquals(0, governor.acquire(VISIBLE, 5000));
+    }
+
+    @Test
+    public void clientErrors_doNotOpenTheCircuit() {
+        RequestGovernor governor = new RequestGovernor(100, 10, 2, 10000, ticker);
+
+        for (int i = 0; i < 5; i++) {
+            governor.onAttempt(400, -1);
+            governor.onAttempt(429, 0);
+        }
+
+        assertFalse(governor.isCircuitOpen());
+    }
+
+    @Test
+    public void quota_governedRequestsGetNo429s() {
+        server.quota(10);
+        // Without the governor the requests sent at once go over the quota
+        for (int i = 0; i < 12; i++) {
+            QueryUtils.fetchStoryData(server.url(TAG, 1 + i % 5, PAGE_SIZE, null));
+        }
+        assertTrue(server.tooManyRequestsCount() > 0);
+
+        // 4 at once and 4 a second stays within 10 in any second
+        server.quota(10);
+        int tooManyRequests = server.tooManyRequestsCount();
+        QueryUtils.setRequestGovernor(new RequestGovernor(4, 4, 5, 10000));
+        for (int i = 0; i < 12; i++) {
+            assertNotNull(QueryUtils.fetchStoryData(server.url(TAG, 1 + i % 5, PAGE_SIZE, null)));
+        }
+
+        assertEquals(tooManyRequests, server.tooManyRequestsCount());
+        assertTrue(FeedMetrics.get().getCount(FeedMetrics.Counter.THROTTLED_REQUESTS) > 0);
+    }
+
+    @Test
+    public void shedPrefetch_isAnsweredFromTheCache() {
+        QueryUtils.setRequestGovernor(new RequestGovernor(0.1, 2, 5, 10000));
+        String cachedPage = server.url(TAG, 2, PAGE_SIZE, null);
+        assertNotNull(QueryUtils.fetchStoryData(cachedPage));
+        int requests = server.requestCount();
+
+        FeedExecutor.CancellationToken prefetch = new FeedExecutor.CancellationToken(PREFETCH);
+        List<Story> stories = QueryUtils.fetchStoryData(cachedPage, null, prefetch);
+        List<Story> notCached = QueryUtils.fetchStoryData(server.url(TAG, 3, PAGE_SIZE, null), null, prefetch);
+
+        assertEquals(PAGE_SIZE, stories.size());
+        assertNull(notCached);
+        assertEquals(requests, server.requestCount());
+        assertEquals(2, FeedMetrics.get().getCount(FeedMetrics.Counter.SHED_REQUESTS));
+        assertEquals(1, FeedMetrics.get().getCount(FeedMetrics.Counter.CACHED_FALLBACKS));
+    }
+
+    @Test
+    public void outage_opensTheCircuitAndServesTheCache() {
+        RequestGovernor governor = new RequestGovernor(100, 10, 3, 60000);
+        QueryUtils.setRequestGovernor(governor);
+        String url = server.url(TAG, 1, PAGE_SIZE, null);
+        assertNotNull(QueryUtils.fetchStoryData(url));
+
+        server.outage(true);
+        for (int i = 0; i < 3; i++) {
+            assertNull(QueryUtils.fetchStoryData(url));
+        }
+        int requests = server.requestCount();
+        List<Story> stories = QueryUtils.fetchStoryData(url);
+
+        assertTrue(governor.isCircuitOpen());
+        assertEquals(PAGE_SIZE, stories.size());
+        // The open circuit sent nothing
+        assertEquals(requests, server.requestCount());
+        assertEquals(1, FeedMetrics.get().getCount(FeedMetrics.Counter.CIRCUIT_OPENS));
+        assertEquals(1, FeedMetrics.get().getCount(FeedMetrics.Counter.REJECTED_REQUESTS));
+    }
+
+    private static class FakeTicker implements StoryMemoryCache.Ticker {
+        long nanos = 1;
+
+        void advanceMillis(long millis) {
+            nanos += TimeUnit.MILLISECONDS.toNanos(millis);
+        }
+
+        @Override
+        public long nanoTime() {
+            return nanos;
+        }
+    }
+}
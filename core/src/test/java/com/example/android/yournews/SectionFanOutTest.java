@@ -0,0 +1,189 @@
+package com.example.android.yournews;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SectionFanOutTest {
+
+    private FeedExecutor executor;
+
+    @Before
+    public void setUp() {
+        executor = new FeedExecutor(3);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void fetchAll_mergesByDateAndRemovesDuplicates() {
+        SectionFanOut fanOut = new SectionFanOut(executor, 1000);
+
+        List<Story> stories = fanOut.fetchAll(Arrays.asList("politics/politics", "business/business"),
+                new SectionFanOut.SectionFetcher() {
+                    @Override
+                    public List<Story> fetch(String sectionTag, FeedExecutor.CancellationToken token) {
+                        if (sectionTag.startsWith("politics")) {
+                            return Arrays.asList(story("a", "2018-05-31T10:00:00Z"), story("shared", "2018-05-30T10:00:00Z"));
+                        }
+                        return Arrays.asList(story("shared", "2018-05-30T10:00:00Z"), story("b", "2018-05-31T12:00:00Z"));
+                    }
+                }, null);
+
+        assertEquals(3, stories.size());
+        assertEquals("https://gu.com/p/b", stories.get(0).getShortUrl());
+        assertEquals("https://gu.com/p/a", stories.get(1).getShortUrl());
+        assertEquals("https://gu.com/p/shared", stories.get(2).getShortUrl());
+    }
+
+    @Test
+    public void fetchAll_slowAndFailingSectionsDoNotHoldUpTheOthers() {
+        SectionFanOut fanOut = new SectionFanOut(executor, 300);
+
+        long start = System.nanoTime();
+        List<Story> stories = fanOut.fetchAll(Arrays.asList("slow", "failing", "fast"),
+                new SectionFanOut.SectionFetcher() {
+                    @Override
+                    public List<Story> fetch(String sectionTag, FeedExecutor.CancellationToken token) {
+                        if (sectionTag.equals("slow")) {
+                            try {
+                                Thread.sleep(5000);
+                            } catch (InterruptedException e) {
+                                return null;
+                            }
+                        } else if (sectionTag.equals("failing")) {
+                            throw new IllegalStateException("boom");
+                        }
+                        return new ArrayList<>(Arrays.asList(story(sectionTag, "2018-05-31T10:00:00Z")));
+                    }
+                }, null);
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        assertEquals(1, stories.size());
+        assertEquals("https://gu.com/p/fast", stories.get(0).getShortUrl());
+        assertTrue("took " + elapsedMillis + " ms", elapsedMillis < 2000);
+    }
+
+    @Test
+    public void fetchAll_returnsNullWhenNoSectionLoaded() {
+        SectionFanOut fanOut = new SectionFanOut(executor, 300);
+
+        assertNull(fanOut.fetchAll(Arrays.asList("a", "b"), new SectionFanOut.SectionFetcher() {
+            @Override
+            public List<Story> fetch(String sectionTag, FeedExecutor.CancellationToken token) {
+                return null;
+            }
+        }, null));
+    }
+
+    @Test
+    public void fetchAll_deadlineCancelsTheTokenOfASlowSection() throws Exception {
+        SectionFanOut fanOut = new SectionFanOut(executor, 300);
+        final CountDownLatch aborted = new CountDownLatch(1);
+
+        List<Story> stories = fanOut.fetchAll(Arrays.asList("slow", "fast"), new SectionFanOut.SectionFetcher() {
+            @Override
+            public List<Story> fetch(String sectionTag, FeedExecutor.CancellationToken token) {
+                if (sectionTag.equals("slow")) {
+                    // A blocking read does not see the interrupt, only its token aborts it
+                    token.addOnCancelListener(new Runnable() {
+                        @Override
+                        public void run() {
+                            aborted.countDown();
+                        }
+                    });
+                    awaitUninterruptibly(aborted);
+                    return null;
+                }
+                return Arrays.asList(story(sectionTag, "2018-05-31T10:00:00Z"));
+            }
+        }, null);
+
+        assertEquals(1, stories.size());
+        assertEquals(0, aborted.getCount());
+    }
+
+    @Test
+    public void fetchAll_runsInTheLaneOfTheLoad() {
+        SectionFanOut fanOut = new SectionFanOut(executor, 1000);
+        final List<FeedExecutor.Priority> priorities = new ArrayList<>();
+
+        fanOut.fetchAll(Arrays.asList("a", "b"), new SectionFanOut.SectionFetcher() {
+            @Override
+            public List<Story> fetch(String sectionTag, FeedExecutor.CancellationToken token) {
+                synchronized (priorities) {
+                    priorities.add(token.getPriority());
+                }
+                return null;
+            }
+        }, new FeedExecutor.CancellationToken(FeedExecutor.Priority.PREFETCH));
+
+        assertEquals(Arrays.asList(FeedExecutor.Priority.PREFETCH, FeedExecutor.Priority.PREFETCH), priorities);
+    }
+
+    @Test
+    public void fetchAll_loadsWhenEveryThreadIsBusyWithAFanOut() {
+        final FeedExecutor single = new FeedExecutor(1);
+        try {
+            FeedExecutor.FeedFuture<List<Story>> load = single.submit(FeedExecutor.Priority.VISIBLE,
+                    new FeedExecutor.Task<List<Story>>() {
+                        @Override
+                        public List<Story> run(FeedExecutor.CancellationToken token) {
+                            return new SectionFanOut(single, 1000).fetchAll(Arrays.asList("a", "b"),
+                                    new SectionFanOut.SectionFetcher() {
+                                        @Override
+                                        public List<Story> fetch(String sectionTag, FeedExecutor.CancellationToken sectionToken) {
+                                            return Arrays.asList(story(sectionTag, "2018-05-31T10:00:00Z"));
+                                        }
+                                    }, token);
+                        }
+                    });
+
+            // The thread of the load runs its sections itself
+            assertEquals(2, load.get(5, TimeUnit.SECONDS).size());
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    @Test
+    public void merge_putsTheStoriesWithoutADateLast() {
+        List<Story> merged = SectionFanOut.merge(Arrays.asList(
+                Arrays.asList(story("undated", null), story("old", "2018-05-30T10:00:00Z")),
+                Arrays.asList(story("new", "2018-05-31T10:00:00Z"))));
+
+        assertEquals("https://gu.com/p/new", merged.get(0).getShortUrl());
+        assertEquals("https://gu.com/p/old", merged.get(1).getShortUrl());
+        assertEquals("https://gu.com/p/undated", merged.get(2).getShortUrl());
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (latch.getCount() > 0 && System.nanoTime() < deadline) {
+            try {
+                latch.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                // Like a socket read, the interrupt does not end the wait
+            }
+        }
+    }
+
+    private static Story story(String id, String date) {
+        return new Story("Politics", date, "By: Peter Walker", "Headline " + id, "Trail", "https://gu.com/p/" + id, null);
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.android.yournews;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class StoryFormatterTest {
+
+    @Test
+    public void parseDate_matchesSimpleDateFormat() throws Exception {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        String[] dates = {"2018-05-31T18:00:11Z", "2016-02-29T00:00:00Z", "1970-01-01T00:00:00Z",
+                "2000-12-31T23:59:59Z", "2018-01-01T06:30:00Z"};
+        for (String date : dates) {
+            assertEquals(date, format.parse(date).getTime(), StoryFormatter.parseDate(date));
+        }
+    }
+
+    @Test
+    public void parseDate_invalidDates() {
+        assertEquals(-1, StoryFormatter.parseDate(null));
+        assertEquals(-1, StoryFormatter.parseDate("2018-05-31"));
+        assertEquals(-1, StoryFormatter.parseDate("2018-13-31T18:00:11Z"));
+        assertEquals(-1, StoryFormatter.parseDate("yesterdayT18:00:11Z"));
+    }
+
+    @Test
+    public void formatIsoDate_givesTheParsedDateBack() {
+        String[] dates = {"2018-05-31T18:00:11Z", "2016-02-29T00:00:00Z", "1970-01-01T00:00:00Z",
+                "2000-12-31T23:59:59Z", "1969-12-31T23:59:59Z", "2100-03-01T12:00:00Z"};
+        for (String date : dates) {
+            assertEquals(date, StoryFormatter.formatIsoDate(StoryFormatter.parseDate(date)));
+        }
+    }
+
+    @Test
+    public void formatDateAndTime() {
+        assertEquals("2018-05-31", StoryFormatter.formatDate("2018-05-31T18:00:11Z"));
+        assertEquals("18:00", StoryFormatter.formatTime("2018-05-31T18:00:11Z"));
+        assertEquals("2018-05-31", StoryFormatter.formatDate("2018-05-31"));
+        assertNull(StoryFormatter.formatTime("2018-05-31"));
+    }
+
+    @Test
+    public void stripHtml_removesTagsAndDecodesEntities() {
+        assertEquals("Letters: Brexit & the Irish border",
+                StoryFormatter.stripHtml("<strong>Letters: </strong>Brexit &amp; the Irish border"));
+        assertEquals("First line Second \u201cquoted\u201d line",
+                StoryFormatter.stripHtml("<p>First line</p><p>Second &#8220;quoted&#x201D;\n line</p>"));
+        assertEquals("a < b", StoryFormatter.stripHtml("a < b"));
+        assertEquals("", StoryFormatter.stripHtml("<br/>"));
+        assertNull(StoryFormatter.stripHtml(null));
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.android.yournews;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StoryIndexTest {
+
+    @Test
+    public void tokenize_lowerCasesAndDropsAccents() {
+        assertEquals(Arrays.asList("cafe", "debate", "live", "2018"),
+                StoryIndex.tokenize("Caf\u00e9 <b>DEBATE</b> \u2013 live, 2018", 2));
+        // The "s" of "Labour's" is too short
+        assertEquals(Arrays.asList("labour", "plan"), StoryIndex.tokenize("Labour's plan", 2));
+    }
+
+    @Test
+    public void search_matchesPrefixesOfEveryField() {
+        StoryIndex index = new StoryIndex();
+        Story brexit = story("1", "Politics", "Anna Writer", "Brexit vote delayed", "MPs will vote later");
+        Story markets = story("2", "Business", "Ben Author", "Markets rally", "Shares rise after the vote");
+        index.addAll(Arrays.asList(brexit, markets));
+
+        assertEquals(Arrays.asList(brexit), index.search("brex", 10));
+        assertEquals(Arrays.asList(markets), index.search("busi", 10));
+        assertEquals(Arrays.asList(brexit), index.search("ANNA", 10));
+        assertEquals(Arrays.asList(markets), index.search("shares", 10));
+        assertTrue(index.search("election", 10).isEmpty());
+        assertTrue(index.search("  ", 10).isEmpty());
+    }
+
+    @Test
+    public void search_needsEveryWordOfTheQuery() {
+        StoryIndex index = new StoryIndex();
+        Story brexit = story("1", "Politics", "Anna Writer", "Brexit vote delayed", "");
+        Story markets = story("2", "Business", "Ben Author", "Markets rally", "Shares rise after the vote");
+        index.addAll(Arrays.asList(brexit, markets));
+
+        assertEquals(Arrays.asList(brexit), index.search("vote pol", 10));
+        assertEquals(Arrays.asList(markets), index.search("vo sha", 10));
+    }
+
+    @Test
+    public void search_ranksTheHeadlineFirst() {
+        StoryIndex index = new StoryIndex();
+        Story inTrail = story("1", "Politics", "Anna Writer", "Parliament returns", "The budget is next");
+        Story inHeadline = story("2", "Business", "Ben Author", "Budget day", "What to expect");
+        index.addAll(Arrays.asList(inTrail, inHeadline));
+
+        assertEquals(Arrays.asList(inHeadline, inTrail), index.search("budget", 10));
+    }
+
+    @Test
+    public void search_sameScore_newestFirst_andLimited() {
+        StoryIndex index = new StoryIndex();
+        List<Story> stories = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            stories.add(new Story("Sport", "2018-06-0" + i + "T10:00:00Z", null, "Match report", "",
+                    "https://gu.com/p/" + i, null));
+        }
+        index.addAll(stories);
+
+        assertEquals(Arrays.asList(stories.get(4), stories.get(3), stories.get(2)), index.search("match", 3));
+    }
+
+    @Test
+    public void add_sameShortUrl_replacesTheStory() {
+        StoryIndex index = new StoryIndex();
+        index.add(story("1", "Politics", null, "Old headline", ""));
+        Story updated = story("1", "Politics", null, "New headline", "");
+
+        index.add(updated);
+
+        assertEquals(1, index.size());
+        assertTrue(index.search("old", 10).isEmpty());
+        assertEquals(Arrays.asList(updated), index.search("new", 10));
+    }
+
+    @Test
+    public void remove_takesTheStoryOutOfTheResults() {
+        StoryIndex index = new StoryIndex();
+        index.add(story("1", "Politics", null, "Brexit vote", ""));
+
+        assertTrue(index.remove("https://gu.com/p/1"));
+        assertFalse(index.remove("https://gu.com/p/1"));
+
+        assertEquals(0, index.size());
+        assertTrue(index.search("brexit", 10).isEmpty());
+    }
+
+    @Test
+    public void manyReplacements_compactTheIndex() {
+        StoryIndex index = new StoryIndex();
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 50; i++) {
+                index.add(story(String.valueOf(i), "World", null, "Story " + i + " round" + round, ""));
+            }
+        }
+
+        assertEquals(50, index.size());
+        assertEquals(50, index.search("round9", 100).size());
+        assertTrue(index.search("round0", 100).isEmpty());
+        // The words of the replaced stories went away with them
+        assertTrue(index.getWordCount() < 100);
+    }
+
+    private static Story story(String id, String section, String author, String headline, String trailText) {
+        return new Story(section, "2018-06-01T10:00:00Z", author, headline, trailText,
+                "https://gu.com/p/" + id, null);
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.android.yournews;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks the streaming parser against the String + JSONObject path using recorded
+ * Guardian search responses from src/test/resources/fixtures.
+ */
+public class StoryJsonParserTest {
+
+    private static final String FIXTURE_10 = "fixtures/search_politics_10.json";
+    private static final String FIXTURE_100 = "fixtures/search_politics_100.json";
+
+    @Test
+    public void parse_matchesJsonObjectPath() throws IOException {
+        byte[] json = readFixture(FIXTURE_100);
+
+        List<Story> expected = QueryUtils.extractFeatureFromJson(
+                QueryUtils.readFromStream(new ByteArrayInputStream(json)));
+        List<Story> actual = StoryJsonParser.parse(new ByteArrayInputStream(json));
+
+        assertEquals(100, expected.size());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSameStory(expected.get(i), actual.get(i));
+        }
+    }
+
+    @Test
+    public void parse_listenerGetsEveryStoryInOrder() throws IOException {
+        final List<Story> published = new ArrayList<>();
+        List<Story> stories = StoryJsonParser.parse(
+                new ByteArrayInputStream(readFixture(FIXTURE_10)), new StoryJsonParser.Listener() {
+                    @Override
+                    public void onStory(Story story) {
+                        published.add(story);
+                    }
+                });
+
+        assertEquals(10, published.size());
+        assertEquals(stories, published);
+    }
+
+    @Test
+    public void parse_missingTagsAndThumbnail() throws IOException {
+        String json = "{\"response\":{\"status\":\"ok\",\"results\":[{\"sectionName\":\"Politics\","
+                + "\"webPublicationDate\":\"2018-05-31T18:00:11Z\",\"fields\":{\"headline\":\"h\","
+                + "\"trailText\":\"t\",\"shortUrl\":\"https://gu.com/p/abcde\"}}]}}";
+
+        List<Story> stories = StoryJsonParser.parse(
+                new ByteArrayInputStream(json.getBytes("UTF-8")));
+
+        assertEquals(1, stories.size());
+        assertEquals(StoryJsonParser.AUTHOR_NOT_FOUND, stories.get(0).getAuthor());
+        assertNull(stories.get(0).getThumbnailUrl());
+        assertEquals("https://gu.com/p/abcde", stories.get(0).getShortUrl());
+    }
+
+    @Test
+    public void parse_stopsBeforeTheNextStoryWhenCancelled() throws IOException {
+        final FeedExecutor.CancellationToken token = new FeedExecutor.CancellationToken();
+        final List<Story> published = new ArrayList<>();
+        try {
+            StoryJsonParser.parse(new ByteArrayInputStream(readFixture(FIXTURE_100)),
+                    new StoryJsonParser.Listener() {
+                        @Override
+                        public void onStory(Story story) {
+                            published.add(story);
+                            if (published.size() == 3) {
+                                token.cancel();
+                            }
+                        }
+                    }, token);
+            fail();
+        } catch (InterruptedIOException expected) {
+            // Cancelled loads end like a failed request
+        }
+        assertEquals(3, published.size());
+    }
+
+    @Test(expected = IOException.class)
+    public void parse_unexpectedShape_throwsIOException() throws IOException {
+        StoryJsonParser.parse(new ByteArrayInputStream("[1,2,3]".getBytes("UTF-8")));
+    }
+
+    /**
+     * The streaming path must allocate less than reading the body into a String and building a
+     * JSONObject tree. Bytes allocated by the parsing thread are the upper bound of its peak heap use.
+     * The numbers themselves are measured by ParseBenchmark in the :benchmark module.
+     */
+    @Test
+    public void parse_allocatesLessThanJsonObjectPath() throws IOException {
+        for (String fixture : new String[]{FIXTURE_10, FIXTURE_100}) {
+            byte[] json = readFixture(fixture);
+            long tree = Long.MAX_VALUE;
+            long streaming = Long.MAX_VALUE;
+            // The first rounds warm up class loading and the JIT, keep the best of each
+            for (int round = 0; round < 10; round++) {
+                long start = allocatedBytes();
+                QueryUtils.extractFeatureFromJson(
+                        QueryUtils.readFromStream(new ByteArrayInputStream(json)));
+                tree = Math.min(tree, allocatedBytes() - start);
+
+                start = allocatedBytes();
+                StoryJsonParser.parse(new ByteArrayInputStream(json));
+                streaming = Math.min(streaming, allocatedBytes() - start);
+            }
+            assertTrue(fixture + ": streaming " + streaming + " >= tree " + tree, streaming < tree);
+        }
+    }
+
+    private static void assertSameStory(Story expected, Story actual) {
+        assertEquals(expected.getSectionName(), actual.getSectionName());
+        assertEquals(expected.getDate(), actual.getDate());
+        assertEquals(expected.getAuthor(), actual.getAuthor());
+        assertEquals(expected.getHeadline(), actual.getHeadline());
+        assertEquals(expected.getTrailText(), actual.getTrailText());
+        assertEquals(expected.getShortUrl(), actual.getShortUrl());
+        assertEquals(expected.getThumbnailUrl(), actual.getThumbnailUrl());
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    static byte[] readFixture(String name) throws IOException {
+        InputStream in = StoryJsonParserTest.class.getClassLoader().getResourceAsStream(name);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+}
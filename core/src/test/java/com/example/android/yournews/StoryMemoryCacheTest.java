@@ -0,0 +1,211 @@
+package com.example.android.yournews;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class StoryMemoryCacheTest {
+
+    private final FakeTicker ticker = new FakeTicker();
+
+    @Test
+    public void get_hitsUntilTheTimeToLivePasses() {
+        StoryMemoryCache cache = new StoryMemoryCache(1000, 1024 * 1024, ticker);
+        CountingFetcher fetcher = new CountingFetcher(3);
+
+        List<Story> first = cache.get("url", fetcher);
+        ticker.advanceMillis(999);
+        assertSame(first, cache.get("url", fetcher));
+        ticker.advanceMillis(1);
+        cache.get("url", fetcher);
+
+        assertEquals(2, fetcher.calls.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void get_failedFetchIsNotCached() {
+        StoryMemoryCache cache = new StoryMemoryCache(1000, 1024 * 1024, ticker);
+        CountingFetcher failing = new CountingFetcher(-1);
+
+        assertNull(cache.get("url", failing));
+        assertNull(cache.get("url", failing));
+
+        assertEquals(2, failing.calls.get());
+    }
+
+    @Test
+    public void put_dropsLeastRecentlyUsedOverTheMemoryBound() {
+        long oneEntry = StoryMemoryCache.weigh(stories(10));
+        StoryMemoryCache cache = new StoryMemoryCache(60000, oneEntry * 2, ticker);
+        CountingFetcher fetcher = new CountingFetcher(10);
+
+        cache.get("a", fetcher);
+        cache.get("b", fetcher);
+        // "a" is now the most recently used, so "b" is dropped for "c"
+        cache.get("a", fetcher);
+        cache.get("c", fetcher);
+        cache.get("a", fetcher);
+        cache.get("b", fetcher);
+
+        assertEquals(4, fetcher.calls.get());
+        assertEquals(2, cache.getEvictionCount());
+        assertEquals(oneEntry * 2, cache.size());
+    }
+
+    @Test
+    public void get_concurrentRequestsShareOneFetch() throws Exception {
+        final StoryMemoryCache cache = new StoryMemoryCache(60000, 1024 * 1024);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+        final StoryMemoryCache.Fetcher slowFetcher = new StoryMemoryCache.Fetcher() {
+            @Override
+            public List<Story> fetch(String url) {
+                calls.incrementAndGet();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    return null;
+                }
+                return stories(5);
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<Story>>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(new Callable<List<Story>>() {
+                    @Override
+                    public List<Story> call() {
+                        return cache.get("url", slowFetcher);
+                    }
+                }));
+            }
+            // Let the other requests find the fetch in flight before it ends
+            while (cache.getCoalescedCount() < 3) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+            for (Future<List<Story>> result : results) {
+                assertEquals(5, result.get(5, TimeUnit.SECONDS).size());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, calls.get());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(3, cache.getCoalescedCount());
+    }
+
+    @Test
+    public void get_waitingRequestFetchesWhenTheFetchingOneIsCancelled() throws Exception {
+        final StoryMemoryCache cache = new StoryMemoryCache(60000, 1024 * 1024);
+        final FeedExecutor.CancellationToken firstToken = new FeedExecutor.CancellationToken();
+        final CountDownLatch cancelled = new CountDownLatch(1);
+        firstToken.addOnCancelListener(new Runnable() {
+            @Override
+            public void run() {
+                cancelled.countDown();
+            }
+        });
+        // Gives up once its request is cancelled, the way QueryUtils does
+        final StoryMemoryCache.Fetcher abandonedFetcher = new StoryMemoryCache.Fetcher() {
+            @Override
+            public List<Story> fetch(String url) {
+                try {
+                    cancelled.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }
+        };
+        final CountingFetcher fetcher = new CountingFetcher(5);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<Story>> first = executor.submit(new Callable<List<Story>>() {
+                @Override
+                public List<Story> call() {
+                    return cache.get("url", abandonedFetcher, firstToken);
+                }
+            });
+            while (cache.getMissCount() < 1) {
+                Thread.sleep(5);
+            }
+            Future<List<Story>> second = executor.submit(new Callable<List<Story>>() {
+                @Override
+                public List<Story> call() {
+                    return cache.get("url", fetcher, new FeedExecutor.CancellationToken());
+                }
+            });
+            while (cache.getCoalescedCount() < 1) {
+                Thread.sleep(5);
+            }
+
+            firstToken.cancel();
+
+            assertNull(first.get(5, TimeUnit.SECONDS));
+            assertEquals(5, second.get(5, TimeUnit.SECONDS).size());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, fetcher.calls.get());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    private static List<Story> stories(int count) {
+        List<Story> stories = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            stories.add(new Story("Politics", "2018-05-31T18:00:11Z", "By: Heather Stewart",
+                    "Headline " + i, "Trail", "https://gu.com/p/" + i, null));
+        }
+        return stories;
+    }
+
+    private static class CountingFetcher implements StoryMemoryCache.Fetcher {
+        final AtomicInteger calls = new AtomicInteger();
+        final int size;
+
+        /**
+         * @param size number of stories returned, or -1 to fail
+         */
+        CountingFetcher(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public List<Story> fetch(String url) {
+            calls.incrementAndGet();
+            return size < 0 ? null : stories(size);
+        }
+    }
+
+    private static class FakeTicker implements StoryMemoryCache.Ticker {
+        long nanos = 1;
+
+        void advanceMillis(long millis) {
+            nanos += TimeUnit.MILLISECONDS.toNanos(millis);
+        }
+
+        @Override
+        public long nanoTime() {
+            return nanos;
+        }
+    }
+}
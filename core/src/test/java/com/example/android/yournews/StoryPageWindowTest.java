@@ -0,0 +1,95 @@
+package com.example.android.yournews;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StoryPageWindowTest {
+
+    private static final int PAGE_SIZE = 3;
+
+    @Test
+    public void appendPage_dropsFirstPageWhenFull() {
+        StoryPageWindow window = new StoryPageWindow(2);
+        window.reset(page(1), PAGE_SIZE);
+
+        assertEquals(0, window.appendPage(2, page(2), PAGE_SIZE));
+        assertEquals(3, window.appendPage(3, page(3), PAGE_SIZE));
+
+        assertEquals(2, window.getFirstPage());
+        assertEquals(3, window.getLastPage());
+        assertEquals(6, window.getStories().size());
+        assertEquals("https://gu.com/p/2-0", window.getStories().get(0).getShortUrl());
+    }
+
+    @Test
+    public void prependPage_bringsBackDroppedPage() {
+        StoryPageWindow window = new StoryPageWindow(2);
+        window.reset(page(1), PAGE_SIZE);
+        window.appendPage(2, page(2), PAGE_SIZE);
+        window.appendPage(3, page(3), PAGE_SIZE);
+
+        assertEquals(3, window.prependPage(1, page(1)));
+
+        assertEquals(1, window.getFirstPage());
+        assertEquals(2, window.getLastPage());
+        assertFalse(window.isLastPageReached());
+    }
+
+    @Test
+    public void appendPage_skipsDuplicatesAndOutOfOrderPages() {
+        StoryPageWindow window = new StoryPageWindow(5);
+        window.reset(page(1), PAGE_SIZE);
+        List<Story> shifted = page(2);
+        // The feed moved by one story, so the last story of page 1 comes again
+        shifted.set(0, page(1).get(2));
+
+        window.appendPage(2, shifted, PAGE_SIZE);
+        window.appendPage(4, page(4), PAGE_SIZE);
+
+        assertEquals(5, window.getStories().size());
+        assertEquals(2, window.getLastPage());
+    }
+
+    @Test
+    public void shortPage_isTheLastPage() {
+        StoryPageWindow window = new StoryPageWindow(5);
+        window.reset(page(1), PAGE_SIZE);
+
+        window.appendPage(2, page(2).subList(0, 1), PAGE_SIZE);
+
+        assertTrue(window.isLastPageReached());
+    }
+
+    @Test
+    public void addNewest_putsNewStoriesOnTopAndReplacesShownOnes() {
+        StoryPageWindow window = new StoryPageWindow(5);
+        window.reset(page(1), PAGE_SIZE);
+        Story updated = new Story("Politics", "2018-05-31T18:00:11Z", "By: Heather Stewart",
+                "Updated headline", "Trail", "https://gu.com/p/1-0", null);
+        Story newer = new Story("Politics", "2018-05-31T19:00:00Z", "By: Peter Walker",
+                "Newer", "Trail", "https://gu.com/p/new", null);
+
+        assertEquals(1, window.addNewest(Arrays.asList(newer, updated)));
+
+        List<Story> stories = window.getStories();
+        assertEquals(4, stories.size());
+        assertEquals("https://gu.com/p/new", stories.get(0).getShortUrl());
+        assertEquals("Updated headline", stories.get(1).getHeadline());
+    }
+
+    private static List<Story> page(int page) {
+        List<Story> stories = new ArrayList<>();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            stories.add(new Story("Politics", "2018-05-31T18:00:11Z", "By: Heather Stewart",
+                    "Headline " + page + "-" + i, "Trail", "https://gu.com/p/" + page + "-" + i, null));
+        }
+        return stories;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.android.yournews;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class StoryTest {
+
+    @Test
+    public void getters_giveTheValuesBack() {
+        Story story = new Story("Politics", "2018-05-31T18:00:11Z", "By: Caf\u00e9 Writer",
+                "Debate \u2013 live", "<strong>Letters:</strong> A &amp; B",
+                "https://gu.com/p/8abc", "https://media.guim.co.uk/1234/0_0_500_300/500.jpg");
+
+        assertEquals("Politics", story.getSectionName());
+        assertEquals("2018-05-31T18:00:11Z", story.getDate());
+        assertEquals("By: Caf\u00e9 Writer", story.getAuthor());
+        assertEquals("Debate \u2013 live", story.getHeadline());
+        assertEquals("<strong>Letters:</strong> A &amp; B", story.getTrailText());
+        assertEquals("Letters: A & B", story.getDisplayTrailText());
+        assertEquals("https://gu.com/p/8abc", story.getShortUrl());
+        assertEquals("https://media.guim.co.uk/1234/0_0_500_300/500.jpg", story.getThumbnailUrl());
+        assertEquals("2018-05-31", story.getDisplayDate());
+        assertEquals("18:00", story.getDisplayTime());
+    }
+
+    @Test
+    public void missingValues_stayNull() {
+        Story story = new Story(null, null, null, null, null, null, null);
+
+        assertNull(story.getSectionName());
+        assertNull(story.getDate());
+        assertNull(story.getHeadline());
+        assertNull(story.getTrailText());
+        assertNull(story.getDisplayTrailText());
+        assertNull(story.getShortUrl());
+        assertNull(story.getThumbnailUrl());
+        assertEquals(-1, story.getPublishedMillis());
+    }
+
+    @Test
+    public void dateThatCanNotBeWrittenBack_isKeptAsItWas() {
+        assertEquals("2018-05-31T18:00:11.250Z",
+                new Story("Politics", "2018-05-31T18:00:11.250Z", null, "", "", null, null).getDate());
+        assertEquals("yesterday", new Story("Politics", "yesterday", null, "", "", null, null).getDate());
+    }
+
+    @Test
+    public void repeatedValues_areShared() {
+        Story first = new Story(new String("Politics"), "2018-05-31T18:00:11Z", new String("By: Anna"),
+                "One", "", "https://gu.com/p/1", null);
+        Story second = new Story(new String("Politics"), "2018-05-31T19:30:00Z", new String("By: Anna"),
+                "Two", "", "https://gu.com/p/2", null);
+
+        assertSame(first.getSectionName(), second.getSectionName());
+        assertSame(first.getAuthor(), second.getAuthor());
+        assertSame(first.getDisplayDate(), second.getDisplayDate());
+    }
+
+    @Test
+    public void displayDates_doNotFillTheTableOfSectionsAndAuthors() {
+        int before = StoryDictionary.size();
+        for (int day = 0; day < StoryDictionary.MAX_DATE_VALUES + 100; day++) {
+            new Story("Politics", StoryFormatter.formatIsoDate(day * 24L * 60 * 60 * 1000), "By: Anna",
+                    "Day " + day, "", "https://gu.com/p/" + day, null);
+        }
+
+        assertTrue(StoryDictionary.size() - before <= 2);
+        assertEquals(StoryDictionary.MAX_DATE_VALUES, StoryDictionary.dateSize());
+        // The latest dates are still shared
+        Story first = new Story("Politics", "1975-08-26T10:00:00Z", null, "One", "", "https://gu.com/p/a", null);
+        Story second = new Story("Politics", "1975-08-26T11:00:00Z", null, "Two", "", "https://gu.com/p/b", null);
+        assertSame(first.getDisplayDate(), second.getDisplayDate());
+    }
+
+    @Test
+    public void equals_comparesEveryValue() {
+        Story story = new Story("Politics", "2018-05-31T18:00:11Z", "By: Anna", "Headline", "<b>Trail</b>",
+                "https://gu.com/p/1", "http://example.com/1.jpg");
+
+        assertEquals(story, new Story("Politics", "2018-05-31T18:00:11Z", "By: Anna", "Headline",
+                "<b>Trail</b>", "https://gu.com/p/1", "http://example.com/1.jpg"));
+        assertEquals(story.hashCode(), "https://gu.com/p/1".hashCode());
+        assertNotEquals(story, new Story("Politics", "2018-05-31T18:00:11Z", "By: Anna", "Headline",
+                "<b>Trail!</b>", "https://gu.com/p/1", "http://example.com/1.jpg"));
+        assertNotEquals(story, new Story("Politics", "2018-05-31T18:00:11Z", "By: Anna", "Headline",
+                "<b>Trail</b>", "https://gu.com/p/1", null));
+        assertNotEquals(story, new Story("Politics", "2018-05-31T18:00:12Z", "By: Anna", "Headline",
+                "<b>Trail</b>", "https://gu.com/p/1", "http://example.com/1.jpg"));
+    }
+
+    @Test
+    public void hasSameShortUrl() {
+        Story story = new Story("Politics", null, null, "One", "", "https://gu.com/p/1", null);
+
+        assertTrue(story.hasSameShortUrl(new Story("World", null, null, "Two", "", "https://gu.com/p/1", null)));
+        assertFalse(story.hasSameShortUrl(new Story("Politics", null, null, "One", "", "https://gu.com/p/2", null)));
+        Story noUrl = new Story("Politics", null, null, "One", "", null, null);
+        assertTrue(noUrl.hasSameShortUrl(noUrl));
+        assertFalse(noUrl.hasSameShortUrl(new Story("Politics", null, null, "One", "", null, null)));
+    }
+}
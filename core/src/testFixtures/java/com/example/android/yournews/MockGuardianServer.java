@@ -0,0 +1,554 @@
+package com.example.android.yournews;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+/**
+ * Local stand-in for the Guardian "search" endpoint. It keeps the stories of every tag and
+ * answers the query the way the real API does: tag, page-size, page and from-date are honoured
+ * (newest first), responses carry an ETag and a Last-Modified and conditional requests get a 304,
+ * and bodies are gzipped when the client accepts it.
+ * <p>
+ * A test of one exact exchange can {@link #enqueue} scripted responses instead, they are sent
+ * in order before the stories are served again.
+ * <p>
+ * It can also slow down or break the responses: latency before the headers, limited bandwidth,
+ * 429s with a Retry-After, a quota of requests per second, an outage with only 503s and bodies
+ * cut off halfway. The faults are drawn from a seeded
+ * {@link Random}, so a run can be repeated. It runs on the JVM and on a device, both the unit
+ * tests and the instrumented tests use it.
+ */
+class MockGuardianServer {
+
+    /** Default page size of the real API */
+    private static final int DEFAULT_PAGE_SIZE = 10;
+    /** MockWebServer logs every request, kept here so the level is not lost with the logger */
+    private static final Logger sServerLogger = Logger.getLogger(MockWebServer.class.getName());
+
+    static {
+        sServerLogger.setLevel(Level.WARNING);
+    }
+
+    private final MockWebServer mServer = new MockWebServer();
+    /** Stories of every tag, newest first, as Guardian "results" items */
+    private final Map<String, List<JSONObject>> mStories = new HashMap<>();
+    private final Map<String, Date> mLastModified = new HashMap<>();
+    private final Random mRandom;
+
+    private long mLatencyMillis;
+    private long mBytesPerSecond;
+    private double mTooManyRequestsRate;
+    private int mRetryAfterSeconds;
+    private double mTruncateRate;
+    private int mRequestsPerSecond;
+    /** Times of the requests of the last second, for the quota */
+    private final ArrayDeque<Long> mRecentRequests = new ArrayDeque<>();
+    private boolean mDown;
+    /** Scripted responses sent before the stories, the last one is repeated until it is cleared */
+    private final ArrayDeque<MockResponse> mScript = new ArrayDeque<>();
+
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+    private final AtomicInteger mNotModifiedCount = new AtomicInteger();
+    private final AtomicInteger mTooManyRequestsCount = new AtomicInteger();
+    private final AtomicInteger mTruncatedCount = new AtomicInteger();
+    private final AtomicInteger mConnectionCount = new AtomicInteger();
+    private final List<RecordedRequest> mRequests = new ArrayList<>();
+    private int mPublishedCount;
+
+    MockGuardianServer() throws IOException {
+        this(1);
+    }
+
+    /**
+     * @param seed seed of the faults, the same seed injects the same faults
+     */
+    MockGuardianServer(long seed) throws IOException {
+        mRandom = new Random(seed);
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return respond(request);
+            }
+        });
+        mServer.start();
+    }
+
+    /**
+     * Return the "results" items of a recorded Guardian response in the test resources.
+     */
+    static List<JSONObject> fixtureStories(String resource) throws IOException {
+        InputStream in = MockGuardianServer.class.getClassLoader().getResourceAsStream(resource);
+        if (in == null) {
+            throw new IOException("No fixture " + resource);
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            JSONArray results = new JSONObject(out.toString("UTF-8"))
+                    .getJSONObject("response").getJSONArray("results");
+            List<JSONObject> stories = new ArrayList<>();
+            for (int i = 0; i < results.length(); i++) {
+                stories.add(results.getJSONObject(i));
+            }
+            return stories;
+        } catch (JSONException e) {
+            throw new IOException("Not a Guardian response: " + resource, e);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Add stories to the tag, they are served newest first whatever order they are added in.
+     */
+    synchronized MockGuardianServer addStories(String tag, List<JSONObject> stories) {
+        List<JSONObject> tagStories = storiesOf(tag);
+        tagStories.addAll(stories);
+        sortNewestFirst(tagStories);
+        touch(tag);
+        return this;
+    }
+
+    /**
+     * Publish new stories in the tag, one minute apart and newer than all its other stories.
+     * They are copies of its oldest stories with a new date, headline and short URL.
+     *
+     * @return the new stories, newest first
+     */
+    synchronized List<JSONObject> publish(String tag, int count) {
+        List<JSONObject> tagStories = storiesOf(tag);
+        if (tagStories.isEmpty()) {
+            throw new IllegalStateException("No stories in " + tag + " to copy");
+        }
+        long newest = parseDate(tagStories.get(0).optString("webPublicationDate"));
+        List<JSONObject> published = new ArrayList<>();
+        try {
+            for (int i = 0; i < count; i++) {
+                mPublishedCount++;
+                JSONObject template = tagStories.get(tagStories.size() - 1 - (i % tagStories.size()));
+                JSONObject story = new JSONObject(template.toString());
+                story.put("webPublicationDate", formatDate(newest + TimeUnit.MINUTES.toMillis(i + 1)));
+                JSONObject fields = story.getJSONObject("fields");
+                fields.put("headline", "Breaking " + mPublishedCount + ": " + fields.optString("headline"));
+                fields.put("shortUrl", "https://gu.com/p/mock" + mPublishedCount);
+                published.add(0, story);
+            }
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+        tagStories.addAll(0, published);
+        touch(tag);
+        return published;
+    }
+
+    /**
+     * Return the search URL of a page of the tag, the way the app builds it.
+     *
+     * @param fromDate only the stories published since then, or null for all
+     */
+    String url(String tag, int page, int pageSize, String fromDate) {
+        return new GuardianQuery(mServer.url("/search").toString())
+                .tag(tag)
+                .orderBy("newest")
+                .fromDate(fromDate)
+                .page(page)
+                .pageSize(pageSize)
+                .showTags("contributor")
+                .showFields("trailText,headline,thumbnail,shortUrl")
+                .apiKey("test")
+                .build();
+    }
+
+    /**
+     * Return the search URL of the first page of politics, for the scripted responses.
+     */
+    String url() {
+        return url("politics/politics", 1, DEFAULT_PAGE_SIZE, null);
+    }
+
+    /**
+     * Answer the next requests with these responses, in order. Once they are used up the last
+     * one is repeated, until {@link #clearScript()}.
+     */
+    synchronized MockGuardianServer enqueue(MockResponse... responses) {
+        for (MockResponse response : responses) {
+            mScript.addLast(response);
+        }
+        return this;
+    }
+
+    /**
+     * Drop the scripted responses, the next requests get the stories of their tag.
+     */
+    synchronized MockGuardianServer clearScript() {
+        mScript.clear();
+        return this;
+    }
+
+    /**
+     * Return a scripted 200 response with the body.
+     */
+    static MockResponse ok(byte[] body) {
+        return new MockResponse().setResponseCode(200)
+                .addHeader("Content-Type", "application/json")
+                .setBody(new Buffer().write(body));
+    }
+
+    /**
+     * Return a scripted response with the status code and no body.
+     */
+    static MockResponse status(int code) {
+        return new MockResponse().setResponseCode(code);
+    }
+
+    /**
+     * Wait this long before sending the status line of every response.
+     */
+    synchronized MockGuardianServer latency(long millis) {
+        mLatencyMillis = millis;
+        return this;
+    }
+
+    /**
+     * Send the bodies at this many bytes per second, 0 for no limit.
+     */
+    synchronized MockGuardianServer bandwidth(long bytesPerSecond) {
+        mBytesPerSecond = bytesPerSecond;
+        return this;
+    }
+
+    /**
+     * Answer this share of the requests (0 to 1) with a 429 and a Retry-After header.
+     */
+    synchronized MockGuardianServer tooManyRequests(double rate, int retryAfterSeconds) {
+        mTooManyRequestsRate = rate;
+        mRetryAfterSeconds = retryAfterSeconds;
+        return this;
+    }
+
+    /**
+     * Answer the requests beyond this many in the last second with a 429 and a Retry-After of
+     * one second, the way the real API enforces the quota of a key. 0 for no quota.
+     */
+    synchronized MockGuardianServer quota(int requestsPerSecond) {
+        mRequestsPerSecond = requestsPerSecond;
+        mRecentRequests.clear();
+        return this;
+    }
+
+    /**
+     * Answer every request with a 503 while the API is down.
+     */
+    synchronized MockGuardianServer outage(boolean down) {
+        mDown = down;
+        return this;
+    }
+
+    /**
+     * Cut off this share of the bodies (0 to 1) halfway by closing the connection.
+     */
+    synchronized MockGuardianServer truncate(double rate) {
+        mTruncateRate = rate;
+        return this;
+    }
+
+    int requestCount() {
+        return mRequestCount.get();
+    }
+
+    int notModifiedCount() {
+        return mNotModifiedCount.get();
+    }
+
+    int tooManyRequestsCount() {
+        return mTooManyRequestsCount.get();
+    }
+
+    int truncatedCount() {
+        return mTruncatedCount.get();
+    }
+
+    /**
+     * Return the request received at this index, starting at 0.
+     */
+    synchronized RecordedRequest request(int index) {
+        return mRequests.get(index);
+    }
+
+    /**
+     * Number of TCP connections the requests came in on.
+     */
+    int connectionCount() {
+        return mConnectionCount.get();
+    }
+
+    void shutdown() throws IOException {
+        mServer.shutdown();
+    }
+
+    private synchronized MockResponse respond(RecordedRequest request) {
+        mRequestCount.incrementAndGet();
+        mRequests.add(request);
+        if (request.getSequenceNumber() == 0) {
+            // The first request on its connection
+            mConnectionCount.incrementAndGet();
+        }
+        if (!mScript.isEmpty()) {
+            return mScript.size() > 1 ? mScript.pollFirst() : mScript.peekFirst();
+        }
+        HttpUrl url = request.getRequestUrl();
+        if (!"/search".equals(url.encodedPath())) {
+            return error(404, "not found");
+        }
+        if (mDown) {
+            return delay(error(503, "service unavailable"));
+        }
+        if (isOverQuota()) {
+            mTooManyRequestsCount.incrementAndGet();
+            return delay(error(429, "rate limit exceeded").addHeader("Retry-After", "1"));
+        }
+        if (mRandom.nextDouble() < mTooManyRequestsRate) {
+            mTooManyRequestsCount.incrementAndGet();
+            return delay(error(429, "rate limit exceeded")
+                    .addHeader("Retry-After", String.valueOf(mRetryAfterSeconds)));
+        }
+
+        int page;
+        int pageSize;
+        try {
+            page = intParameter(url, "page", 1);
+            pageSize = intParameter(url, "page-size", DEFAULT_PAGE_SIZE);
+        } catch (NumberFormatException e) {
+            return error(400, "page and page-size must be numbers");
+        }
+        if (page < 1 || pageSize < 1 || pageSize > 200) {
+            return error(400, "page must be at least 1 and page-size between 1 and 200");
+        }
+
+        String tag = url.queryParameter("tag");
+        String fromDate = url.queryParameter("from-date");
+        List<JSONObject> matching = new ArrayList<>();
+        for (JSONObject story : storiesOf(tag)) {
+            if (fromDate == null || !isBefore(story.optString("webPublicationDate"), fromDate)) {
+                matching.add(story);
+            }
+        }
+        int pages = (matching.size() + pageSize - 1) / pageSize;
+        if (page > Math.max(1, pages)) {
+            return error(400, "requested page is beyond the number of available pages");
+        }
+
+        String body;
+        try {
+            JSONArray results = new JSONArray();
+            int start = (page - 1) * pageSize;
+            for (int i = start; i < Math.min(matching.size(), start + pageSize); i++) {
+                results.put(matching.get(i));
+            }
+            JSONObject response = new JSONObject()
+                    .put("status", "ok")
+                    .put("userTier", "developer")
+                    .put("total", matching.size())
+                    .put("startIndex", start + 1)
+                    .put("pageSize", pageSize)
+                    .put("currentPage", page)
+                    .put("pages", pages)
+                    .put("orderBy", "newest")
+                    .put("results", results);
+            body = new JSONObject().put("response", response).toString();
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+
+        // The same query gets the same body until the stories of the tag change
+        String etag = "\"" + Integer.toHexString(body.hashCode()) + "\"";
+        Date lastModified = mLastModified.containsKey(tag) ? mLastModified.get(tag) : new Date(0);
+        if (isNotModified(request, etag, lastModified)) {
+            mNotModifiedCount.incrementAndGet();
+            return delay(new MockResponse().setResponseCode(304)
+                    .addHeader("ETag", etag)
+                    .addHeader("Last-Modified", httpDate(lastModified)));
+        }
+
+        MockResponse response = new MockResponse().setResponseCode(200)
+                .addHeader("Content-Type", "application/json")
+                .addHeader("ETag", etag)
+                .addHeader("Last-Modified", httpDate(lastModified));
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            response.addHeader("Content-Encoding", "gzip").setBody(gzip(body));
+        } else {
+            response.setBody(body);
+        }
+        if (mBytesPerSecond > 0) {
+            // In steps of a tenth of a second, so a small body is not sent all at once
+            response.throttleBody(Math.max(1, mBytesPerSecond / 10), 100, TimeUnit.MILLISECONDS);
+        }
+        if (mRandom.nextDouble() < mTruncateRate) {
+            mTruncatedCount.incrementAndGet();
+            response.setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY);
+        }
+        return delay(response);
+    }
+
+    /**
+     * Count the request against the quota, and return true when it goes over.
+     */
+    private boolean isOverQuota() {
+        if (mRequestsPerSecond <= 0) {
+            return false;
+        }
+        long now = System.nanoTime();
+        while (!mRecentRequests.isEmpty() && now - mRecentRequests.peekFirst() >= TimeUnit.SECONDS.toNanos(1)) {
+            mRecentRequests.pollFirst();
+        }
+        if (mRecentRequests.size() >= mRequestsPerSecond) {
+            return true;
+        }
+        mRecentRequests.addLast(now);
+        return false;
+    }
+
+    private boolean isNotModified(RecordedRequest request, String etag, Date lastModified) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            // If-None-Match wins over If-Modified-Since when both are sent
+            return ifNoneMatch.equals(etag);
+        }
+        String ifModifiedSince = request.getHeader("If-Modified-Since");
+        if (ifModifiedSince != null) {
+            try {
+                // HTTP dates have whole seconds
+                return lastModified.getTime() / 1000 <= httpDateFormat().parse(ifModifiedSince).getTime() / 1000;
+            } catch (ParseException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private MockResponse delay(MockResponse response) {
+        return response.setHeadersDelay(mLatencyMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static MockResponse error(int code, String message) {
+        return new MockResponse().setResponseCode(code)
+                .addHeader("Content-Type", "application/json")
+                .setBody("{\"response\":{\"status\":\"error\",\"message\":\"" + message + "\"}}");
+    }
+
+    /**
+     * Move the Last-Modified of the tag on, by at least a second as HTTP dates have whole seconds.
+     */
+    private void touch(String tag) {
+        long now = System.currentTimeMillis();
+        Date last = mLastModified.get(tag);
+        mLastModified.put(tag, new Date(last == null ? now : Math.max(now, last.getTime() + 1000)));
+    }
+
+    private List<JSONObject> storiesOf(String tag) {
+        List<JSONObject> stories = mStories.get(tag);
+        if (stories == null) {
+            stories = new ArrayList<>();
+            mStories.put(tag, stories);
+        }
+        return stories;
+    }
+
+    private static int intParameter(HttpUrl url, String name, int defaultValue) {
+        String value = url.queryParameter(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    /**
+     * Return true when the publication date is before the from-date, which is a day
+     * (yyyy-MM-dd, from its start) or a time like the publication dates.
+     */
+    private static boolean isBefore(String publicationDate, String fromDate) {
+        if (fromDate.length() == 10) {
+            fromDate += "T00:00:00Z";
+        }
+        return parseDate(publicationDate) < parseDate(fromDate);
+    }
+
+    private static void sortNewestFirst(List<JSONObject> stories) {
+        Collections.sort(stories, new Comparator<JSONObject>() {
+            @Override
+            public int compare(JSONObject a, JSONObject b) {
+                long first = parseDate(a.optString("webPublicationDate"));
+                long second = parseDate(b.optString("webPublicationDate"));
+                return first < second ? 1 : (first == second ? 0 : -1);
+            }
+        });
+    }
+
+    private static long parseDate(String isoDate) {
+        return StoryFormatter.parseDate(isoDate);
+    }
+
+    private static String formatDate(long millis) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(new Date(millis));
+    }
+
+    private static SimpleDateFormat httpDateFormat() {
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format;
+    }
+
+    private static String httpDate(Date date) {
+        return httpDateFormat().format(date);
+    }
+
+    private static Buffer gzip(String body) {
+        Buffer compressed = new Buffer();
+        try {
+            BufferedSink sink = Okio.buffer(new GzipSink(compressed));
+            sink.writeUtf8(body);
+            sink.close();
+        } catch (IOException e) {
+            // Writing to a Buffer does not fail
+            throw new IllegalStateException(e);
+        }
+        return compressed;
+    }
+}